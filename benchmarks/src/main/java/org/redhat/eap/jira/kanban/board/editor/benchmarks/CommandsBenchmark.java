@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.redhat.eap.jira.kanban.board.editor.commands.Commands;
+import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations.JqlSwimlaneConfig;
+
+/**
+ * Measures the throughput and latency of the {@link Commands} operations against a {@link FakeJira}.
+ *
+ * @author Kabir Khan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandsBenchmark {
+    private static final JqlSwimlaneConfig NEW_SWIMLANE =
+            new JqlSwimlaneConfig("Benchmark", "component=\"Benchmark\"", "Swimlane added by the benchmark");
+
+    @Benchmark
+    public Commands.Board findBoard(FakeJiraState state) {
+        return state.commands.findBoard(FakeJiraState.BOARD_NAME);
+    }
+
+    @Benchmark
+    public Commands.Board copyBoard(FakeJiraState state, CopiedBoard copied) {
+        copied.board = state.commands.copyBoard(state.board, "Copy of " + FakeJiraState.BOARD_NAME);
+        return copied.board;
+    }
+
+    @Benchmark
+    public Commands.BoardSwimlanes getSwimlanes(FakeJiraState state) {
+        return state.commands.getSwimlanes(state.board);
+    }
+
+    @Benchmark
+    public void deleteExistingJqlSwimlanes(FakeJiraState state, FreshSwimlanes fresh) {
+        state.commands.deleteExistingJqlSwimlanes(state.board);
+    }
+
+    @Benchmark
+    public int addJqlSwimlane(FakeJiraState state, FreshSwimlanes fresh) {
+        return state.commands.addJqlSwimlane(state.board, NEW_SWIMLANE);
+    }
+
+    /**
+     * Puts the board's swimlanes back the way they were before each invocation of the benchmarks changing them
+     */
+    @State(Scope.Thread)
+    public static class FreshSwimlanes {
+        @Setup(Level.Invocation)
+        public void reset(FakeJiraState state) {
+            state.fakeJira.setSwimlanes(state.board.getId(), state.swimlanes);
+        }
+    }
+
+    /**
+     * Removes the board created by each invocation of the copy benchmark
+     */
+    @State(Scope.Thread)
+    public static class CopiedBoard {
+        Commands.Board board;
+
+        @TearDown(Level.Invocation)
+        public void remove(FakeJiraState state) {
+            if (board != null) {
+                state.fakeJira.removeBoard(board.getId());
+                board = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,492 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jboss.dmr.ModelNode;
+
+/**
+ * An in-process stand-in for the parts of the Jira agile and greenhopper REST APIs used by the editor. The responses
+ * have the same shape as the ones recorded from issues.jboss.org, and the boards and swimlanes are kept in memory so
+ * that a sequence of commands sees its own changes.
+ * <p>
+ * Each request is delayed by the configured latency, and the allData payload and issue search contain the configured
+ * number of issues, so that both round trip time and payload size can be varied. Like Jira, responses are gzipped
+ * for clients which accept it, and gzipped request bodies are accepted.
+ *
+ * @author Kabir Khan
+ */
+public class FakeJira implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMs;
+    private final int issues;
+    private final Map<Integer, FakeBoard> boards = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1000);
+    private final Set<String> components = ConcurrentHashMap.newKeySet();
+
+    public FakeJira(long latencyMs, int issues) throws IOException {
+        this.latencyMs = latencyMs;
+        this.issues = issues;
+        //Without this the JDK server's Nagle and the client's delayed ACKs add 40ms to each request
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.executor = Executors.newFixedThreadPool(64);
+        server.setExecutor(executor);
+        server.createContext("/rest", this::handle);
+        server.start();
+    }
+
+    public URI getUri() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    /**
+     * Creates a board with a number of custom swimlanes, directly in memory.
+     *
+     * @param name the board name
+     * @param swimlanes the number of custom swimlanes
+     * @return the board id
+     */
+    public int createBoard(String name, int swimlanes) {
+        FakeBoard board = new FakeBoard(nextId.incrementAndGet(), name);
+        boards.put(board.id, board);
+        setSwimlanes(board.id, swimlanes);
+        return board.id;
+    }
+
+    /**
+     * Replaces the custom swimlanes of a board, directly in memory.
+     *
+     * @param boardId the board id
+     * @param swimlanes the number of custom swimlanes
+     */
+    public void setSwimlanes(int boardId, int swimlanes) {
+        FakeBoard board = boards.computeIfAbsent(boardId, id -> new FakeBoard(id, "Board " + id));
+        synchronized (board) {
+            board.swimlanes.clear();
+            for (int i = 0 ; i < swimlanes ; i++) {
+                components.add("Component " + i);
+                board.swimlanes.add(swimlane(nextId.incrementAndGet(), "Component " + i, "component=\"Component " + i + "\"",
+                        "Swimlane for Component " + i, false));
+            }
+            board.swimlanes.add(swimlane(nextId.incrementAndGet(), "Everything Else", "", "", true));
+        }
+    }
+
+    /**
+     * Adds a component to the project, directly in memory. The components used by the swimlanes created by
+     * {@link #createBoard(String, int)} are added automatically.
+     *
+     * @param name the component name
+     */
+    public void addComponent(String name) {
+        components.add(name);
+    }
+
+    /**
+     * Removes a component from the project, directly in memory. Swimlanes using it are left alone.
+     *
+     * @param name the component name
+     */
+    public void removeComponent(String name) {
+        components.remove(name);
+    }
+
+    /**
+     * Removes a board, directly in memory.
+     *
+     * @param boardId the board id
+     */
+    public void removeBoard(int boardId) {
+        boards.remove(boardId);
+    }
+
+    /**
+     * @param boardId the board id
+     * @return the xboard/work/allData payload for the board, as served
+     */
+    public String getAllDataPayload(int boardId) {
+        return allData(board(String.valueOf(boardId))).toJSONString(true);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().substring("/rest/".length()).split("/");
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            ModelNode body = readBody(exchange.getRequestBody(), "gzip".equalsIgnoreCase(contentEncoding));
+
+            ModelNode result;
+            String api = path[0] + "/" + path[2];
+            if (api.equals("agile/board") && method.equals("GET")) {
+                result = searchBoards(query);
+            } else if (api.equals("greenhopper/rapidview") && method.equals("DELETE")) {
+                boards.remove(Integer.valueOf(path[3]));
+                result = null;
+            } else if (api.equals("greenhopper/rapidview") && path.length == 5 && path[4].equals("copy")) {
+                result = copyBoard(board(path[3]));
+            } else if (api.equals("greenhopper/rapidviewconfig") && path[3].equals("swimlaneStrategy")) {
+                board(body.get("id").asString()).strategy = body.get("swimlaneStrategyId").asString();
+                result = null;
+            } else if (api.equals("greenhopper/rapidviewconfig") && path[3].equals("editmodel.json")) {
+                result = editModel(board(query.get("rapidViewId")));
+            } else if ((api.equals("greenhopper/rapidviewconfig") || api.equals("greenhopper/cardcolors")) && method.equals("PUT")) {
+                //Column, filter and card colour changes are accepted but not kept
+                result = null;
+            } else if (api.equals("greenhopper/xboard")) {
+                result = allData(board(query.get("rapidViewId")));
+            } else if (api.equals("greenhopper/swimlanes")) {
+                result = swimlanes(method, path, body);
+            } else if (api.equals("api/search") && method.equals("POST")) {
+                result = searchIssues(body);
+            } else if (api.equals("api/project") && path.length == 5 && path[4].equals("components")) {
+                result = new ModelNode().setEmptyList();
+                for (String component : components) {
+                    result.add(new ModelNode().set("name", component));
+                }
+            } else {
+                send(exchange, 404, null);
+                return;
+            }
+            send(exchange, 200, result);
+        } catch (NotFoundException e) {
+            send(exchange, 404, null);
+        } catch (Exception e) {
+            e.printStackTrace();
+            send(exchange, 500, null);
+        }
+    }
+
+    private ModelNode searchBoards(Map<String, String> query) {
+        String name = query.get("name");
+        int startAt = query.containsKey("startAt") ? Integer.parseInt(query.get("startAt")) : 0;
+        int maxResults = query.containsKey("maxResults") ? Integer.parseInt(query.get("maxResults")) : 50;
+        List<FakeBoard> matches = new ArrayList<>();
+        for (FakeBoard board : boards.values()) {
+            if (name == null || board.name.contains(name)) {
+                matches.add(board);
+            }
+        }
+        matches.sort((b1, b2) -> Integer.compare(b1.id, b2.id));
+
+        ModelNode result = new ModelNode();
+        result.get("maxResults").set(maxResults);
+        result.get("startAt").set(startAt);
+        result.get("isLast").set(startAt + maxResults >= matches.size());
+        ModelNode values = result.get("values").setEmptyList();
+        for (int i = startAt ; i < Math.min(matches.size(), startAt + maxResults) ; i++) {
+            FakeBoard board = matches.get(i);
+            ModelNode value = new ModelNode();
+            value.get("id").set(board.id);
+            value.get("self").set(getUri() + "/rest/agile/1.0/board/" + board.id);
+            value.get("name").set(board.name);
+            value.get("type").set("kanban");
+            values.add(value);
+        }
+        return result;
+    }
+
+    private ModelNode copyBoard(FakeBoard source) {
+        FakeBoard copy = new FakeBoard(nextId.incrementAndGet(), "Copy of " + source.name);
+        synchronized (source) {
+            for (ModelNode swimlane : source.swimlanes) {
+                ModelNode copied = swimlane.clone();
+                copied.get("id").set(nextId.incrementAndGet());
+                copy.swimlanes.add(copied);
+            }
+            copy.strategy = source.strategy;
+        }
+        boards.put(copy.id, copy);
+        ModelNode result = new ModelNode();
+        result.get("id").set(copy.id);
+        result.get("name").set(copy.name);
+        return result;
+    }
+
+    private ModelNode editModel(FakeBoard board) {
+        ModelNode result = new ModelNode();
+        result.get("id").set(board.id);
+        result.get("name").set(board.name);
+        result.get("canEdit").set(true);
+        result.get("filterConfig", "id").set(board.id);
+        result.get("filterConfig", "name").set("Filter for " + board.name);
+        result.get("filterConfig", "query").set("project = WFLY ORDER BY Rank ASC");
+        ModelNode config = result.get("swimlanesConfig");
+        config.get("rapidViewId").set(board.id);
+        config.get("canEdit").set(true);
+        synchronized (board) {
+            config.get("swimlaneStrategy").set(board.strategy);
+            ModelNode swimlanes = config.get("swimlanes").setEmptyList();
+            for (ModelNode swimlane : board.swimlanes) {
+                ModelNode copy = swimlane.clone();
+                copy.get("isDefault").set(copy.remove("defaultSwimlane"));
+                swimlanes.add(copy);
+            }
+        }
+        return result;
+    }
+
+    private ModelNode allData(FakeBoard board) {
+        ModelNode result = new ModelNode();
+        result.get("rapidViewId").set(board.id);
+        ModelNode issueList = result.get("issuesData", "issues").setEmptyList();
+        for (int i = 0 ; i < issues ; i++) {
+            issueList.add(issue(i));
+        }
+        result.get("columnsData", "columns").setEmptyList();
+        synchronized (board) {
+            result.get("swimlaneStrategy").set(board.strategy);
+            ModelNode swimlanes = result.get("swimlanesData", "customSwimlanesData", "swimlanes").setEmptyList();
+            for (ModelNode swimlane : board.swimlanes) {
+                swimlanes.add(swimlane.clone());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Serves a page of the configured number of issues, whatever the query. Like Jira, at most 100 issues are
+     * returned at a time. Every tenth issue has no component, and the rest are spread across the project's components.
+     */
+    private ModelNode searchIssues(ModelNode body) {
+        int startAt = body.hasDefined("startAt") ? body.get("startAt").asInt() : 0;
+        int maxResults = Math.min(100, body.hasDefined("maxResults") ? body.get("maxResults").asInt() : 50);
+        List<String> componentNames = new ArrayList<>(components);
+        Collections.sort(componentNames);
+
+        ModelNode result = new ModelNode();
+        result.get("startAt").set(startAt);
+        result.get("maxResults").set(maxResults);
+        result.get("total").set(issues);
+        ModelNode issueList = result.get("issues").setEmptyList();
+        for (int i = startAt ; i < Math.min(issues, startAt + maxResults) ; i++) {
+            ModelNode issue = new ModelNode();
+            issue.get("id").set(String.valueOf(100000 + i));
+            issue.get("key").set("WFLY-" + i);
+            issue.get("self").set(getUri() + "/rest/api/2/issue/" + (100000 + i));
+            ModelNode fields = issue.get("fields");
+            fields.get("project", "key").set("WFLY");
+            fields.get("project", "name").set("WildFly");
+            fields.get("issuetype", "name").set(i % 4 == 0 ? "Feature Request" : "Bug");
+            fields.get("status", "name").set("Coding In Progress");
+            fields.get("priority", "name").set(i % 5 == 0 ? "Critical" : "Major");
+            fields.get("resolution");
+            ModelNode issueComponents = fields.get("components").setEmptyList();
+            if (i % 10 != 0 && componentNames.size() > 0) {
+                issueComponents.add(new ModelNode().set("name", componentNames.get(i % componentNames.size())));
+            }
+            fields.get("labels").setEmptyList();
+            fields.get("fixVersions").add(new ModelNode().set("name", "10.0." + (i % 3) + ".Final"));
+            fields.get("assignee", "name").set("user" + (i % 40));
+            issueList.add(issue);
+        }
+        return result;
+    }
+
+    private ModelNode swimlanes(String method, String[] path, ModelNode body) {
+        FakeBoard board = board(path[3]);
+        synchronized (board) {
+            if (path.length == 4 && method.equals("POST")) {
+                ModelNode swimlane = swimlane(nextId.incrementAndGet(), body.get("name").asString(), body.get("query").asString(),
+                        body.get("description").isDefined() ? body.get("description").asString() : "", false);
+                board.swimlanes.add(0, swimlane);
+                return swimlane;
+            }
+            int index = indexOf(board, Integer.parseInt(path[4]));
+            if (path.length == 6 && path[5].equals("move")) {
+                ModelNode swimlane = board.swimlanes.remove(index);
+                if (body.hasDefined("after")) {
+                    board.swimlanes.add(indexOf(board, body.get("after").asInt()) + 1, swimlane);
+                } else {
+                    board.swimlanes.add(0, swimlane);
+                }
+                return swimlane;
+            }
+            if (method.equals("DELETE")) {
+                board.swimlanes.remove(index);
+                return null;
+            }
+            ModelNode swimlane = board.swimlanes.get(index);
+            swimlane.get("name").set(body.get("name"));
+            swimlane.get("query").set(body.get("query"));
+            swimlane.get("description").set(body.get("description"));
+            return swimlane;
+        }
+    }
+
+    private FakeBoard board(String id) {
+        FakeBoard board = boards.get(Integer.valueOf(id));
+        if (board == null) {
+            throw new NotFoundException();
+        }
+        return board;
+    }
+
+    private static int indexOf(FakeBoard board, int swimlaneId) {
+        for (int i = 0 ; i < board.swimlanes.size() ; i++) {
+            if (board.swimlanes.get(i).get("id").asInt() == swimlaneId) {
+                return i;
+            }
+        }
+        throw new NotFoundException();
+    }
+
+    private static ModelNode swimlane(int id, String name, String query, String description, boolean defaultSwimlane) {
+        ModelNode swimlane = new ModelNode();
+        swimlane.get("id").set(id);
+        swimlane.get("name").set(name);
+        swimlane.get("query").set(query);
+        swimlane.get("description").set(description);
+        swimlane.get("defaultSwimlane").set(defaultSwimlane);
+        return swimlane;
+    }
+
+    private static ModelNode issue(int i) {
+        ModelNode issue = new ModelNode();
+        issue.get("id").set(100000 + i);
+        issue.get("key").set("WFLY-" + i);
+        issue.get("hidden").set(false);
+        issue.get("typeName").set("Bug");
+        issue.get("typeId").set("1");
+        issue.get("summary").set("Something does not work as expected when doing thing number " + i);
+        issue.get("typeUrl").set("https://issues.jboss.org/secure/viewavatar?size=xsmall&avatarId=12345&avatarType=issuetype");
+        issue.get("priorityUrl").set("https://issues.jboss.org/images/icons/priorities/major.svg");
+        issue.get("priorityName").set("Major");
+        issue.get("done").set(false);
+        issue.get("assignee").set("user" + (i % 40));
+        issue.get("assigneeName").set("User Number " + (i % 40));
+        issue.get("avatarUrl").set("https://issues.jboss.org/secure/useravatar?size=xsmall&avatarId=10122");
+        issue.get("hasCustomUserAvatar").set(false);
+        issue.get("color").set("#cccccc");
+        issue.get("statusId").set(String.valueOf(10000 + i % 6));
+        issue.get("statusName").set("Coding In Progress");
+        issue.get("statusUrl").set("https://issues.jboss.org/images/icons/statuses/inprogress.png");
+        issue.get("fixVersions").add(12330000 + i % 3);
+        issue.get("projectId").set(12313721);
+        issue.get("linkedPagesCount").set(0);
+        return issue;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws IOException {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery != null) {
+            for (String param : rawQuery.split("&")) {
+                int index = param.indexOf('=');
+                query.put(URLDecoder.decode(param.substring(0, index), "UTF-8"), URLDecoder.decode(param.substring(index + 1), "UTF-8"));
+            }
+        }
+        return query;
+    }
+
+    private static ModelNode readBody(InputStream in, boolean gzip) throws IOException {
+        //Read the whole body before decompressing it, since the connection is only kept alive if it has all been read
+        byte[] bytes = readFully(in);
+        if (gzip && bytes.length > 0) {
+            bytes = readFully(new GZIPInputStream(new ByteArrayInputStream(bytes)));
+        }
+        if (bytes.length == 0) {
+            return new ModelNode();
+        }
+        return ModelNode.fromJSONString(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int read = in.read(buffer) ; read != -1 ; read = in.read(buffer)) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static void send(HttpExchange exchange, int status, ModelNode body) throws IOException {
+        byte[] bytes = body == null ? new byte[0] : body.toJSONString(true).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (bytes.length > 0 && acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ENGLISH).contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(bytes);
+            }
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+        exchange.close();
+    }
+
+    private static class FakeBoard {
+        private final int id;
+        private final String name;
+        private final List<ModelNode> swimlanes = new ArrayList<>();
+        private volatile String strategy = "custom";
+
+        FakeBoard(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    private static class NotFoundException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.redhat.eap.jira.kanban.board.editor.commands.Commands;
+import org.redhat.eap.jira.kanban.board.editor.commands.JiraConfiguration;
+
+/**
+ * Starts a {@link FakeJira} containing a number of boards, and a {@link Commands} instance pointing at it.
+ *
+ * @author Kabir Khan
+ */
+@State(Scope.Benchmark)
+public class FakeJiraState {
+    static final String BOARD_NAME = "Benchmark board";
+
+    /**
+     * The latency added to each request by the fake Jira
+     */
+    @Param({"0", "5"})
+    long latencyMs;
+
+    /**
+     * The number of issues in the allData payload
+     */
+    @Param({"500", "5000"})
+    int issues;
+
+    /**
+     * The number of custom swimlanes on the board
+     */
+    @Param({"10", "60"})
+    int swimlanes;
+
+    /**
+     * The number of other boards, which the board search has to page through
+     */
+    @Param({"200"})
+    int otherBoards;
+
+    FakeJira fakeJira;
+    Commands commands;
+    Commands.Board board;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        fakeJira = new FakeJira(latencyMs, issues);
+        for (int i = 0 ; i < otherBoards ; i++) {
+            //These all contain the name of the benchmark board so that the search has to go through them
+            fakeJira.createBoard(BOARD_NAME + " for team " + i, 5);
+        }
+        fakeJira.createBoard(BOARD_NAME, swimlanes);
+
+        System.setProperty("editor.jira.url", fakeJira.getUri().toString());
+        System.setProperty("editor.username", "benchmark");
+        System.setProperty("editor.password", "benchmark");
+        System.setProperty("editor.jira.project", "WFLY");
+        //Measure the requests, not the client side rate limit and caches
+        System.setProperty("editor.rate.limit.per.second", "0");
+        System.setProperty("editor.cache.ttl.seconds", "0");
+        commands = JiraConfiguration.loadConfiguration().createCommands();
+        board = commands.findBoard(BOARD_NAME);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        commands.close();
+        fakeJira.close();
+    }
+}
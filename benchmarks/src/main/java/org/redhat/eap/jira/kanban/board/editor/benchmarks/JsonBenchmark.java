@@ -0,0 +1,137 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MediaType;
+
+import org.jboss.dmr.ModelNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.redhat.eap.jira.kanban.board.editor.commands.ModelNodeWriter;
+
+/**
+ * Measures the jboss-dmr JSON handling used by the commands, on allData payloads of different sizes and on a
+ * typical request body, comparing rendering to a string with the streaming {@link ModelNodeWriter} used for request
+ * bodies.
+ *
+ * @author Kabir Khan
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+    @Param({"500", "5000"})
+    int issues;
+
+    String allDataPayload;
+    ModelNode allData;
+    ModelNode swimlaneRequest;
+    final ModelNodeWriter writer = new ModelNodeWriter();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        try (FakeJira fakeJira = new FakeJira(0, issues)) {
+            allDataPayload = fakeJira.getAllDataPayload(fakeJira.createBoard("Board", 60));
+        }
+        allData = ModelNode.fromJSONString(allDataPayload);
+
+        swimlaneRequest = new ModelNode();
+        swimlaneRequest.get("name").set("Component A");
+        swimlaneRequest.get("query").set("component=\"Component A\"");
+        swimlaneRequest.get("description").set("Swimlane for Component A");
+    }
+
+    @Benchmark
+    public ModelNode parseAllData() {
+        return ModelNode.fromJSONString(allDataPayload);
+    }
+
+    @Benchmark
+    public String renderAllData() {
+        return allData.toJSONString(true);
+    }
+
+    @Benchmark
+    public String renderSwimlaneRequestCompact() {
+        return swimlaneRequest.toJSONString(true);
+    }
+
+    @Benchmark
+    public String renderSwimlaneRequestPretty() {
+        return swimlaneRequest.toJSONString(false);
+    }
+
+    @Benchmark
+    public void encodeSwimlaneRequestString(Blackhole blackhole) {
+        //What the request bodies used to go through: rendered to a string, then encoded by Jersey
+        blackhole.consume(swimlaneRequest.toJSONString(true).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public void writeSwimlaneRequest(Blackhole blackhole) throws IOException {
+        writer.writeTo(swimlaneRequest, ModelNode.class, ModelNode.class, null, MediaType.APPLICATION_JSON_TYPE, null,
+                new BlackholeOutputStream(blackhole));
+    }
+
+    @Benchmark
+    public void writeAllData(Blackhole blackhole) throws IOException {
+        writer.writeTo(allData, ModelNode.class, ModelNode.class, null, MediaType.APPLICATION_JSON_TYPE, null,
+                new BlackholeOutputStream(blackhole));
+    }
+
+    private static class BlackholeOutputStream extends OutputStream {
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.benchmarks;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.redhat.eap.jira.kanban.board.editor.commands.BoardCloner;
+import org.redhat.eap.jira.kanban.board.editor.commands.Commands;
+import org.redhat.eap.jira.kanban.board.editor.commands.JiraConfiguration;
+import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations.JqlSwimlaneConfig;
+import org.redhat.eap.jira.kanban.board.editor.commands.ParallelExecutor;
+import org.redhat.eap.jira.kanban.board.editor.commands.RecordingMetrics;
+
+/**
+ * Runs a number of concurrent simulated tool runs against a {@link FakeJira}, or against a {@link ReplayJira}
+ * replaying a recording, and reports the throughput and latency of the runs and of the requests they made. Options:
+ * <ul>
+ * <li><b>--workload</b> {@code swimlanes}, {@code copy} or {@code mixed} (defaults to mixed)</li>
+ * <li><b>--workers</b> the number of concurrent workers (defaults to 8)</li>
+ * <li><b>--iterations</b> the number of runs each worker does (defaults to 20)</li>
+ * <li><b>--board</b> the prefix of the board names (defaults to {@code Load})</li>
+ * <li><b>--lanes</b> the number of swimlanes on the boards of a {@link FakeJira} (defaults to 20)</li>
+ * <li><b>--latency</b> the latency added to each request in milliseconds (defaults to 0)</li>
+ * <li><b>--replay</b> a directory recorded with {@code editor.record.dir} to replay rather than using a {@link FakeJira}.
+ * {@code --throttle}, {@code --retry-after}, {@code --errors}, {@code --padding} and {@code --seed} are then passed
+ * on to the {@link ReplayJira}</li>
+ * </ul>
+ * Each worker has its own {@link Commands}, like separate runs of the tools would, and works on its own board, called
+ * {@code <board> <n>} for worker n counting from 1. The {@code swimlanes} runs reconcile the board's swimlanes like
+ * {@link org.redhat.eap.jira.kanban.board.editor.SwimlaneCreator} does, alternating between two sets which differ by
+ * an added, a removed and a moved swimlane. The {@code copy} runs clone the board to {@code <board> <n> copy} like
+ * {@link org.redhat.eap.jira.kanban.board.editor.BoardCopier} does. {@code mixed} alternates between the two.
+ * <p>
+ * A recording to replay is made by running the same workload with the same number of workers and swimlanes against
+ * Jira, or a
+ * {@link FakeJira}, with {@code -Deditor.record.dir=<dir>}. Other {@code editor.*} system properties, e.g. the rate
+ * limit, apply as usual.
+ *
+ * @author Kabir Khan
+ */
+public class LoadGenerator {
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args, 0);
+        String workload = options.getOrDefault("workload", "mixed");
+        if (!Arrays.asList("swimlanes", "copy", "mixed").contains(workload)) {
+            throw new IllegalStateException("Unknown workload " + workload);
+        }
+        int workers = Integer.parseInt(options.getOrDefault("workers", "8"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "20"));
+        String boardPrefix = options.getOrDefault("board", "Load");
+        int lanes = Integer.parseInt(options.getOrDefault("lanes", "20"));
+
+        AutoCloseable server;
+        if (options.containsKey("replay")) {
+            ReplayJira replay = ReplayJira.fromOptions(Paths.get(options.get("replay")), options);
+            System.out.println("Replaying " + replay.getRecordedRequests() + " distinct requests from " + options.get("replay"));
+            System.setProperty("editor.jira.url", replay.getUri().toString());
+            server = replay;
+        } else {
+            FakeJira fakeJira = new FakeJira(Long.parseLong(options.getOrDefault("latency", "0")), 100);
+            //The component of the swimlane added by the second swimlane set
+            fakeJira.addComponent("Load");
+            for (int i = 1 ; i <= workers ; i++) {
+                fakeJira.createBoard(boardPrefix + " " + i, lanes);
+                fakeJira.createBoard(boardPrefix + " " + i + " copy", 0);
+            }
+            System.setProperty("editor.jira.url", fakeJira.getUri().toString());
+            server = fakeJira;
+        }
+        setIfAbsent("editor.username", "load");
+        setIfAbsent("editor.password", "load");
+        setIfAbsent("editor.jira.project", "WFLY");
+
+        //The requests made while starting up are not reported
+        RecordingMetrics setupMetrics = new RecordingMetrics();
+        ParallelExecutor workerExecutor = new ParallelExecutor("load", workers);
+        List<Worker> workerList = new ArrayList<>();
+        try {
+            //Start up the clients and find the boards before starting the clock
+            List<Callable<Worker>> setup = new ArrayList<>();
+            for (int i = 1 ; i <= workers ; i++) {
+                String boardName = boardPrefix + " " + i;
+                setup.add(() -> new Worker(setupMetrics, boardName, lanes));
+            }
+            workerList.addAll(workerExecutor.invokeAll(setup));
+            RecordingMetrics metrics = new RecordingMetrics();
+            for (Worker worker : workerList) {
+                worker.commands.setMetrics(metrics);
+            }
+
+            long start = System.nanoTime();
+            List<Callable<Void>> runs = new ArrayList<>();
+            for (Worker worker : workerList) {
+                runs.add(() -> {
+                    worker.run(workload, iterations);
+                    return null;
+                });
+            }
+            workerExecutor.invokeAll(runs);
+            long wallNanos = System.nanoTime() - start;
+
+            report(workerList, wallNanos);
+            metrics.printReport(System.out);
+            if (server instanceof ReplayJira) {
+                ReplayJira replay = (ReplayJira) server;
+                System.out.println("replay: " + replay.getRequests() + " requests, " + replay.getThrottled() + " throttled, "
+                        + replay.getErrors() + " failed, " + replay.getMisses() + " not recorded");
+            }
+        } finally {
+            for (Worker worker : workerList) {
+                worker.commands.close();
+            }
+            workerExecutor.shutdown();
+            server.close();
+        }
+    }
+
+    private static void report(List<Worker> workers, long wallNanos) {
+        List<Long> durations = new ArrayList<>();
+        int failures = 0;
+        for (Worker worker : workers) {
+            durations.addAll(worker.durations);
+            failures += worker.failures;
+        }
+        Collections.sort(durations);
+        double seconds = wallNanos / 1e9;
+        System.out.printf("%d runs (%d failed) by %d workers in %.2fs: %.1f runs/s, p50 %.1fms, p99 %.1fms, max %.1fms%n",
+                durations.size(), failures, workers.size(), seconds, durations.size() / seconds,
+                percentile(durations, 0.5), percentile(durations, 0.99),
+                durations.isEmpty() ? 0 : durations.get(durations.size() - 1) / 1e6);
+    }
+
+    private static double percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index)) / 1e6;
+    }
+
+    /**
+     * Parses {@code --name value} pairs.
+     *
+     * @param args the arguments
+     * @param start the index of the first option
+     * @return the values by name
+     */
+    static Map<String, String> parseOptions(String[] args, int start) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = start ; i < args.length ; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalStateException("Expected --<option> <value> at " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    private static void setIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    private static class Worker {
+        private final Commands commands;
+        private final String boardName;
+        private final JqlSwimlaneConfig[][] swimlaneSets = new JqlSwimlaneConfig[2][];
+        private final List<Long> durations = new ArrayList<>();
+        private int failures;
+
+        Worker(RecordingMetrics metrics, String boardName, int lanes) throws Exception {
+            this.commands = JiraConfiguration.loadConfiguration().createCommands();
+            this.boardName = boardName;
+            commands.setMetrics(metrics);
+            commands.findBoard(boardName);
+
+            List<JqlSwimlaneConfig> set = new ArrayList<>();
+            for (int i = 0 ; i < lanes ; i++) {
+                set.add(JqlSwimlaneConfig.forComponent("Component " + i));
+            }
+            swimlaneSets[0] = set.toArray(new JqlSwimlaneConfig[set.size()]);
+            if (set.size() > 2) {
+                set.remove(0);
+                Collections.swap(set, 0, set.size() - 1);
+            }
+            set.add(set.size() / 2, JqlSwimlaneConfig.forComponent("Load"));
+            swimlaneSets[1] = set.toArray(new JqlSwimlaneConfig[set.size()]);
+        }
+
+        void run(String workload, int iterations) {
+            for (int i = 0 ; i < iterations ; i++) {
+                boolean copy = workload.equals("copy") || (workload.equals("mixed") && i % 2 == 1);
+                long start = System.nanoTime();
+                try {
+                    if (copy) {
+                        new BoardCloner(commands, commands).cloneBoard(boardName, boardName + " copy");
+                    } else {
+                        commands.reconcileJqlSwimlanes(commands.findBoard(boardName), swimlaneSets[i / (workload.equals("mixed") ? 2 : 1) % 2]);
+                    }
+                    durations.add(System.nanoTime() - start);
+                } catch (RuntimeException e) {
+                    if (failures++ < 3) {
+                        System.err.println("Run " + i + " on " + boardName + " failed: " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+}
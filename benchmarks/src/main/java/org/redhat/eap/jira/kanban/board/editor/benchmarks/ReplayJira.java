@@ -0,0 +1,292 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jboss.dmr.ModelNode;
+
+/**
+ * Serves traffic recorded with {@code editor.record.dir} back to the editor, so that it can be run against a local
+ * stand-in for the Jira instance the recording was made against.
+ * <p>
+ * Requests are matched on their method, path and query. The responses recorded for each request are served in the
+ * order they were recorded, starting again from the first once they run out. A conditional response ({@code 304})
+ * is only served to a conditional request; otherwise the last full response recorded before it is served instead.
+ * Requests which were not recorded get a {@code 404}.
+ * <p>
+ * On top of that each request is delayed by the configured latency, and can be turned into a throttled ({@code 429}
+ * with a {@code Retry-After} header) or failed ({@code 503}) response at the configured rates, without using up a
+ * recorded response. Whether the n-th request for a given path is throttled or fails only depends on the seed, so a
+ * run can be repeated. Successful JSON object responses can be padded with an extra field to make them larger.
+ *
+ * @author Kabir Khan
+ */
+public class ReplayJira implements AutoCloseable {
+    private static final String PADDING_FIELD = "replayPadding";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMs;
+    private final double throttleRate;
+    private final int retryAfterSeconds;
+    private final double errorRate;
+    private final String padding;
+    private final long seed;
+    private final Map<String, Recorded> recordings;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param recording the directory the traffic was recorded in
+     * @param latencyMs the delay added to each request
+     * @param throttleRate the fraction of requests which are throttled
+     * @param retryAfterSeconds the {@code Retry-After} of the throttled responses
+     * @param errorRate the fraction of requests which fail
+     * @param paddingBytes the size of the padding added to successful JSON object responses
+     * @param seed the seed deciding which requests are throttled or fail
+     */
+    public ReplayJira(Path recording, long latencyMs, double throttleRate, int retryAfterSeconds, double errorRate,
+                      int paddingBytes, long seed) throws IOException {
+        this.recordings = load(recording);
+        this.latencyMs = latencyMs;
+        this.throttleRate = throttleRate;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.errorRate = errorRate;
+        StringBuilder sb = new StringBuilder(paddingBytes);
+        for (int i = 0 ; i < paddingBytes ; i++) {
+            sb.append('x');
+        }
+        this.padding = sb.toString();
+        this.seed = seed;
+        //Without this the JDK server's Nagle and the client's delayed ACKs add 40ms to each request
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.executor = Executors.newFixedThreadPool(64);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Runs the server until it is killed. The arguments are the recording directory followed by any of
+     * {@code --latency <ms>}, {@code --throttle <rate>}, {@code --retry-after <seconds>}, {@code --errors <rate>},
+     * {@code --padding <bytes>} and {@code --seed <seed>}.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: ReplayJira <recording dir> [--latency ms] [--throttle rate] [--retry-after seconds] "
+                    + "[--errors rate] [--padding bytes] [--seed seed]");
+            System.exit(1);
+        }
+        Map<String, String> options = LoadGenerator.parseOptions(args, 1);
+        ReplayJira replay = fromOptions(Paths.get(args[0]), options);
+        System.out.println("Replaying " + args[0] + " on " + replay.getUri() + ", use it as editor.jira.url");
+        Thread.currentThread().join();
+    }
+
+    static ReplayJira fromOptions(Path recording, Map<String, String> options) throws IOException {
+        return new ReplayJira(recording,
+                Long.parseLong(options.getOrDefault("latency", "0")),
+                Double.parseDouble(options.getOrDefault("throttle", "0")),
+                Integer.parseInt(options.getOrDefault("retry-after", "1")),
+                Double.parseDouble(options.getOrDefault("errors", "0")),
+                Integer.parseInt(options.getOrDefault("padding", "0")),
+                Long.parseLong(options.getOrDefault("seed", "1")));
+    }
+
+    public URI getUri() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    /**
+     * @return the number of distinct requests in the recording
+     */
+    public int getRecordedRequests() {
+        return recordings.size();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getThrottled() {
+        return throttled.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * @return the number of requests which were not in the recording
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+            drain(exchange.getRequestBody());
+            URI uri = exchange.getRequestURI();
+            String key = key(exchange.getRequestMethod(), uri.getRawPath(), uri.getRawQuery());
+            Recorded recorded = recordings.get(key);
+            if (recorded == null) {
+                if (misses.incrementAndGet() <= 10) {
+                    System.err.println("Not in the recording: " + key);
+                }
+                send(exchange, 404, Collections.emptyMap(), null);
+                return;
+            }
+
+            double fault = new SplittableRandom(seed * 31 + key.hashCode() * 0x9E3779B97F4A7C15L + recorded.attempts.getAndIncrement()).nextDouble();
+            if (fault < throttleRate) {
+                throttled.incrementAndGet();
+                send(exchange, 429, Collections.singletonMap("Retry-After", String.valueOf(retryAfterSeconds)), null);
+                return;
+            }
+            if (fault < throttleRate + errorRate) {
+                errors.incrementAndGet();
+                send(exchange, 503, Collections.emptyMap(), null);
+                return;
+            }
+
+            boolean conditional = exchange.getRequestHeaders().containsKey("If-None-Match")
+                    || exchange.getRequestHeaders().containsKey("If-Modified-Since");
+            ModelNode response = recorded.next(conditional);
+            Map<String, String> headers = new HashMap<>();
+            for (String header : response.get("headers").keys()) {
+                headers.put(header, response.get("headers", header).asString());
+            }
+            int status = response.get("status").asInt();
+            String body = response.hasDefined("body") ? response.get("body").asString() : null;
+            if (body != null && padding.length() > 0 && status / 100 == 2 && body.startsWith("{")) {
+                body = "{\"" + PADDING_FIELD + "\":\"" + padding + "\"" + (body.matches("\\{\\s*}") ? "" : ",") + body.substring(1);
+            }
+            send(exchange, status, headers, body);
+        } catch (Exception e) {
+            e.printStackTrace();
+            send(exchange, 500, Collections.emptyMap(), null);
+        }
+    }
+
+    private static Map<String, Recorded> load(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.json")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IllegalStateException("No recorded traffic in " + dir);
+        }
+        //The names are zero padded sequence numbers
+        Collections.sort(files);
+        Map<String, Recorded> recordings = new HashMap<>();
+        for (Path file : files) {
+            ModelNode exchange = ModelNode.fromJSONString(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            String key = key(exchange.get("method").asString(), exchange.get("path").asString(),
+                    exchange.hasDefined("query") ? exchange.get("query").asString() : null);
+            recordings.computeIfAbsent(key, k -> new Recorded()).responses.add(exchange);
+        }
+        return recordings;
+    }
+
+    private static String key(String method, String path, String query) {
+        return method + " " + path + (query == null ? "" : "?" + query);
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1) {
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, Map<String, String> headers, String body) throws IOException {
+        byte[] bytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            exchange.getResponseHeaders().set(header.getKey(), header.getValue());
+        }
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+        exchange.close();
+    }
+
+    /**
+     * The responses recorded for one request.
+     */
+    private static class Recorded {
+        private final List<ModelNode> responses = new ArrayList<>();
+        private final AtomicLong attempts = new AtomicLong();
+        private int next;
+
+        synchronized ModelNode next(boolean conditional) {
+            int index = next;
+            next = (next + 1) % responses.size();
+            ModelNode response = responses.get(index);
+            if (!conditional && response.get("status").asInt() == 304) {
+                for (int i = index - 1 ; i >= 0 ; i--) {
+                    if (responses.get(i).get("status").asInt() != 304) {
+                        return responses.get(i);
+                    }
+                }
+            }
+            return response;
+        }
+    }
+}
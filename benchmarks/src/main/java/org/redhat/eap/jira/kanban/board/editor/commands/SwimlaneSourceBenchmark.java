@@ -0,0 +1,81 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.jboss.dmr.ModelNode;
+
+/**
+ * Compares the payload size, fetch time and parse time (full model node tree vs streaming) of the places {@link Commands#getSwimlanes(Commands.Board)}
+ * can read a board's swimlanes from. Pass in the board name and optionally the number of iterations (defaults to 10).
+ * It lives in the {@code commands} package to get at the package protected sources.
+ *
+ * @author Kabir Khan
+ */
+public class SwimlaneSourceBenchmark {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: SwimlaneSourceBenchmark <board name> [iterations]");
+            System.exit(1);
+        }
+        String boardName = args[0];
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        JiraConfiguration jiraConfiguration = JiraConfiguration.loadConfiguration();
+        try (Commands commands = jiraConfiguration.createCommands()) {
+            Commands.Board board = commands.findBoard(boardName);
+            System.out.println("source       bytes        fetch(ms)  parse(ms)  stream(ms) swimlanes");
+            for (Commands.SwimlaneSource source : Commands.SwimlaneSource.values()) {
+                //Warm up
+                ModelNode.fromJSONString(commands.getSwimlanesPayload(board, source));
+
+                long bytes = 0;
+                long fetchNanos = 0;
+                long parseNanos = 0;
+                long streamNanos = 0;
+                int swimlanes = 0;
+                for (int i = 0 ; i < iterations ; i++) {
+                    long start = System.nanoTime();
+                    String payload = commands.getSwimlanesPayload(board, source);
+                    long fetched = System.nanoTime();
+                    ModelNode.fromJSONString(payload);
+                    long treeParsed = System.nanoTime();
+                    byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+                    long streamStart = System.nanoTime();
+                    Commands.BoardSwimlanes parsed = source.read(new ByteArrayInputStream(payloadBytes));
+                    long end = System.nanoTime();
+
+                    bytes = payloadBytes.length;
+                    fetchNanos += fetched - start;
+                    parseNanos += treeParsed - fetched;
+                    streamNanos += end - streamStart;
+                    swimlanes = parsed == null ? -1 : parsed.getSwimlanes().size();
+                }
+                System.out.println(String.format("%-12s %-12d %-10.2f %-10.2f %-10.2f %d", source, bytes,
+                        fetchNanos / iterations / 1000000.0, parseNanos / iterations / 1000000.0,
+                        streamNanos / iterations / 1000000.0, swimlanes));
+            }
+        }
+    }
+}
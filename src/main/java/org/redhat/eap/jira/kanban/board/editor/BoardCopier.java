@@ -21,33 +21,42 @@
  */
 package org.redhat.eap.jira.kanban.board.editor;
 
+import org.redhat.eap.jira.kanban.board.editor.commands.BoardCloner;
 import org.redhat.eap.jira.kanban.board.editor.commands.Commands;
 import org.redhat.eap.jira.kanban.board.editor.commands.JiraConfiguration;
 
 /**
+ * Copies a board's configuration to another board, which is created if it does not exist. The arguments are the
+ * source board name, the target board name, and optionally the prefix of the {@link JiraConfiguration} keys for
+ * the Jira instance to copy to (e.g. {@code target.}) if it is not the same one.
+ *
  * @author Kabir Khan
  */
 public class BoardCopier {
     public static void main(String[] args) throws Exception {
-        //TODO make sure these are configurable
-        String sourceName = "Throwaway";
-        String targetName = "Copy of Throwaway";
+        try (ToolContext context = new ToolContext()) {
+            int status = run(context, args);
+            if (status != 0) {
+                System.exit(status);
+            }
+        }
+    }
 
+    static int run(ToolContext context, String[] args) throws Exception {
+        String sourceName = args.length > 0 ? args[0] : "Throwaway";
+        String targetName = args.length > 1 ? args[1] : "Copy of Throwaway";
 
-        JiraConfiguration jiraConfiguration = JiraConfiguration.loadConfiguration();
-        Commands commands = jiraConfiguration.createCommands();
-        Commands.Board source = commands.findBoard(sourceName);
+        Commands commands = context.getCommands();
+        Commands targetCommands = args.length > 2 ? context.getCommands(args[2]) : commands;
 
-        Commands.Board oldTarget = null;
-        try {
-            oldTarget = commands.findBoard(targetName);
-        } catch (IllegalStateException e) {
-        }
-        if (oldTarget != null) {
-            commands.deleteBoard(oldTarget.getId());
-        }
-        Commands.Board newBoard = commands.copyBoard(source, targetName + System.currentTimeMillis());
+        Commands.Board board = new BoardCloner(commands, targetCommands).cloneBoard(sourceName, targetName);
+        System.out.println("Copied " + sourceName + " to " + targetName + " (" + board.getId() + ")");
 
+        commands.reportMetrics(System.out);
+        if (targetCommands != commands) {
+            targetCommands.reportMetrics(System.out);
+        }
         System.out.println("done");
+        return 0;
     }
 }
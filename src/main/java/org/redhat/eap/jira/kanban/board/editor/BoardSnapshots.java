@@ -0,0 +1,188 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.redhat.eap.jira.kanban.board.editor.commands.BoardSnapshot;
+import org.redhat.eap.jira.kanban.board.editor.commands.Commands;
+import org.redhat.eap.jira.kanban.board.editor.commands.JiraConfiguration;
+import org.redhat.eap.jira.kanban.board.editor.commands.ParallelExecutor;
+import org.redhat.eap.jira.kanban.board.editor.commands.SnapshotStore;
+
+/**
+ * Maintains the board configuration snapshots in the {@link SnapshotStore} in {@code editor.snapshot.dir}. Usage:
+ * <ul>
+ * <li><b>capture [name filter]</b> stores the current configuration of all kanban boards, or those whose name
+ * contains the filter, if it changed since the last capture</li>
+ * <li><b>list [board id]</b> lists the boards in the store, or the stored versions of a board</li>
+ * <li><b>diff &lt;board id&gt; [version [version]]</b> compares two stored versions, or a stored version (the latest
+ * by default) against the live board. Versions are numbered from 1 as shown by {@code list}</li>
+ * <li><b>export &lt;file&gt; [board id...]</b> writes the latest version of all or the given boards to a file, one
+ * JSON object per line. The file is gzipped if its name ends with {@code .gz}</li>
+ * </ul>
+ *
+ * @author Kabir Khan
+ */
+public class BoardSnapshots {
+    public static void main(String[] args) throws Exception {
+        try (ToolContext context = new ToolContext()) {
+            int status = run(context, args);
+            if (status != 0) {
+                System.exit(status);
+            }
+        }
+    }
+
+    static int run(ToolContext context, String[] args) throws Exception {
+        if (args.length == 0) {
+            return usage();
+        }
+        JiraConfiguration jiraConfiguration = context.getConfiguration();
+        SnapshotStore store = SnapshotStore.open(context.resolve(jiraConfiguration.getSnapshotDir()));
+        switch (args[0]) {
+            case "capture":
+                capture(context, store, args.length > 1 ? args[1] : null);
+                break;
+            case "list":
+                list(store, args);
+                break;
+            case "diff":
+                if (args.length < 2 || args.length > 4) {
+                    return usage();
+                }
+                diff(context, store, args);
+                break;
+            case "export":
+                if (args.length < 2) {
+                    return usage();
+                }
+                export(context, store, args);
+                break;
+            default:
+                return usage();
+        }
+        System.out.println("done");
+        return 0;
+    }
+
+    private static int usage() {
+        System.err.println("Usage: BoardSnapshots capture [name filter] | list [board id] | diff <board id> [version [version]] | export <file> [board id...]");
+        return 1;
+    }
+
+    private static void capture(ToolContext context, SnapshotStore store, String nameFilter) throws Exception {
+        JiraConfiguration jiraConfiguration = context.getConfiguration();
+        Commands commands = context.getCommands();
+        List<Commands.Board> boards;
+        try (Stream<Commands.Board> stream = commands.listBoards(nameFilter)) {
+            boards = stream.collect(Collectors.toList());
+        }
+        //The captures use the Commands executors themselves, so they must not run on one of those
+        ParallelExecutor boardExecutor = new ParallelExecutor("snapshots", jiraConfiguration.getFleetParallelism(), jiraConfiguration.isVirtualThreads());
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (Commands.Board board : boards) {
+            tasks.add(() -> {
+                long before = System.currentTimeMillis();
+                BoardSnapshot snapshot = store.capture(commands, board);
+                boolean changed = snapshot.getCapturedAt() >= before;
+                return board.getName() + " (" + board.getId() + "): " + (changed ? "new version " : "unchanged ") + snapshot.getHash();
+            });
+        }
+        try {
+            boardExecutor.invokeAll(tasks).forEach(System.out::println);
+        } finally {
+            boardExecutor.shutdown();
+        }
+        commands.reportMetrics(System.out);
+    }
+
+    private static void list(SnapshotStore store, String[] args) throws Exception {
+        if (args.length > 1) {
+            List<BoardSnapshot> versions = store.getVersions(Integer.parseInt(args[1]));
+            for (int i = 0 ; i < versions.size() ; i++) {
+                BoardSnapshot version = versions.get(i);
+                System.out.println((i + 1) + "\t" + new Date(version.getCapturedAt()) + "\t" + version.getHash() + "\t" + version.getBoardName());
+            }
+            return;
+        }
+        for (int boardId : store.getBoardIds()) {
+            List<BoardSnapshot> versions = store.getVersions(boardId);
+            BoardSnapshot latest = versions.get(versions.size() - 1);
+            System.out.println(boardId + "\t" + latest.getBoardName() + "\t" + versions.size() + " versions, latest " + new Date(latest.getCapturedAt()));
+        }
+    }
+
+    private static void diff(ToolContext context, SnapshotStore store, String[] args) throws Exception {
+        List<BoardSnapshot> versions = store.getVersions(Integer.parseInt(args[1]));
+        if (versions.isEmpty()) {
+            throw new IllegalStateException("There are no snapshots of board " + args[1]);
+        }
+        BoardSnapshot from = args.length > 2 ? version(versions, args[2]) : versions.get(versions.size() - 1);
+        final BoardSnapshot to;
+        if (args.length > 3) {
+            to = version(versions, args[3]);
+        } else {
+            Commands commands = context.getCommands();
+            to = SnapshotStore.live(commands, commands.findBoard(versions.get(versions.size() - 1).getBoardName()));
+        }
+        List<String> diffs = SnapshotStore.diff(from, to);
+        if (diffs.isEmpty()) {
+            System.out.println("No differences");
+        }
+        diffs.forEach(System.out::println);
+    }
+
+    private static BoardSnapshot version(List<BoardSnapshot> versions, String number) {
+        int index = Integer.parseInt(number) - 1;
+        if (index < 0 || index >= versions.size()) {
+            throw new IllegalStateException("There is no version " + number + ", there are " + versions.size());
+        }
+        return versions.get(index);
+    }
+
+    private static void export(ToolContext context, SnapshotStore store, String[] args) throws Exception {
+        List<Integer> boardIds = new ArrayList<>();
+        for (int i = 2 ; i < args.length ; i++) {
+            boardIds.add(Integer.valueOf(args[i]));
+        }
+        if (boardIds.isEmpty()) {
+            boardIds = store.getBoardIds();
+        }
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(context.resolve(args[1])));
+        if (args[1].endsWith(".gz")) {
+            out = new GZIPOutputStream(out);
+        }
+        try (OutputStream o = out) {
+            System.out.println("Exported " + store.export(boardIds, o) + " boards to " + args[1]);
+        }
+    }
+}
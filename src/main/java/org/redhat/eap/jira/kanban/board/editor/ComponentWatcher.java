@@ -0,0 +1,245 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor;
+
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.redhat.eap.jira.kanban.board.editor.commands.Commands;
+import org.redhat.eap.jira.kanban.board.editor.commands.JiraConfiguration;
+import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations.JqlSwimlaneConfig;
+import org.redhat.eap.jira.kanban.board.editor.commands.ParallelExecutor;
+import org.redhat.eap.jira.kanban.board.editor.commands.SwimlaneBatch;
+
+/**
+ * Keeps the component swimlanes of a number of boards in line with the components of the project. The boards are
+ * listed in a file passed in as the first argument, one board name per line. Empty lines and lines starting with
+ * {@code #} are ignored.
+ * <p/>
+ * A component swimlane is one whose query selects a single component. All the boards are brought in line when the
+ * tool starts. After that the project's components are polled every {@code editor.watch.interval.seconds}, which is
+ * a conditional request or else only a comparison of hashes, and the boards are only looked at again once the
+ * components have changed. Each board then gets a swimlane for each new component, next to the component swimlanes it
+ * sorts between, and loses the ones for removed components. Only swimlanes whose query is exactly the one made from
+ * the {@code component="<name>"} template, as the ones this tool creates are, are ever removed; hand made component
+ * swimlanes and all other swimlanes are left alone. Boards which could not be updated are tried again on the next
+ * poll.
+ * <p/>
+ * If {@code editor.journal} is set, the changes to each board are journaled as a run, and a run which was interrupted
+ * is resumed before its board is looked at again.
+ * <p/>
+ * The tool runs until it is killed, unless {@code --once} is passed after the board file, in which case it exits after
+ * bringing the boards in line. It then exits with a non-zero status if the components could not be read or any board
+ * could not be brought in line.
+ *
+ * @author Kabir Khan
+ */
+public class ComponentWatcher {
+    public static void main(String[] args) throws Exception {
+        try (ToolContext context = new ToolContext()) {
+            int status = run(context, args);
+            if (status != 0) {
+                System.exit(status);
+            }
+        }
+    }
+
+    static int run(ToolContext context, String[] args) throws Exception {
+        if (args.length != 1 && !(args.length == 2 && args[1].equals("--once"))) {
+            System.err.println("Usage: ComponentWatcher <board file> [--once]");
+            return 1;
+        }
+        boolean once = args.length == 2;
+        List<String> boardNames = readBoardNames(context.resolve(args[0]));
+
+        JiraConfiguration jiraConfiguration = context.getConfiguration();
+        Commands commands = context.getCommands();
+        ParallelExecutor boardExecutor = new ParallelExecutor("watch", jiraConfiguration.getFleetParallelism(), jiraConfiguration.isVirtualThreads());
+        try {
+            Set<String> syncedComponents = null;
+            Set<String> pending = new LinkedHashSet<>();
+            while (true) {
+                boolean polled = false;
+                try {
+                    Set<String> components = commands.pollProjectComponents();
+                    polled = true;
+                    //The same instance is returned if nothing has changed
+                    if (components != syncedComponents) {
+                        log(components.size() + " components, checking " + boardNames.size() + " boards");
+                        syncedComponents = components;
+                        pending.addAll(boardNames);
+                    }
+                    if (pending.size() > 0) {
+                        pending = syncBoards(commands, boardExecutor, pending, components);
+                    }
+                } catch (RuntimeException e) {
+                    log("Could not read the components: " + e.getMessage());
+                }
+                if (once) {
+                    commands.reportMetrics(System.out);
+                    return polled && pending.isEmpty() ? 0 : 1;
+                }
+                Thread.sleep(jiraConfiguration.getWatchIntervalSeconds() * 1000L);
+            }
+        } finally {
+            boardExecutor.shutdown();
+        }
+    }
+
+    /**
+     * @return the names of the boards which could not be brought in line
+     */
+    private static Set<String> syncBoards(Commands commands, ParallelExecutor boardExecutor, Set<String> boardNames, Set<String> components) {
+        //Resume any run which was interrupted, here or by a previous process. A board whose run cannot be resumed
+        //fails below, when its new run is begun, and stays pending
+        commands.recoverJournal(false);
+        List<String> names = new ArrayList<>(boardNames);
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (String boardName : names) {
+            tasks.add(() -> {
+                try {
+                    String changes = syncBoard(commands, commands.findBoard(boardName), components);
+                    if (changes != null) {
+                        log(boardName + ": " + changes);
+                    }
+                    return null;
+                } catch (RuntimeException e) {
+                    log("FAILED " + boardName + ": " + e.getMessage());
+                    return boardName;
+                }
+            });
+        }
+        Set<String> failed = new LinkedHashSet<>();
+        for (String failedBoard : boardExecutor.invokeAll(tasks)) {
+            if (failedBoard != null) {
+                failed.add(failedBoard);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * @return a description of the changes made, or {@code null} if the board was already in line
+     */
+    static String syncBoard(Commands commands, Commands.Board board, Set<String> components) {
+        SwimlaneBatch batch = commands.newSwimlaneBatch(board);
+        //The ids of the kept swimlanes in board order, and their components for those which are component swimlanes
+        List<Integer> order = new ArrayList<>();
+        List<String> orderComponents = new ArrayList<>();
+        Map<String, Integer> componentSwimlanes = new HashMap<>();
+        List<String> removed = new ArrayList<>();
+        for (Commands.Swimlane swimlane : batch.getExisting().getSwimlanes()) {
+            if (swimlane.isDefaultSwimlane()) {
+                continue;
+            }
+            String component = JqlSwimlaneConfig.getComponent(swimlane.getQuery());
+            //Only remove the swimlanes we would have made, not hand made ones which happen to select a single component
+            boolean generated = component != null
+                    && JqlSwimlaneConfig.forComponent(component).getJql().equals(swimlane.getQuery());
+            if (generated && !components.contains(component)) {
+                batch.delete(swimlane.getId());
+                removed.add(component);
+                continue;
+            }
+            if (component != null) {
+                componentSwimlanes.put(component.toLowerCase(Locale.ENGLISH), swimlane.getId());
+            }
+            order.add(swimlane.getId());
+            orderComponents.add(component);
+        }
+
+        List<String> added = new ArrayList<>();
+        for (String component : components) {
+            if (componentSwimlanes.containsKey(component.toLowerCase(Locale.ENGLISH))) {
+                continue;
+            }
+            int placeholder = batch.create(JqlSwimlaneConfig.forComponent(component));
+            //After the last component swimlane sorting before it, or else before the first component swimlane
+            int position = -1;
+            int first = -1;
+            for (int i = 0 ; i < orderComponents.size() ; i++) {
+                String other = orderComponents.get(i);
+                if (other != null) {
+                    first = first < 0 ? i : first;
+                    if (other.compareToIgnoreCase(component) < 0) {
+                        position = i + 1;
+                    }
+                }
+            }
+            if (position < 0) {
+                position = first >= 0 ? first : order.size();
+            }
+            order.add(position, placeholder);
+            orderComponents.add(position, component);
+            added.add(component);
+        }
+
+        if (added.isEmpty() && removed.isEmpty()) {
+            return null;
+        }
+        //Hand made swimlanes are kept as they are, so the wanted swimlanes are not recorded and an interrupted run
+        //is resumed by replaying its unfinished changes. The next sync sorts out anything else
+        commands.beginJournalRun(board, null);
+        if (added.size() > 0) {
+            if (!Commands.SwimLaneStrategy.QUERIES.getJsonValue().equals(batch.getExisting().getStrategy())) {
+                commands.setSwimlaneStrategy(board, Commands.SwimLaneStrategy.QUERIES);
+            }
+            batch.order(order);
+        }
+        batch.apply();
+        commands.commitJournalRun(board);
+        return "added " + added + ", removed " + removed;
+    }
+
+    private static List<String> readBoardNames(Path file) throws Exception {
+        Set<String> boardNames = new LinkedHashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    boardNames.add(line);
+                }
+            }
+        }
+        if (boardNames.isEmpty()) {
+            throw new IllegalStateException("No boards in " + file);
+        }
+        return new ArrayList<>(boardNames);
+    }
+
+    private static void log(String message) {
+        System.out.println(LocalTime.now().truncatedTo(ChronoUnit.SECONDS) + " " + message);
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.List;
+
+import org.jboss.dmr.ModelNode;
+
+/**
+ * Runs the tools for {@link Main} in a long lived JVM. The daemon only listens on the loopback interface, and writes
+ * its port and a random token to {@code ~/.jira-kanban-board-editor-daemon}, readable only by the user, so that only
+ * the user who started it can use it.
+ * <p/>
+ * A request is the token, followed by the working directory and the arguments as a JSON object. Nothing else is read
+ * from a caller which does not send the right token, and it gets no response. The response is a sequence of frames,
+ * each a type byte followed by an int and for output the bytes: {@code O} for standard output, {@code E} for
+ * standard error, and {@code X} with the exit status as the last frame. A malformed request gets an error message
+ * and exit status 1. A request with {@code ping} instead of the arguments just gets exit status 0; a daemon uses it to
+ * check that the one recorded in the file is gone before replacing it. Requests are handled one at a time, since the tools' output is captured by replacing
+ * {@link System#out} and {@link System#err}, so a caller which does not send its request in time is dropped.
+ *
+ * @author Kabir Khan
+ */
+class Daemon {
+    private static final Path INFO_FILE = Paths.get(System.getProperty("user.home"), ".jira-kanban-board-editor-daemon");
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    private static final int REQUEST_TIMEOUT_MS = 10000;
+    private static final byte OUT = 'O';
+    private static final byte ERR = 'E';
+    private static final byte EXIT = 'X';
+
+    static void serve(int port) throws Exception {
+        if (Files.exists(INFO_FILE)) {
+            String[] info = readInfo();
+            if (isRunning(info)) {
+                throw new IllegalStateException("A daemon is already running on port " + info[0]
+                        + ". Stop it first, or delete " + INFO_FILE + " if it is not a daemon");
+            }
+        }
+        byte[] random = new byte[16];
+        new SecureRandom().nextBytes(random);
+        String token = hex(random);
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+             ToolContext context = new ToolContext()) {
+            writeInfo(server.getLocalPort(), token);
+            System.out.println("Daemon listening on " + server.getLocalSocketAddress());
+            try {
+                boolean running = true;
+                while (running) {
+                    try (Socket socket = server.accept()) {
+                        running = handle(socket, context, token);
+                    } catch (IOException | RuntimeException e) {
+                        //Whatever a caller sends, the daemon keeps running
+                        originalErr.println("Daemon request failed: " + e);
+                    } finally {
+                        System.setOut(originalOut);
+                        System.setErr(originalErr);
+                    }
+                }
+            } finally {
+                //Only remove it if another daemon has not replaced it
+                if (Files.exists(INFO_FILE) && readInfo()[1].equals(token)) {
+                    Files.delete(INFO_FILE);
+                }
+            }
+        }
+        System.out.println("Daemon stopped");
+    }
+
+    private static boolean handle(Socket socket, ToolContext context, String token) throws IOException {
+        //Only the reading of the request is limited, not the running of the tool
+        socket.setSoTimeout(REQUEST_TIMEOUT_MS);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), in.readUTF().getBytes(StandardCharsets.UTF_8))) {
+            //Don't tell the caller anything
+            return true;
+        }
+        final Path dir;
+        final String[] args;
+        try {
+            ModelNode request = ModelNode.fromJSONString(in.readUTF());
+            if (request.has("ping")) {
+                exit(out, 0);
+                return true;
+            }
+            dir = Paths.get(request.require("dir").asString());
+            List<ModelNode> argList = request.require("args").asList();
+            args = new String[argList.size()];
+            for (int i = 0 ; i < args.length ; i++) {
+                args[i] = argList.get(i).asString();
+            }
+        } catch (RuntimeException e) {
+            error(out, "Invalid daemon request: " + e);
+            return true;
+        }
+        if (args.length > 0 && args[0].equals("stop")) {
+            exit(out, 0);
+            return false;
+        }
+
+        PrintStream toolOut = new PrintStream(new FrameOutputStream(out, OUT), true, "UTF-8");
+        PrintStream toolErr = new PrintStream(new FrameOutputStream(out, ERR), true, "UTF-8");
+        System.setOut(toolOut);
+        System.setErr(toolErr);
+        int status;
+        try {
+            context.setWorkingDirectory(dir);
+            context.refresh();
+            status = Main.run(context, args);
+        } catch (Exception e) {
+            e.printStackTrace();
+            status = 1;
+        }
+        toolOut.flush();
+        toolErr.flush();
+        exit(out, status);
+        return true;
+    }
+
+    /**
+     * Runs the tool in the daemon, if there is one.
+     *
+     * @param args the arguments to {@link Main}
+     * @return the exit status, or {@code null} if there is no daemon running
+     */
+    static Integer forward(String[] args) throws IOException {
+        if (!Files.exists(INFO_FILE)) {
+            return null;
+        }
+        String[] info = readInfo();
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(info[0])), CONNECT_TIMEOUT_MS);
+        } catch (IOException e) {
+            //The daemon died without cleaning up
+            socket.close();
+            return null;
+        }
+        try {
+            ModelNode request = new ModelNode();
+            request.get("dir").set(Paths.get("").toAbsolutePath().toString());
+            ModelNode argList = request.get("args").setEmptyList();
+            for (String arg : args) {
+                argList.add(arg);
+            }
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeUTF(info[1]);
+            out.writeUTF(request.toJSONString(true));
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            byte[] buffer = new byte[8192];
+            while (true) {
+                byte type = in.readByte();
+                int length = in.readInt();
+                if (type == EXIT) {
+                    System.out.flush();
+                    return length;
+                }
+                if (buffer.length < length) {
+                    buffer = new byte[length];
+                }
+                in.readFully(buffer, 0, length);
+                (type == ERR ? System.err : System.out).write(buffer, 0, length);
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Checks whether the daemon recorded in the file is still there, by pinging it with its token.
+     *
+     * @param info the port and token read from the file
+     * @return {@code true} if it answered, or accepted the connection but is too busy running a tool to answer
+     */
+    private static boolean isRunning(String[] info) throws IOException {
+        try (Socket socket = new Socket()) {
+            try {
+                socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(info[0])), CONNECT_TIMEOUT_MS);
+            } catch (IOException e) {
+                //Nothing listening, the daemon died without cleaning up
+                return false;
+            }
+            ModelNode request = new ModelNode();
+            request.get("ping").set(true);
+            try {
+                socket.setSoTimeout(REQUEST_TIMEOUT_MS);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.writeUTF(info[1]);
+                out.writeUTF(request.toJSONString(true));
+                out.flush();
+                return new DataInputStream(new BufferedInputStream(socket.getInputStream())).readByte() == EXIT;
+            } catch (SocketTimeoutException e) {
+                return true;
+            } catch (IOException e) {
+                //Something else is listening on the port, which does not know the token
+                return false;
+            }
+        }
+    }
+
+    private static void error(DataOutputStream out, String message) throws IOException {
+        byte[] bytes = (message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        synchronized (out) {
+            out.writeByte(ERR);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        exit(out, 1);
+    }
+
+    private static void exit(DataOutputStream out, int status) throws IOException {
+        synchronized (out) {
+            out.writeByte(EXIT);
+            out.writeInt(status);
+            out.flush();
+        }
+    }
+
+    private static void writeInfo(int port, String token) throws IOException {
+        Files.deleteIfExists(INFO_FILE);
+        try {
+            Files.createFile(INFO_FILE, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            //Not a POSIX file system
+            Files.createFile(INFO_FILE);
+        }
+        Files.write(INFO_FILE, (port + " " + token).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] readInfo() throws IOException {
+        String info = new String(Files.readAllBytes(INFO_FILE), StandardCharsets.UTF_8).trim();
+        String[] parts = info.split(" ");
+        if (parts.length != 2) {
+            throw new IllegalStateException("Could not read " + INFO_FILE + ", delete it if no daemon is running");
+        }
+        return parts;
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Sends what a tool writes to one of its streams to the caller as frames.
+     */
+    private static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte type;
+
+        FrameOutputStream(DataOutputStream out, byte type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+}
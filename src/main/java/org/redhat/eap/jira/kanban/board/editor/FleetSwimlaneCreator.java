@@ -0,0 +1,183 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor;
+
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.redhat.eap.jira.kanban.board.editor.commands.Commands;
+import org.redhat.eap.jira.kanban.board.editor.commands.JiraConfiguration;
+import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations;
+import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations.JqlSwimlaneConfig;
+import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations.JqlSwimlaneSet;
+import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations.SwimlaneSet;
+import org.redhat.eap.jira.kanban.board.editor.commands.ParallelExecutor;
+
+/**
+ * Applies swimlane sets to a lot of boards in one go. The boards are listed in a manifest file passed in as the
+ * first argument, with one {@code <board name>=<swimlane set>} entry per line. The swimlane set is either the name of
+ * a built in {@link JqlSwimlaneSet} or a swimlane set definition file, relative to the manifest's directory (see
+ * {@link JqlSwimlaneConfigurations}). Empty lines and lines starting with {@code #} are ignored.
+ *
+ * All boards share the same {@link Commands} instance, so {@code editor.max.requests.in.flight} caps the number of
+ * requests sent to Jira across all of them. The queries of all the swimlane sets are checked before any board is
+ * changed. A failure on one board does not stop the others; a summary is printed at the end.
+ * <p/>
+ * If {@code editor.journal} is set, the runs interrupted last time are resumed first. A run which cannot be resumed
+ * is left in the journal and fails its board, if it is in the manifest, without stopping the others. Passing
+ * {@code --rollback} after the manifest instead restores the swimlanes those boards had before, and does nothing
+ * else.
+ *
+ * @author Kabir Khan
+ */
+public class FleetSwimlaneCreator {
+    public static void main(String[] args) throws Exception {
+        try (ToolContext context = new ToolContext()) {
+            int status = run(context, args);
+            if (status != 0) {
+                System.exit(status);
+            }
+        }
+    }
+
+    static int run(ToolContext context, String[] args) throws Exception {
+        if (args.length != 1 && !(args.length == 2 && args[1].equals("--rollback"))) {
+            System.err.println("Usage: FleetSwimlaneCreator <manifest file> [--rollback]");
+            return 1;
+        }
+        boolean rollback = args.length == 2;
+        Map<String, SwimlaneSet> manifest = readManifest(context.resolve(args[0]));
+
+        JiraConfiguration jiraConfiguration = context.getConfiguration();
+        Commands commands = context.getCommands();
+        if (!rollback) {
+            //Check all the queries before any board is touched
+            commands.preflight(new LinkedHashSet<>(manifest.values()));
+        }
+        Map<String, RuntimeException> unrecovered = commands.recoverJournal(rollback);
+        if (rollback) {
+            System.out.println("done" + (unrecovered.isEmpty() ? "" : ": " + unrecovered.size() + " runs could not be rolled back"));
+            return unrecovered.isEmpty() ? 0 : 1;
+        }
+        ParallelExecutor boardExecutor = new ParallelExecutor("fleet", jiraConfiguration.getFleetParallelism(), jiraConfiguration.isVirtualThreads());
+
+        List<Callable<BoardResult>> tasks = new ArrayList<>();
+        for (Map.Entry<String, SwimlaneSet> entry : manifest.entrySet()) {
+            RuntimeException recoveryError = unrecovered.get(entry.getKey());
+            if (recoveryError != null) {
+                //Leave the board alone until its interrupted run has been dealt with
+                tasks.add(() -> new BoardResult(entry.getKey(), 0, new IllegalStateException(
+                        "The interrupted run on this board could not be resumed: " + recoveryError.getMessage(), recoveryError)));
+            } else {
+                tasks.add(() -> applySwimlanes(commands, entry.getKey(), entry.getValue()));
+            }
+        }
+        List<BoardResult> results;
+        try {
+            results = boardExecutor.invokeAll(tasks);
+        } finally {
+            boardExecutor.shutdown();
+        }
+
+        int failures = 0;
+        for (BoardResult result : results) {
+            System.out.println(result);
+            if (result.error != null) {
+                failures++;
+            }
+        }
+        commands.reportMetrics(System.out);
+        System.out.println("done: " + (results.size() - failures) + " boards updated, " + failures + " failed"
+                + (unrecovered.isEmpty() ? "" : ", " + unrecovered.size() + " interrupted runs could not be resumed"));
+        return failures > 0 || !unrecovered.isEmpty() ? 1 : 0;
+    }
+
+    private static BoardResult applySwimlanes(Commands commands, String boardName, SwimlaneSet swimlaneSet) {
+        long start = System.currentTimeMillis();
+        try {
+            Commands.Board board = commands.findBoard(boardName);
+            JqlSwimlaneConfig[] swimlaneConfigs = swimlaneSet.getSwimlaneConfigs();
+            commands.beginJournalRun(board, swimlaneConfigs);
+            commands.reconcileJqlSwimlanes(board, swimlaneConfigs);
+            commands.commitJournalRun(board);
+            return new BoardResult(boardName, System.currentTimeMillis() - start, null);
+        } catch (RuntimeException e) {
+            return new BoardResult(boardName, System.currentTimeMillis() - start, e);
+        }
+    }
+
+    private static Map<String, SwimlaneSet> readManifest(Path manifestFile) throws Exception {
+        Map<String, SwimlaneSet> manifest = new LinkedHashMap<>();
+        String fileName = manifestFile.toString();
+        try (BufferedReader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                //Board names may contain '=', swimlane set names and files don't
+                int index = line.lastIndexOf('=');
+                if (index <= 0) {
+                    throw new IllegalStateException("Line " + lineNumber + " of " + fileName + " is not in the format <board name>=<swimlane set>: " + line);
+                }
+                String boardName = line.substring(0, index).trim();
+                //Loading all the sets up front means a broken one is reported before any board is touched
+                SwimlaneSet set = JqlSwimlaneConfigurations.getSwimlaneSet(line.substring(index + 1).trim(), manifestFile.getParent());
+                if (manifest.put(boardName, set) != null) {
+                    throw new IllegalStateException("Board " + boardName + " appears more than once in " + fileName);
+                }
+            }
+        }
+        return manifest;
+    }
+
+    private static class BoardResult {
+        private final String boardName;
+        private final long durationMs;
+        private final RuntimeException error;
+
+        BoardResult(String boardName, long durationMs, RuntimeException error) {
+            this.boardName = boardName;
+            this.durationMs = durationMs;
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            if (error == null) {
+                return "OK     " + boardName + " (" + durationMs + "ms)";
+            }
+            return "FAILED " + boardName + " (" + durationMs + "ms): " + error.getMessage();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The command line entry point for all the tools. The first argument is the tool, the rest are passed on to it:
+ * <ul>
+ * <li><b>swimlanes</b> [board] [swimlane set] [--rollback], see {@link SwimlaneCreator}</li>
+ * <li><b>fleet</b> &lt;manifest&gt; [--rollback], see {@link FleetSwimlaneCreator}</li>
+ * <li><b>copy</b> &lt;source board&gt; &lt;target board&gt; [target configuration prefix], see {@link BoardCopier}</li>
+ * <li><b>snapshots</b> capture|list|diff|export ..., see {@link BoardSnapshots}</li>
+ * <li><b>analyze</b> [board] [swimlane set], see {@link SwimlaneAnalyzer}</li>
+ * <li><b>watch</b> &lt;board file&gt; [--once], see {@link ComponentWatcher}. It is long running, so it is never
+ * run by the daemon</li>
+ * </ul>
+ * Starting up Jersey takes a lot longer than most of the tools take to run, so {@code daemon [port]} starts a daemon
+ * which keeps its client warm. While it is running the tools are run by the daemon rather than in a new JVM, one at a
+ * time, with their output sent back. {@code stop} stops it. Relative file names are resolved against the working
+ * directory of the invocation, but the configuration is the one the daemon was started with. The request metrics
+ * reported are those since the daemon started.
+ *
+ * @author Kabir Khan
+ */
+public class Main {
+    private static final Map<String, Tool> TOOLS = new LinkedHashMap<>();
+    static {
+        TOOLS.put("swimlanes", SwimlaneCreator::run);
+        TOOLS.put("fleet", FleetSwimlaneCreator::run);
+        TOOLS.put("copy", BoardCopier::run);
+        TOOLS.put("snapshots", BoardSnapshots::run);
+        TOOLS.put("analyze", SwimlaneAnalyzer::run);
+        TOOLS.put("watch", ComponentWatcher::run);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            usage();
+            System.exit(1);
+        }
+        if (args[0].equals("daemon")) {
+            Daemon.serve(args.length > 1 ? Integer.parseInt(args[1]) : 0);
+            return;
+        }
+        Integer status = args[0].equals("watch") ? null : Daemon.forward(args);
+        if (status == null) {
+            if (args[0].equals("stop")) {
+                System.err.println("No daemon is running");
+                System.exit(1);
+            }
+            try (ToolContext context = new ToolContext()) {
+                status = run(context, args);
+            }
+        }
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    static int run(ToolContext context, String[] args) throws Exception {
+        Tool tool = args.length == 0 ? null : TOOLS.get(args[0]);
+        if (tool == null) {
+            usage();
+            return 1;
+        }
+        return tool.run(context, Arrays.copyOfRange(args, 1, args.length));
+    }
+
+    private static void usage() {
+        System.err.println("Usage: Main <" + String.join("|", TOOLS.keySet()) + "> [arguments] | daemon [port] | stop");
+    }
+
+    interface Tool {
+        int run(ToolContext context, String[] args) throws Exception;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor;
+
+import org.redhat.eap.jira.kanban.board.editor.commands.Commands;
+import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations;
+import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations.JqlSwimlaneSet;
+import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations.SwimlaneSet;
+import org.redhat.eap.jira.kanban.board.editor.commands.SwimlaneDistribution;
+
+/**
+ * Shows how the issues of a board would be spread across the swimlanes of a swimlane set, without changing the
+ * board: the issues each swimlane matches and shows, the swimlanes which are empty or overlap, and how many issues
+ * would end up in the default swimlane. The board name and swimlane set (the name of a built in one, or a definition
+ * file) can be passed in as arguments.
+ *
+ * @author Kabir Khan
+ */
+public class SwimlaneAnalyzer {
+    public static void main(String[] args) throws Exception {
+        try (ToolContext context = new ToolContext()) {
+            int status = run(context, args);
+            if (status != 0) {
+                System.exit(status);
+            }
+        }
+    }
+
+    static int run(ToolContext context, String[] args) throws Exception {
+        String boardName = args.length > 0 ? args[0] : "Copy of Throwaway";
+        SwimlaneSet swimlaneSet = args.length > 1
+                ? JqlSwimlaneConfigurations.getSwimlaneSet(args[1], context.getWorkingDirectory())
+                : JqlSwimlaneConfigurations.getSwimlaneSet(JqlSwimlaneSet.TEST);
+
+        Commands commands = context.getCommands();
+        Commands.Board board = commands.findBoard(boardName);
+        SwimlaneDistribution distribution = commands.analyzeSwimlanes(board, swimlaneSet.getSwimlaneConfigs());
+
+        System.out.println(distribution.getIssueCount() + " issues on board " + board.getName() + " across " + swimlaneSet);
+        int nameWidth = "Everything Else".length();
+        for (SwimlaneDistribution.Lane lane : distribution.getLanes()) {
+            nameWidth = Math.max(nameWidth, lane.getName().length());
+        }
+        String format = "%-" + nameWidth + "s %8s %8s%n";
+        System.out.printf(format, "Swimlane", "Matched", "Shown");
+        int empty = 0;
+        for (SwimlaneDistribution.Lane lane : distribution.getLanes()) {
+            System.out.printf(format, lane.getName(), lane.getMatched(), lane.getShown()
+                    + (lane.isLocal() ? "" : " (searched in Jira)"));
+            if (lane.getMatched() == 0) {
+                empty++;
+            }
+        }
+        System.out.printf(format, "Everything Else", "", distribution.getDefaultLaneCount());
+
+        if (empty > 0) {
+            System.out.println();
+            System.out.println(empty + " swimlanes match no issues:");
+            for (SwimlaneDistribution.Lane lane : distribution.getLanes()) {
+                if (lane.getMatched() == 0) {
+                    System.out.println("  " + lane.getName() + ": " + lane.getJql());
+                }
+            }
+        }
+        if (distribution.getOverlaps().size() > 0) {
+            System.out.println();
+            System.out.println("Overlapping swimlanes (the issues are shown in the first one):");
+            for (SwimlaneDistribution.Overlap overlap : distribution.getOverlaps()) {
+                System.out.println("  " + overlap.getFirst() + " / " + overlap.getSecond() + ": " + overlap.getCount());
+            }
+        }
+        System.out.println();
+        System.out.println("Fetched in " + distribution.getFetchMs() + "ms, analyzed in " + distribution.getEvaluateMs() + "ms");
+        commands.reportMetrics(System.out);
+        return 0;
+    }
+}
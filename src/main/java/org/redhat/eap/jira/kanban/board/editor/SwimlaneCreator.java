@@ -21,35 +21,77 @@
  */
 package org.redhat.eap.jira.kanban.board.editor;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import org.redhat.eap.jira.kanban.board.editor.commands.Commands;
-import org.redhat.eap.jira.kanban.board.editor.commands.JiraConfiguration;
 import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations;
 import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations.JqlSwimlaneConfig;
 import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations.JqlSwimlaneSet;
+import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations.SwimlaneSet;
 
 /**
+ * Applies a swimlane set to a board. The board name and swimlane set (the name of a built in one, or a definition
+ * file) can be passed in as arguments. The queries of the whole set are validated before the board is changed.
+ * <p/>
+ * If {@code editor.journal} is set, a run interrupted last time is resumed first. Passing {@code --rollback} instead
+ * restores the swimlanes the board had before the interrupted run, and does nothing else.
+ *
  * @author Kabir Khan
  */
 public class SwimlaneCreator {
     public static void main(String[] args) throws Exception {
-        //TODO make sure these are configurable
-        String boardName = "Copy of Throwaway";
-        JqlSwimlaneSet swimlaneSet = JqlSwimlaneSet.TEST;
+        try (ToolContext context = new ToolContext()) {
+            int status = run(context, args);
+            if (status != 0) {
+                System.exit(status);
+            }
+        }
+    }
+
+    static int run(ToolContext context, String[] args) throws Exception {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        boolean rollback = argList.remove("--rollback");
+        args = argList.toArray(new String[argList.size()]);
+        String boardName = args.length > 0 ? args[0] : "Copy of Throwaway";
+        SwimlaneSet swimlaneSet = args.length > 1
+                ? JqlSwimlaneConfigurations.getSwimlaneSet(args[1], context.getWorkingDirectory())
+                : JqlSwimlaneConfigurations.getSwimlaneSet(JqlSwimlaneSet.TEST);
+        //If true, only the differences between the board and the swimlane set are applied
+        boolean reconcile = true;
+        //Only used if reconcile is false
         boolean deleteExistingSwimlanes = true;
 
-        JiraConfiguration jiraConfiguration = JiraConfiguration.loadConfiguration();
-        Commands commands = jiraConfiguration.createCommands();
+        Commands commands = context.getCommands();
+        if (!rollback) {
+            //Check the whole set before anything on the board is changed, including by resuming an interrupted run
+            commands.preflight(Collections.singleton(swimlaneSet));
+        }
+        //A run which cannot be recovered is left in the journal, and stops a new run on the same board
+        boolean recovered = commands.recoverJournal(rollback).isEmpty();
+        if (rollback) {
+            System.out.println("done");
+            return recovered ? 0 : 1;
+        }
         Commands.Board board = commands.findBoard(boardName);
 
-        if (deleteExistingSwimlanes) {
-            commands.deleteExistingJqlSwimlanes(board);
-        }
-        commands.setSwimlaneStrategy(board, Commands.SwimLaneStrategy.QUERIES);
-        JqlSwimlaneConfig[] swimlaneConfigs = JqlSwimlaneConfigurations.getSwimlaneConfigs(swimlaneSet);
-        for (int i = swimlaneConfigs.length - 1 ; i >= 0 ; i--) {
-            commands.addJqlSwimlane(board, swimlaneConfigs[i]);
+        JqlSwimlaneConfig[] swimlaneConfigs = swimlaneSet.getSwimlaneConfigs();
+        commands.beginJournalRun(board, reconcile || deleteExistingSwimlanes ? swimlaneConfigs : null);
+        if (reconcile) {
+            commands.reconcileJqlSwimlanes(board, swimlaneConfigs);
+        } else {
+            if (deleteExistingSwimlanes) {
+                commands.deleteExistingJqlSwimlanes(board);
+            }
+            commands.setSwimlaneStrategy(board, Commands.SwimLaneStrategy.QUERIES);
+            commands.addJqlSwimlanes(board, swimlaneConfigs);
         }
+        commands.commitJournalRun(board);
 
+        commands.reportMetrics(System.out);
         System.out.println("done");
+        return recovered ? 0 : 1;
     }
 }
@@ -0,0 +1,117 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.redhat.eap.jira.kanban.board.editor.commands.Commands;
+import org.redhat.eap.jira.kanban.board.editor.commands.JiraConfiguration;
+
+/**
+ * What the command line tools run against. The configurations and {@link Commands} are only loaded and created when
+ * a tool asks for them, and are kept for the lifetime of the context, so that a {@link Main} daemon can reuse them
+ * across invocations.
+ *
+ * @author Kabir Khan
+ */
+public class ToolContext implements AutoCloseable {
+    private final Map<String, JiraConfiguration> configurations = new HashMap<>();
+    private final Map<String, Commands> commands = new HashMap<>();
+    private volatile Path workingDirectory;
+
+    public ToolContext() {
+        this.workingDirectory = Paths.get("").toAbsolutePath();
+    }
+
+    /**
+     * @return the directory relative file names passed to the tools are resolved against
+     */
+    public Path getWorkingDirectory() {
+        return workingDirectory;
+    }
+
+    void setWorkingDirectory(Path workingDirectory) {
+        this.workingDirectory = workingDirectory;
+    }
+
+    /**
+     * @param fileName a file name passed to a tool
+     * @return the file, resolved against the working directory if relative
+     */
+    public Path resolve(String fileName) {
+        return workingDirectory.resolve(fileName);
+    }
+
+    public JiraConfiguration getConfiguration() throws Exception {
+        return getConfiguration("");
+    }
+
+    /**
+     * @param prefix the prefix of the configuration keys, see {@link JiraConfiguration#loadConfiguration(String)}
+     * @return the configuration
+     */
+    public synchronized JiraConfiguration getConfiguration(String prefix) throws Exception {
+        JiraConfiguration configuration = configurations.get(prefix);
+        if (configuration == null) {
+            configuration = JiraConfiguration.loadConfiguration(prefix);
+            configurations.put(prefix, configuration);
+        }
+        return configuration;
+    }
+
+    public Commands getCommands() throws Exception {
+        return getCommands("");
+    }
+
+    /**
+     * @param prefix the prefix of the configuration keys, see {@link JiraConfiguration#loadConfiguration(String)}
+     * @return the commands for the Jira instance
+     */
+    public synchronized Commands getCommands(String prefix) throws Exception {
+        Commands commands = this.commands.get(prefix);
+        if (commands == null) {
+            commands = getConfiguration(prefix).createCommands();
+            this.commands.put(prefix, commands);
+        }
+        return commands;
+    }
+
+    /**
+     * Called before each invocation of a tool in a long lived context, so that it does not use stale information.
+     */
+    synchronized void refresh() {
+        for (Commands commands : this.commands.values()) {
+            commands.refresh();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Commands commands : this.commands.values()) {
+            commands.close();
+        }
+        commands.clear();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches board lookups and snapshots of board configuration for a {@link Commands} instance.
+ * <p>
+ * Board name lookups are kept for the configured time to live. Configuration snapshots are never trusted blindly;
+ * they are only kept if Jira returned an {@code ETag} or {@code Last-Modified} header, and are revalidated with a
+ * conditional request every time they are used. Everything cached for a board is dropped when this instance
+ * changes or deletes the board.
+ *
+ * @author Kabir Khan
+ */
+class BoardCache {
+    private final long ttlNanos;
+    private final ConcurrentMap<String, CachedBoard> boardsByName = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Snapshot<?>> snapshots = new ConcurrentHashMap<>();
+
+    BoardCache(int ttlSeconds) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    Commands.Board getBoard(String name) {
+        CachedBoard cached = boardsByName.get(name);
+        if (cached == null) {
+            return null;
+        }
+        if (System.nanoTime() - cached.created > ttlNanos) {
+            boardsByName.remove(name, cached);
+            return null;
+        }
+        return cached.board;
+    }
+
+    void putBoard(Commands.Board board) {
+        if (ttlNanos > 0) {
+            boardsByName.put(board.name, new CachedBoard(board));
+        }
+    }
+
+    void invalidateBoardName(String name) {
+        boardsByName.remove(name);
+    }
+
+    /**
+     * Drops everything cached for the board
+     *
+     * @param boardId the id of the board
+     */
+    void invalidateBoard(int boardId) {
+        boardsByName.values().removeIf(cached -> cached.board.id == boardId);
+        invalidateSnapshot(boardId);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> Snapshot<T> getSnapshot(int boardId) {
+        return (Snapshot<T>) snapshots.get(boardId);
+    }
+
+    <T> void putSnapshot(int boardId, String etag, String lastModified, T value) {
+        if (etag == null && lastModified == null) {
+            //We would have no way to tell if it is stale
+            snapshots.remove(boardId);
+        } else {
+            snapshots.put(boardId, new Snapshot<>(etag, lastModified, value));
+        }
+    }
+
+    void invalidateSnapshot(int boardId) {
+        snapshots.remove(boardId);
+    }
+
+    private static class CachedBoard {
+        private final Commands.Board board;
+        private final long created = System.nanoTime();
+
+        CachedBoard(Commands.Board board) {
+            this.board = board;
+        }
+    }
+
+    static class Snapshot<T> {
+        private final String etag;
+        private final String lastModified;
+        private final T value;
+
+        Snapshot(String etag, String lastModified, T value) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.value = value;
+        }
+
+        String getEtag() {
+            return etag;
+        }
+
+        String getLastModified() {
+            return lastModified;
+        }
+
+        T getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Copies the configuration of a board to a new or existing board, on the same Jira instance or on another one.
+ * Unlike {@link Commands#copyBoard(Commands.Board, String)} this does not rely on Jira's copy endpoint, so an existing
+ * target board is updated in place rather than having to be deleted first.
+ * <p/>
+ * The source and target configurations are read in parallel. Once the target board and its filter exist, the
+ * columns, quick filters, card colours and swimlanes are written concurrently, and each of those writes its own
+ * entries concurrently too.
+ * <p/>
+ * Card colours are only copied for the {@code custom} (query based) strategy, since the other strategies refer to
+ * priorities, issue types etc. which Jira sets up itself. Columns refer to statuses by name when copying to
+ * another Jira instance, so all the statuses have to exist there.
+ *
+ * @author Kabir Khan
+ */
+public class BoardCloner {
+    private static final String CUSTOM_CARD_COLOR_STRATEGY = "custom";
+
+    private final Commands source;
+    private final Commands target;
+    private final boolean sameInstance;
+
+    /**
+     * @param source the commands for the Jira instance to copy from
+     * @param target the commands for the Jira instance to copy to. This may be the same as {@code source}
+     */
+    public BoardCloner(Commands source, Commands target) {
+        this.source = source;
+        this.target = target;
+        this.sameInstance = source == target
+                || source.jiraConfiguration.getUri().equals(target.jiraConfiguration.getUri());
+    }
+
+    /**
+     * Copies a board's configuration to the target board, creating it if it does not exist.
+     *
+     * @param sourceName the name of the board to copy
+     * @param targetName the name of the board to copy to
+     * @return the target board
+     */
+    public Commands.Board cloneBoard(String sourceName, String targetName) {
+        //The top level tasks call Commands methods which use the Commands executors themselves, so they
+        //must not run on one of those
+        ParallelExecutor executor = new ParallelExecutor("board-cloner", 4, target.jiraConfiguration.isVirtualThreads());
+        try {
+            return doCloneBoard(executor, sourceName, targetName);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Commands.Board doCloneBoard(ParallelExecutor executor, String sourceName, String targetName) {
+        final Object[] reads = new Object[3];
+        List<Callable<Void>> readTasks = new ArrayList<>();
+        readTasks.add(() -> {
+            reads[0] = source.getBoardConfiguration(source.findBoard(sourceName));
+            return null;
+        });
+        readTasks.add(() -> {
+            Commands.Board board = target.findBoardIfExists(targetName);
+            if (board != null) {
+                reads[1] = new Existing(board, target.getBoardConfiguration(board));
+            }
+            return null;
+        });
+        if (!sameInstance) {
+            readTasks.add(() -> {
+                reads[2] = target.getStatusIds();
+                return null;
+            });
+        }
+        executor.invokeAll(readTasks);
+        final BoardConfiguration sourceConfig = (BoardConfiguration) reads[0];
+        final Existing existing = (Existing) reads[1];
+        @SuppressWarnings("unchecked")
+        final Map<String, String> targetStatusIds = (Map<String, String>) reads[2];
+
+        //Check everything we can before making any changes
+        final List<BoardConfiguration.Column> columns = mapColumns(sourceConfig.getColumns(), targetStatusIds);
+        final JqlSwimlaneConfigurations.JqlSwimlaneConfig[] swimlanes = getSwimlaneConfigs(sourceConfig);
+
+        final Commands.Board board;
+        if (existing == null) {
+            int filterId = sameInstance
+                    ? sourceConfig.getFilterId()
+                    : target.createFilter(sourceConfig.getFilterName(), sourceConfig.getFilterJql());
+            board = target.createBoard(targetName, filterId);
+        } else {
+            board = existing.board;
+            if (sameInstance) {
+                if (existing.config.getFilterId() != sourceConfig.getFilterId()) {
+                    target.setBoardFilter(board, sourceConfig.getFilterId());
+                }
+            } else if (!existing.config.getFilterJql().equals(sourceConfig.getFilterJql())) {
+                target.updateFilterJql(existing.config.getFilterId(), sourceConfig.getFilterJql());
+            }
+        }
+        final BoardConfiguration targetConfig = existing == null ? null : existing.config;
+
+        List<Callable<Void>> writes = new ArrayList<>();
+        writes.add(() -> {
+            target.setColumns(board, sourceConfig.getStatisticsField(), columns);
+            return null;
+        });
+        writes.add(() -> {
+            copyQuickFilters(board, sourceConfig, targetConfig);
+            return null;
+        });
+        writes.add(() -> {
+            copyCardColors(board, sourceConfig, targetConfig);
+            return null;
+        });
+        if (swimlanes != null) {
+            writes.add(() -> {
+                target.reconcileJqlSwimlanes(board, swimlanes);
+                return null;
+            });
+        }
+        executor.invokeAll(writes);
+        return board;
+    }
+
+    private List<BoardConfiguration.Column> mapColumns(List<BoardConfiguration.Column> columns, Map<String, String> targetStatusIds) {
+        if (targetStatusIds == null) {
+            return columns;
+        }
+        List<BoardConfiguration.Column> mapped = new ArrayList<>();
+        for (BoardConfiguration.Column column : columns) {
+            List<BoardConfiguration.Status> statuses = new ArrayList<>();
+            for (BoardConfiguration.Status status : column.getStatuses()) {
+                String id = targetStatusIds.get(status.getName());
+                if (id == null) {
+                    throw new IllegalStateException("Status " + status.getName() + " of column " + column.getName()
+                            + " does not exist in " + target.jiraConfiguration.getUri());
+                }
+                statuses.add(new BoardConfiguration.Status(id, status.getName()));
+            }
+            mapped.add(new BoardConfiguration.Column(column.getName(), statuses, column.getMin(), column.getMax()));
+        }
+        return mapped;
+    }
+
+    private JqlSwimlaneConfigurations.JqlSwimlaneConfig[] getSwimlaneConfigs(BoardConfiguration sourceConfig) {
+        Commands.BoardSwimlanes swimlanes = sourceConfig.getSwimlanes();
+        if (swimlanes == null || !Commands.SwimLaneStrategy.QUERIES.getJsonValue().equals(swimlanes.getStrategy())) {
+            System.out.println("Board " + sourceConfig.getName() + " does not use query swimlanes, so they are not copied");
+            return null;
+        }
+        List<JqlSwimlaneConfigurations.JqlSwimlaneConfig> configs = new ArrayList<>();
+        for (Commands.Swimlane swimlane : swimlanes.getSwimlanes()) {
+            if (!swimlane.isDefaultSwimlane()) {
+                configs.add(new JqlSwimlaneConfigurations.JqlSwimlaneConfig(swimlane.getName(), swimlane.getQuery(), swimlane.getDescription()));
+            }
+        }
+        return configs.toArray(new JqlSwimlaneConfigurations.JqlSwimlaneConfig[configs.size()]);
+    }
+
+    private void copyQuickFilters(Commands.Board board, BoardConfiguration sourceConfig, BoardConfiguration targetConfig) {
+        Map<String, BoardConfiguration.QuickFilter> existingByName = new HashMap<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        if (targetConfig != null) {
+            for (BoardConfiguration.QuickFilter quickFilter : targetConfig.getQuickFilters()) {
+                if (existingByName.putIfAbsent(quickFilter.getName(), quickFilter) != null) {
+                    tasks.add(() -> {
+                        target.deleteQuickFilter(board, quickFilter.getId());
+                        return null;
+                    });
+                }
+            }
+        }
+        Set<String> wanted = new HashSet<>();
+        for (BoardConfiguration.QuickFilter quickFilter : sourceConfig.getQuickFilters()) {
+            wanted.add(quickFilter.getName());
+            BoardConfiguration.QuickFilter existing = existingByName.get(quickFilter.getName());
+            if (existing == null) {
+                tasks.add(() -> {
+                    target.addQuickFilter(board, quickFilter.getName(), quickFilter.getQuery(), quickFilter.getDescription());
+                    return null;
+                });
+            } else if (!existing.getQuery().equals(quickFilter.getQuery())
+                    || !Objects.equals(emptyToNull(existing.getDescription()), emptyToNull(quickFilter.getDescription()))) {
+                tasks.add(() -> {
+                    target.updateQuickFilter(board, existing.getId(), quickFilter.getName(), quickFilter.getQuery(), quickFilter.getDescription());
+                    return null;
+                });
+            }
+        }
+        for (BoardConfiguration.QuickFilter existing : existingByName.values()) {
+            if (!wanted.contains(existing.getName())) {
+                tasks.add(() -> {
+                    target.deleteQuickFilter(board, existing.getId());
+                    return null;
+                });
+            }
+        }
+        //Jira lists quick filters in the order they were created, which we can't control when creating them
+        //concurrently. The order is cosmetic, so we don't spend a round trip per filter to fix it.
+        target.executor.invokeAll(tasks);
+    }
+
+    private void copyCardColors(Commands.Board board, BoardConfiguration sourceConfig, BoardConfiguration targetConfig) {
+        String strategy = sourceConfig.getCardColorStrategy();
+        if (strategy == null) {
+            return;
+        }
+        boolean sameStrategy = targetConfig != null && strategy.equals(targetConfig.getCardColorStrategy());
+        if (!sameStrategy) {
+            target.setCardColorStrategy(board, strategy);
+        }
+        if (!CUSTOM_CARD_COLOR_STRATEGY.equals(strategy)) {
+            return;
+        }
+        //The existing colours are only known if the target already used the custom strategy
+        List<BoardConfiguration.CardColor> existing = sameStrategy ? targetConfig.getCardColors() : new ArrayList<>();
+        Set<String> existingKeys = new HashSet<>();
+        Set<String> wantedKeys = new HashSet<>();
+        for (BoardConfiguration.CardColor cardColor : sourceConfig.getCardColors()) {
+            wantedKeys.add(cardColor.getColor() + "|" + cardColor.getValue());
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (BoardConfiguration.CardColor cardColor : existing) {
+            String key = cardColor.getColor() + "|" + cardColor.getValue();
+            if (!wantedKeys.contains(key) || !existingKeys.add(key)) {
+                tasks.add(() -> {
+                    target.deleteCardColor(board, strategy, cardColor.getId());
+                    return null;
+                });
+            }
+        }
+        for (BoardConfiguration.CardColor cardColor : sourceConfig.getCardColors()) {
+            if (!existingKeys.contains(cardColor.getColor() + "|" + cardColor.getValue())) {
+                tasks.add(() -> {
+                    target.addCardColor(board, strategy, cardColor.getColor(), cardColor.getValue());
+                    return null;
+                });
+            }
+        }
+        target.executor.invokeAll(tasks);
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.isEmpty() ? null : s;
+    }
+
+    private static class Existing {
+        private final Commands.Board board;
+        private final BoardConfiguration config;
+
+        Existing(Commands.Board board, BoardConfiguration config) {
+            this.board = board;
+            this.config = config;
+        }
+    }
+}
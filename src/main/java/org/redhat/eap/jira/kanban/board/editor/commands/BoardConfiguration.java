@@ -0,0 +1,279 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jboss.dmr.ModelNode;
+
+/**
+ * A snapshot of everything {@link BoardCloner} copies from a board: the filter, the columns and their statuses, the
+ * swimlanes, the quick filters and the card colours. It is read from the board configuration's edit model.
+ *
+ * @author Kabir Khan
+ */
+public class BoardConfiguration {
+    private final String name;
+    private final int filterId;
+    private final String filterName;
+    private final String filterJql;
+    private final String statisticsField;
+    private final List<Column> columns;
+    private final Commands.BoardSwimlanes swimlanes;
+    private final List<QuickFilter> quickFilters;
+    private final String cardColorStrategy;
+    private final List<CardColor> cardColors;
+
+    private BoardConfiguration(String name, int filterId, String filterName, String filterJql, String statisticsField,
+                               List<Column> columns, Commands.BoardSwimlanes swimlanes, List<QuickFilter> quickFilters,
+                               String cardColorStrategy, List<CardColor> cardColors) {
+        this.name = name;
+        this.filterId = filterId;
+        this.filterName = filterName;
+        this.filterJql = filterJql;
+        this.statisticsField = statisticsField;
+        this.columns = Collections.unmodifiableList(columns);
+        this.swimlanes = swimlanes;
+        this.quickFilters = Collections.unmodifiableList(quickFilters);
+        this.cardColorStrategy = cardColorStrategy;
+        this.cardColors = Collections.unmodifiableList(cardColors);
+    }
+
+    static BoardConfiguration parse(ModelNode editModel) {
+        ModelNode filter = editModel.get("filterConfig");
+        ModelNode listConfig = editModel.get("rapidListConfig");
+
+        List<Column> columns = new ArrayList<>();
+        if (listConfig.hasDefined("mappedColumns")) {
+            for (ModelNode column : listConfig.get("mappedColumns").asList()) {
+                List<Status> statuses = new ArrayList<>();
+                if (column.hasDefined("mappedStatuses")) {
+                    for (ModelNode status : column.get("mappedStatuses").asList()) {
+                        statuses.add(new Status(status.get("id").asString(), status.get("name").asString()));
+                    }
+                }
+                columns.add(new Column(
+                        column.get("name").asString(),
+                        statuses,
+                        column.hasDefined("min") ? column.get("min").asString() : null,
+                        column.hasDefined("max") ? column.get("max").asString() : null));
+            }
+        }
+
+        List<QuickFilter> quickFilters = new ArrayList<>();
+        ModelNode quickFilterConfig = editModel.get("quickFilterConfig");
+        if (quickFilterConfig.hasDefined("quickFilters")) {
+            for (ModelNode quickFilter : quickFilterConfig.get("quickFilters").asList()) {
+                quickFilters.add(new QuickFilter(
+                        quickFilter.get("id").asInt(),
+                        quickFilter.get("name").asString(),
+                        quickFilter.get("query").asString(),
+                        quickFilter.hasDefined("description") ? quickFilter.get("description").asString() : null));
+            }
+        }
+
+        List<CardColor> cardColors = new ArrayList<>();
+        ModelNode cardColorConfig = editModel.get("cardColorConfig");
+        if (cardColorConfig.hasDefined("cardColors")) {
+            for (ModelNode cardColor : cardColorConfig.get("cardColors").asList()) {
+                cardColors.add(new CardColor(
+                        cardColor.get("id").asInt(),
+                        cardColor.get("color").asString(),
+                        cardColor.hasDefined("value") ? cardColor.get("value").asString() : null));
+            }
+        }
+
+        return new BoardConfiguration(
+                editModel.get("name").asString(),
+                filter.get("id").asInt(),
+                filter.get("name").asString(),
+                filter.get("query").asString(),
+                listConfig.hasDefined("currentStatisticsField") ? listConfig.get("currentStatisticsField", "id").asString() : null,
+                columns,
+                Commands.SwimlaneSource.parseEditModel(editModel),
+                quickFilters,
+                cardColorConfig.hasDefined("cardColorStrategy") ? cardColorConfig.get("cardColorStrategy").asString() : null,
+                cardColors);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getFilterId() {
+        return filterId;
+    }
+
+    public String getFilterName() {
+        return filterName;
+    }
+
+    public String getFilterJql() {
+        return filterJql;
+    }
+
+    /**
+     * @return the id of the field used for the column constraints, or {@code null} if not set
+     */
+    public String getStatisticsField() {
+        return statisticsField;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the swimlanes, or {@code null} if the edit model does not contain them
+     */
+    public Commands.BoardSwimlanes getSwimlanes() {
+        return swimlanes;
+    }
+
+    public List<QuickFilter> getQuickFilters() {
+        return quickFilters;
+    }
+
+    public String getCardColorStrategy() {
+        return cardColorStrategy;
+    }
+
+    /**
+     * @return the card colours of the current strategy
+     */
+    public List<CardColor> getCardColors() {
+        return cardColors;
+    }
+
+    public static class Column {
+        private final String name;
+        private final List<Status> statuses;
+        private final String min;
+        private final String max;
+
+        Column(String name, List<Status> statuses, String min, String max) {
+            this.name = name;
+            this.statuses = Collections.unmodifiableList(statuses);
+            this.min = min;
+            this.max = max;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Status> getStatuses() {
+            return statuses;
+        }
+
+        /**
+         * @return the minimum constraint, or {@code null} if none
+         */
+        public String getMin() {
+            return min;
+        }
+
+        /**
+         * @return the maximum constraint, or {@code null} if none
+         */
+        public String getMax() {
+            return max;
+        }
+    }
+
+    public static class Status {
+        private final String id;
+        private final String name;
+
+        Status(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public static class QuickFilter {
+        private final int id;
+        private final String name;
+        private final String query;
+        private final String description;
+
+        QuickFilter(int id, String name, String query, String description) {
+            this.id = id;
+            this.name = name;
+            this.query = query;
+            this.description = description;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    public static class CardColor {
+        private final int id;
+        private final String color;
+        private final String value;
+
+        CardColor(int id, String color, String value) {
+            this.id = id;
+            this.color = color;
+            this.value = value;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getColor() {
+            return color;
+        }
+
+        /**
+         * @return the query for the {@code custom} strategy, or the value (priority, issue type etc.) the colour is for
+         */
+        public String getValue() {
+            return value;
+        }
+    }
+}
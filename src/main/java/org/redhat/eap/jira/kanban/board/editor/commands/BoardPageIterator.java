@@ -0,0 +1,155 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Iterates over the results of a paginated board search, fetching pages as they are needed. As soon as a page
+ * arrives the next one is requested in the background, so it is usually there by the time the current page
+ * has been consumed.
+ *
+ * @author Kabir Khan
+ */
+class BoardPageIterator implements Iterator<Commands.Board> {
+    private final PageFetcher fetcher;
+    private final ParallelExecutor executor;
+    private Iterator<Commands.Board> current;
+    private Prefetch next;
+
+    BoardPageIterator(PageFetcher fetcher, ParallelExecutor executor) {
+        this.fetcher = fetcher;
+        this.executor = executor;
+        this.next = new Prefetch(0);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (current == null || !current.hasNext()) {
+            if (next == null) {
+                return false;
+            }
+            BoardPage page = next.get();
+            next = page.isLast() ? null : prefetch(page.getNextStartAt());
+            current = page.getBoards().iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public Commands.Board next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    /**
+     * Stops the background fetch of the next page, if it has not started yet.
+     */
+    void close() {
+        if (next != null) {
+            next.cancel();
+            next = null;
+        }
+    }
+
+    private Prefetch prefetch(int startAt) {
+        Prefetch prefetch = new Prefetch(startAt);
+        executor.execute(prefetch::run);
+        return prefetch;
+    }
+
+    /**
+     * Fetches a page. Whoever gets to it first, the background thread or the consumer needing the page, does the
+     * fetch. That way a consumer running on one of the executor's threads never waits for a task stuck in the
+     * executor's queue.
+     */
+    private class Prefetch {
+        private final int startAt;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<BoardPage> result = new CompletableFuture<>();
+
+        Prefetch(int startAt) {
+            this.startAt = startAt;
+        }
+
+        void run() {
+            if (claimed.compareAndSet(false, true)) {
+                try {
+                    result.complete(fetcher.fetch(startAt));
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            }
+        }
+
+        BoardPage get() {
+            run();
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        void cancel() {
+            claimed.set(true);
+        }
+    }
+
+    interface PageFetcher {
+        BoardPage fetch(int startAt);
+    }
+
+    static class BoardPage {
+        private final List<Commands.Board> boards;
+        private final int nextStartAt;
+        private final boolean last;
+
+        BoardPage(List<Commands.Board> boards, int nextStartAt, boolean last) {
+            this.boards = boards;
+            this.nextStartAt = nextStartAt;
+            this.last = last;
+        }
+
+        List<Commands.Board> getBoards() {
+            return boards;
+        }
+
+        int getNextStartAt() {
+            return nextStartAt;
+        }
+
+        boolean isLast() {
+            return last;
+        }
+    }
+}
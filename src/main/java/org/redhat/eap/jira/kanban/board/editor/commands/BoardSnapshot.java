@@ -0,0 +1,117 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jboss.dmr.ModelNode;
+
+/**
+ * A version of a board's configuration, either stored in a {@link SnapshotStore} or read from Jira. The
+ * configuration is split into parts (filter, columns, swimlanes, quick filters and card colours) which are
+ * content addressed separately, so that two snapshots can be compared part by part by hash alone, and boards
+ * sharing e.g. the same swimlanes share the stored part.
+ *
+ * @author Kabir Khan
+ */
+public class BoardSnapshot {
+    static final String FILTER = "filter";
+    static final String COLUMNS = "columns";
+    static final String SWIMLANES = "swimlanes";
+    static final String QUICK_FILTERS = "quickFilters";
+    static final String CARD_COLORS = "cardColors";
+
+    private final int boardId;
+    private final String boardName;
+    private final long capturedAt;
+    private final String hash;
+    private final Map<String, String> partHashes;
+    private final PartLoader loader;
+
+    BoardSnapshot(int boardId, String boardName, long capturedAt, String hash, Map<String, String> partHashes, PartLoader loader) {
+        this.boardId = boardId;
+        this.boardName = boardName;
+        this.capturedAt = capturedAt;
+        this.hash = hash;
+        this.partHashes = Collections.unmodifiableMap(new LinkedHashMap<>(partHashes));
+        this.loader = loader;
+    }
+
+    public int getBoardId() {
+        return boardId;
+    }
+
+    public String getBoardName() {
+        return boardName;
+    }
+
+    /**
+     * @return when the snapshot was taken, in milliseconds since the epoch
+     */
+    public long getCapturedAt() {
+        return capturedAt;
+    }
+
+    /**
+     * @return the hash of the whole configuration. Two snapshots with the same hash have the same configuration
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return the hashes of the parts, by part name
+     */
+    public Map<String, String> getPartHashes() {
+        return partHashes;
+    }
+
+    /**
+     * @param name the part name
+     * @return the part, or an undefined node if there is no such part
+     */
+    public ModelNode getPart(String name) {
+        String partHash = partHashes.get(name);
+        return partHash == null ? new ModelNode() : loader.load(partHash);
+    }
+
+    /**
+     * @return the whole configuration, as exported
+     */
+    public ModelNode toModelNode() {
+        ModelNode node = new ModelNode();
+        node.get("board").set(boardId);
+        node.get("name").set(boardName);
+        node.get("capturedAt").set(capturedAt);
+        node.get("hash").set(hash);
+        for (String part : partHashes.keySet()) {
+            node.get("parts", part).set(getPart(part));
+        }
+        return node;
+    }
+
+    interface PartLoader {
+        ModelNode load(String hash);
+    }
+}
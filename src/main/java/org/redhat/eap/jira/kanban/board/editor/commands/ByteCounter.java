@@ -0,0 +1,155 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * Counts the bytes of a request and response body as they go over the wire. {@link Commands} puts a counter in the
+ * properties of each request, and the {@link Filter} registered with the client finds it there. Since response bodies
+ * are streamed, the response byte count is only known once the body has been read, which the counter signals by
+ * running the callback passed in to {@link #onComplete(Runnable)}.
+ *
+ * @author Kabir Khan
+ */
+class ByteCounter {
+    static final String PROPERTY = ByteCounter.class.getName();
+
+    private volatile long requestBytes;
+    private volatile long responseBytes;
+    private final AtomicBoolean complete = new AtomicBoolean();
+    private final AtomicBoolean reported = new AtomicBoolean();
+    private volatile Runnable onComplete;
+
+    long getRequestBytes() {
+        return requestBytes;
+    }
+
+    long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * Sets the callback to run once the response body has been read and closed. If that has already happened, it is
+     * run straight away.
+     */
+    void onComplete(Runnable onComplete) {
+        this.onComplete = onComplete;
+        report();
+    }
+
+    /**
+     * Marks the response body as read, either because the end of it was reached or because it was closed.
+     */
+    void complete() {
+        complete.set(true);
+        report();
+    }
+
+    private void report() {
+        Runnable onComplete = this.onComplete;
+        if (onComplete != null && complete.get() && reported.compareAndSet(false, true)) {
+            onComplete.run();
+        }
+    }
+
+    /**
+     * Wraps the entity streams in counting streams. It runs before any content encoders, so the encoders write to
+     * and read from the counting streams, and the compressed size is counted.
+     */
+    @Priority(Priorities.ENTITY_CODER - 1000)
+    static class Filter implements ClientResponseFilter, WriterInterceptor {
+        @Override
+        public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) {
+            final ByteCounter counter = (ByteCounter) requestContext.getProperty(PROPERTY);
+            if (counter != null && responseContext.hasEntity()) {
+                responseContext.setEntityStream(new FilterInputStream(responseContext.getEntityStream()) {
+                    @Override
+                    public int read() throws IOException {
+                        int b = super.read();
+                        if (b != -1) {
+                            counter.responseBytes++;
+                        } else {
+                            counter.complete();
+                        }
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int read = super.read(b, off, len);
+                        if (read > 0) {
+                            counter.responseBytes += read;
+                        } else if (read == -1) {
+                            counter.complete();
+                        }
+                        return read;
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            counter.complete();
+                        }
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+            final ByteCounter counter = (ByteCounter) context.getProperty(PROPERTY);
+            if (counter != null) {
+                final OutputStream out = context.getOutputStream();
+                context.setOutputStream(new FilterOutputStream(out) {
+                    @Override
+                    public void write(int b) throws IOException {
+                        out.write(b);
+                        counter.requestBytes++;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                        counter.requestBytes += len;
+                    }
+                });
+            }
+            context.proceed();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+/**
+ * Receives a callback for every request {@link Commands} sends to Jira. Implementations must be thread safe.
+ * The default implementation is {@link RecordingMetrics}; another one can be plugged in with
+ * {@link Commands#setMetrics(CommandMetrics)}.
+ *
+ * @author Kabir Khan
+ */
+public interface CommandMetrics {
+
+    /**
+     * Called when a response was received, whatever its status.
+     *
+     * @param endpoint the endpoint
+     * @param durationNanos the time taken, including any retries
+     * @param status the HTTP status of the final response
+     * @param requestBytes the number of bytes in the request body, as sent
+     * @param responseBytes the number of bytes in the response body, as received
+     * @param retries the number of times the request was retried
+     */
+    void onResponse(Endpoint endpoint, long durationNanos, int status, long requestBytes, long responseBytes, int retries);
+
+    /**
+     * Called when no response could be received.
+     *
+     * @param endpoint the endpoint
+     * @param durationNanos the time taken, including any retries
+     * @param error the error
+     * @param retries the number of times the request was retried
+     */
+    void onError(Endpoint endpoint, long durationNanos, Throwable error, int retries);
+}
@@ -21,39 +21,339 @@
  */
 package org.redhat.eap.jira.kanban.board.editor.commands;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import javax.ws.rs.HttpMethod;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 
+import com.fasterxml.jackson.core.JsonParser;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
 import org.glassfish.jersey.client.authentication.HttpAuthenticationFeature;
+import org.glassfish.jersey.client.filter.EncodingFilter;
+import org.glassfish.jersey.message.GZipEncoder;
 import org.jboss.dmr.ModelNode;
 
 
 /**
  * @author Kabir Khan
  */
-public class Commands {
+public class Commands implements AutoCloseable {
+    private static final int BOARD_PAGE_SIZE = 50;
+
     final JiraConfiguration jiraConfiguration;
-    final HttpAuthenticationFeature authenticationFeature;
-    final Client client;
+    final ParallelExecutor executor;
+    private final RequestScheduler scheduler;
+    //Building the client bootstraps Jersey, which is slow, so it is only done when the first request is made
+    private volatile Client client;
+    private volatile Supplier<HttpConnector.ConnectionPoolStats> connectionPoolStats;
+    private final Lock clientLock = new ReentrantLock();
+    private final BoardCache cache;
+    private volatile CommandMetrics metrics;
+    //The boards whose edit model does not have their swimlanes, so that they are read from allData instead
+    private final Set<Integer> editModelUnsupported = ConcurrentHashMap.newKeySet();
+    private volatile Set<String> projectComponents;
+    //What the last components request returned, to tell whether they have changed since
+    private volatile ProjectComponents lastProjectComponents;
+    private volatile JqlValidator jqlValidator;
+    //Not a monitor, since a virtual thread blocking on the components request inside one would pin its carrier
+    private final Lock jqlValidatorLock = new ReentrantLock();
+    private volatile Journal journal;
     private Board board;
     private JqlSwimlaneConfigurations.JqlSwimlaneConfig jqlSwimlaneConfig;
 
     Commands(JiraConfiguration jiraConfiguration) {
         this.jiraConfiguration = jiraConfiguration;
-        authenticationFeature = HttpAuthenticationFeature.basic(jiraConfiguration.getUsername(), jiraConfiguration.getPassword());
-        client = ClientBuilder.newBuilder()
-            .register(authenticationFeature)
-            .build();
+        executor = new ParallelExecutor("jira-commands", jiraConfiguration.getParallelism(), jiraConfiguration.isVirtualThreads());
+        scheduler = new RequestScheduler(jiraConfiguration);
+        cache = new BoardCache(jiraConfiguration.getCacheTtlSeconds());
+        RecordingMetrics recordingMetrics = new RecordingMetrics();
+        if (jiraConfiguration.isMetricsJmx()) {
+            recordingMetrics.registerMBeans();
+        }
+        metrics = recordingMetrics;
+        if (jiraConfiguration.getJournal() != null) {
+            try {
+                journal = Journal.open(Paths.get(jiraConfiguration.getJournal()));
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not open journal " + jiraConfiguration.getJournal(), e);
+            }
+        }
+    }
+
+    private Client client() {
+        Client client = this.client;
+        if (client == null) {
+            clientLock.lock();
+            try {
+                client = this.client;
+                if (client == null) {
+                    ClientConfig clientConfig = new ClientConfig();
+                    connectionPoolStats = jiraConfiguration.getHttpConnector().configure(clientConfig, jiraConfiguration);
+                    ClientBuilder builder = ClientBuilder.newBuilder()
+                            .withConfig(clientConfig)
+                            .register(HttpAuthenticationFeature.basic(jiraConfiguration.getUsername(), jiraConfiguration.getPassword()))
+                            .register(ByteCounter.Filter.class)
+                            .register(ModelNodeWriter.class);
+                    if (jiraConfiguration.isGzipResponses() || jiraConfiguration.isGzipRequests()) {
+                        builder.register(EncodingFilter.class).register(GZipEncoder.class);
+                        if (jiraConfiguration.isGzipRequests()) {
+                            builder.property(ClientProperties.USE_ENCODING, "gzip");
+                        }
+                    }
+                    if (jiraConfiguration.getRecordDir() != null) {
+                        builder.register(new TrafficRecorder(Paths.get(jiraConfiguration.getRecordDir())));
+                    }
+                    client = builder.build();
+                    this.client = client;
+                }
+            } finally {
+                clientLock.unlock();
+            }
+        }
+        return client;
+    }
+
+    /**
+     * @return the usage of the HTTP connection pool, or {@code null} if the configured connector does not pool
+     * connections or no request has been made yet
+     */
+    public HttpConnector.ConnectionPoolStats getConnectionPoolStats() {
+        Supplier<HttpConnector.ConnectionPoolStats> connectionPoolStats = this.connectionPoolStats;
+        return connectionPoolStats == null ? null : connectionPoolStats.get();
+    }
+
+    public CommandMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Replaces the metrics receiving a callback for every request. By default a {@link RecordingMetrics} is used.
+     *
+     * @param metrics the metrics
+     */
+    public void setMetrics(CommandMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Reports the metrics at the end of a run. If the metrics are a {@link RecordingMetrics}, they are printed along
+     * with the connection pool usage, and written as JSON to the file set in {@code editor.metrics.report} if any.
+     *
+     * @param out the stream to print to
+     */
+    public void reportMetrics(PrintStream out) throws IOException {
+        if (!(metrics instanceof RecordingMetrics)) {
+            return;
+        }
+        RecordingMetrics recordingMetrics = (RecordingMetrics) metrics;
+        recordingMetrics.printReport(out);
+        HttpConnector.ConnectionPoolStats poolStats = getConnectionPoolStats();
+        if (poolStats != null) {
+            out.println("connection pool: " + poolStats);
+        }
+        String reportFile = jiraConfiguration.getMetricsReport();
+        if (reportFile != null) {
+            recordingMetrics.writeReport(Paths.get(reportFile));
+            out.println("metrics written to " + reportFile);
+        }
+    }
+
+    /**
+     * Drops everything cached about the board, so that the next commands using it read it from Jira again.
+     *
+     * @param board the board
+     */
+    public void invalidateCache(Board board) {
+        cache.invalidateBoard(board.id);
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Sets the journal the swimlane changes are recorded in, or {@code null} to stop recording them.
+     *
+     * @param journal the journal
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Starts a journaled run on a board, recording its current swimlanes so that the run can be rolled back. Does
+     * nothing if there is no journal.
+     *
+     * @param board the board
+     * @param wanted the swimlanes the run will leave the board with, so that it can be resumed, or {@code null} if
+     *               not known
+     */
+    public void beginJournalRun(Board board, JqlSwimlaneConfigurations.JqlSwimlaneConfig[] wanted) {
+        Journal journal = this.journal;
+        if (journal != null) {
+            journal.begin(board, getSwimlanes(board), wanted);
+        }
+    }
+
+    /**
+     * Marks the journaled run on a board as complete. Does nothing if there is no journal.
+     *
+     * @param board the board
+     */
+    public void commitJournalRun(Board board) {
+        Journal journal = this.journal;
+        if (journal != null) {
+            journal.commit(board);
+        }
+    }
+
+    /**
+     * Deals with the runs which were interrupted the last time the journal was used. Each one is either rolled back,
+     * restoring the swimlanes and swimlane strategy the board had before it, or resumed. Resuming replays the changes which were started
+     * but not confirmed, unless Jira shows they already happened, and then finishes the run if the wanted swimlanes
+     * were recorded. Does nothing if there is no journal.
+     * <p/>
+     * A run which cannot be recovered is reported and left in the journal, so that it can be tried again later, and
+     * the other runs are still recovered. A new run cannot be started on its board until it has been recovered.
+     *
+     * @param rollback {@code true} to roll back, {@code false} to resume
+     * @return the errors of the runs which could not be recovered, by board name
+     */
+    public Map<String, RuntimeException> recoverJournal(boolean rollback) {
+        Journal journal = this.journal;
+        if (journal == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, RuntimeException> failures = new LinkedHashMap<>();
+        for (Journal.Run run : journal.getIncompleteRuns()) {
+            Board board = new Board(run.getBoardId(), null, run.getBoardName());
+            try {
+                if (rollback) {
+                    System.out.println("Rolling back the interrupted run on board " + board.name);
+                    reconcileJqlSwimlanes(board, run.getBefore());
+                    if (run.getStrategy() != null && !SwimLaneStrategy.QUERIES.jsonValue.equals(run.getStrategy())) {
+                        //The custom swimlanes are kept by Jira, so switching back does not lose them
+                        setSwimlaneStrategy(board, run.getStrategy());
+                    }
+                } else {
+                    List<ModelNode> pending = run.getPendingOperations();
+                    System.out.println("Resuming the interrupted run on board " + board.name + " with " + pending.size()
+                            + " unfinished changes");
+                    replay(board, pending);
+                    if (run.getWanted() != null) {
+                        reconcileJqlSwimlanes(board, run.getWanted());
+                    }
+                }
+                journal.commit(board);
+            } catch (RuntimeException e) {
+                System.err.println("Could not " + (rollback ? "roll back" : "resume") + " the interrupted run on board "
+                        + board.name + ", it is left in the journal: " + e.getMessage());
+                failures.put(board.name, e);
+            }
+        }
+        return failures;
+    }
+
+    private void replay(Board board, List<ModelNode> pending) {
+        for (ModelNode op : pending) {
+            Map<Integer, Swimlane> byId = new HashMap<>();
+            Map<String, Swimlane> byName = new HashMap<>();
+            for (Swimlane swimlane : getSwimlanes(board).getSwimlanes()) {
+                byId.put(swimlane.getId(), swimlane);
+                byName.putIfAbsent(swimlane.getName(), swimlane);
+            }
+            switch (op.get("op").asString()) {
+                case "create":
+                    if (!byName.containsKey(op.get("name").asString())) {
+                        addJqlSwimlane(board, JqlSwimlaneConfigurations.JqlSwimlaneConfig.fromBoard(op.get("name").asString(),
+                                op.hasDefined("query") ? op.get("query").asString() : null,
+                                op.hasDefined("description") ? op.get("description").asString() : null));
+                    }
+                    break;
+                case "update":
+                    if (byId.containsKey(op.get("id").asInt())) {
+                        updateJqlSwimlane(board, op.get("id").asInt(), JqlSwimlaneConfigurations.JqlSwimlaneConfig.fromBoard(
+                                op.get("name").asString(), op.hasDefined("query") ? op.get("query").asString() : null,
+                                op.get("description").asString()));
+                    }
+                    break;
+                case "delete":
+                    if (byId.containsKey(op.get("id").asInt())) {
+                        deleteSwimlane(board, op.get("name").asString(), op.get("id").asInt());
+                    }
+                    break;
+                case "move":
+                    Integer after = op.hasDefined("after") ? op.get("after").asInt() : null;
+                    if (byId.containsKey(op.get("id").asInt()) && (after == null || byId.containsKey(after))) {
+                        moveSwimlane(board, op.get("id").asInt(), after);
+                    }
+                    break;
+                case "strategy":
+                    setSwimlaneStrategy(board, op.get("swimlaneStrategyId").asString());
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown journaled change " + op);
+            }
+        }
     }
 
+    /**
+     * Closes the HTTP client and its connections, and the journal if there is one.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        Client client = this.client;
+        if (client != null) {
+            client.close();
+        }
+        Journal journal = this.journal;
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("Could not close journal " + journal.getFile() + ": " + e.getMessage());
+            }
+        }
+    }
 
     private UriBuilder getRootRestUri() {
         return UriBuilder.fromUri(jiraConfiguration.getUri()).path("rest");
@@ -68,39 +368,258 @@ public class Commands {
     }
 
 
+    /**
+     * Gets the names of the components of the configured project. They are only read once.
+     *
+     * @return the component names
+     */
+    public Set<String> getProjectComponents() {
+        Set<String> components = projectComponents;
+        if (components == null) {
+            components = pollProjectComponents();
+        }
+        return components;
+    }
+
+    /**
+     * Reads the names of the components of the configured project again, as cheaply as possible. If Jira returned an
+     * {@code ETag} or {@code Last-Modified} header last time, the request is conditional. Otherwise the response is
+     * only parsed if its hash differs from that of the last response.
+     *
+     * @return the component names. If they have not changed since the last call, the same instance is returned
+     */
+    public Set<String> pollProjectComponents() {
+        ProjectComponents previous = lastProjectComponents;
+        WebTarget target = client().target(
+                getRootRestUri().path("api").path("2").path("project").path(String.valueOf(jiraConfiguration.getProject())).path("components"));
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        if (previous != null) {
+            if (previous.etag != null) {
+                headers.putSingle(HttpHeaders.IF_NONE_MATCH, previous.etag);
+            }
+            if (previous.lastModified != null) {
+                headers.putSingle(HttpHeaders.IF_MODIFIED_SINCE, previous.lastModified);
+            }
+        }
+        Response response = send(target, HttpMethod.GET, null, headers, Endpoint.PROJECT_COMPONENTS);
+        if (previous != null && response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode()) {
+            projectComponents = previous.names;
+            return previous.names;
+        }
+        if (!isSuccess(response)) {
+            throw new IllegalStateException("Could not read the components of project " + jiraConfiguration.getProject()
+                    + ": " + response.getStatus() + " " + responseBody(response, true));
+        }
+        byte[] body = response.readEntity(byte[].class);
+        String hash = SnapshotStore.hash(body);
+        Set<String> components;
+        if (previous != null && previous.hash.equals(hash)) {
+            components = previous.names;
+        } else {
+            Set<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            for (ModelNode component : ModelNode.fromJSONString(new String(body, StandardCharsets.UTF_8)).asList()) {
+                names.add(component.get("name").asString());
+            }
+            components = Collections.unmodifiableSet(names);
+            if (previous != null) {
+                //The validator checks component names
+                jqlValidatorLock.lock();
+                try {
+                    jqlValidator = null;
+                } finally {
+                    jqlValidatorLock.unlock();
+                }
+            }
+        }
+        lastProjectComponents = new ProjectComponents(response.getHeaderString(HttpHeaders.ETAG),
+                response.getHeaderString(HttpHeaders.LAST_MODIFIED), hash, components);
+        projectComponents = components;
+        return components;
+    }
+
+    /**
+     * Forgets the project components read from Jira, and which boards' swimlanes have to be read from allData, so
+     * that they are found out again when next needed. Other things read from Jira are cached for at most
+     * {@code editor.cache.ttl.seconds}. For long lived instances.
+     */
+    public void refresh() {
+        editModelUnsupported.clear();
+        jqlValidatorLock.lock();
+        try {
+            projectComponents = null;
+            jqlValidator = null;
+        } finally {
+            jqlValidatorLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the validator used to check swimlane queries before they are sent to Jira. The first call reads the
+     * project's components.
+     *
+     * @return the validator
+     */
+    public JqlValidator getJqlValidator() {
+        JqlValidator validator = jqlValidator;
+        if (validator == null) {
+            jqlValidatorLock.lock();
+            try {
+                validator = jqlValidator;
+                if (validator == null) {
+                    validator = new JqlValidator(getProjectComponents());
+                    jqlValidator = validator;
+                }
+            } finally {
+                jqlValidatorLock.unlock();
+            }
+        }
+        return validator;
+    }
+
+    /**
+     * Checks the queries of all the swimlane sets before any of them are applied. The sets are checked in parallel.
+     *
+     * @param sets the swimlane sets
+     * @throws IllegalStateException listing all the problems found, if there are any
+     */
+    public void preflight(Collection<JqlSwimlaneConfigurations.SwimlaneSet> sets) {
+        JqlValidator validator = getJqlValidator();
+        List<Callable<List<String>>> checks = new ArrayList<>();
+        for (JqlSwimlaneConfigurations.SwimlaneSet set : sets) {
+            checks.add(() -> validator.validate(set));
+        }
+        List<String> problems = new ArrayList<>();
+        for (List<String> result : executor.invokeAll(checks)) {
+            problems.addAll(result);
+        }
+        throwIfProblems(problems);
+    }
+
+    private void checkJql(JqlSwimlaneConfigurations.JqlSwimlaneConfig... jqlSwimlaneConfigs) {
+        throwIfProblems(getJqlValidator().validate(jqlSwimlaneConfigs));
+    }
+
+    private static void throwIfProblems(List<String> problems) {
+        if (problems.size() > 0) {
+            StringBuilder sb = new StringBuilder("Invalid swimlane queries:");
+            for (String problem : problems) {
+                sb.append("\n    ").append(problem);
+            }
+            throw new IllegalStateException(sb.toString());
+        }
+    }
+
+    /**
+     * Finds the kanban board with the given name. The search stops as soon as it is clear whether there is
+     * exactly one board with that name, so at most the pages up to the second match are fetched.
+     *
+     * @param name the exact name of the board
+     * @return the board
+     */
     public Board findBoard(String name) {
-        WebTarget target = client.target(
-                getRootAgileUri().path("board")
-                        .queryParam("type", "kanban")
-                        .queryParam("name", name));
-
-        Response response = target.request(MediaType.APPLICATION_JSON)
-                .get();
-        ModelNode modelNode = getOneValue(response, "name", name);
-        return new Board(
-                modelNode.get("id").asInt(),
-                UriBuilder.fromUri(modelNode.get("self").asString()).build(),
-                name);
+        Board board = findBoardIfExists(name);
+        if (board == null) {
+            throw new IllegalStateException("Could not find any board with name==" + name);
+        }
+        return board;
+    }
+
+    /**
+     * Finds the kanban board with the given name, if there is one.
+     *
+     * @param name the exact name of the board
+     * @return the board, or {@code null} if there is none
+     * @throws IllegalStateException if there is more than one board with the name
+     */
+    public Board findBoardIfExists(String name) {
+        Board cached = cache.getBoard(name);
+        if (cached != null) {
+            return cached;
+        }
+        //Jira's name parameter matches boards containing the name, so we still need to look for an exact match
+        List<Board> found;
+        try (Stream<Board> boards = listBoards(name)) {
+            found = boards.filter(board -> board.name.equals(name))
+                    .limit(2)
+                    .collect(Collectors.toList());
+        }
+        if (found.size() == 0) {
+            return null;
+        }
+        if (found.size() > 1) {
+            throw new IllegalStateException("More than one board with name==" + name);
+        }
+        Board board = found.get(0);
+        cache.putBoard(board);
+        return board;
+    }
+
+    /**
+     * Lists the kanban boards whose name contains {@code nameFilter}. The pages of the search are fetched lazily as
+     * the stream is consumed, with the next page prefetched in the background. Close the stream if it is not
+     * consumed to the end, so that a pending prefetch is dropped.
+     *
+     * @param nameFilter the text the board names should contain, or {@code null} to list all kanban boards
+     * @return a stream of the boards
+     */
+    public Stream<Board> listBoards(String nameFilter) {
+        BoardPageIterator iterator = new BoardPageIterator(startAt -> fetchBoardPage(nameFilter, startAt), executor);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    private BoardPageIterator.BoardPage fetchBoardPage(String nameFilter, int startAt) {
+        UriBuilder uri = getRootAgileUri().path("board")
+                .queryParam("type", "kanban")
+                .queryParam("startAt", startAt)
+                .queryParam("maxResults", BOARD_PAGE_SIZE);
+        if (nameFilter != null) {
+            uri.queryParam("name", nameFilter);
+        }
+        Response response = send(client().target(uri), HttpMethod.GET, null, Endpoint.BOARD_SEARCH);
+        if (!isSuccess(response)) {
+            throw new IllegalStateException("Could not search for boards " + response.getStatus() + " " + responseBody(response, true));
+        }
+
+        List<Board> boards = new ArrayList<>();
+        //Older versions of the agile API don't return isLast, in which case a short page means we are done
+        Boolean[] last = new Boolean[1];
+        Map<String, JsonStreams.ValueHandler> handlers = new HashMap<>();
+        handlers.put("isLast", parser -> last[0] = parser.getValueAsBoolean());
+        handlers.put("values", parser -> JsonStreams.forEachElement(parser, element -> {
+            ModelNode value = JsonStreams.readNode(element);
+            boards.add(new Board(
+                    value.get("id").asInt(),
+                    UriBuilder.fromUri(value.get("self").asString()).build(),
+                    value.get("name").asString()));
+        }));
+        readJson(response, handlers);
+        boolean isLast = last[0] != null ? last[0] : boards.size() < BOARD_PAGE_SIZE;
+        return new BoardPageIterator.BoardPage(boards, startAt + boards.size(), isLast || boards.size() == 0);
     }
 
     public void deleteBoard(int id){
-        WebTarget target = client.target(
+        WebTarget target = client().target(
                 getRootGrasshopperUri().path("rapidview").path(String.valueOf(id)));
 
-        Response response = target.request(MediaType.APPLICATION_JSON)
-                .delete();
+        Response response = send(target, HttpMethod.DELETE, null, Endpoint.RAPIDVIEW_DELETE);
+        cache.invalidateBoard(id);
         if (!isSuccess(response)) {
             throw new IllegalStateException("Could not delete " + id + " " + response.getStatus() + " " + responseBody(response, true));
         }
+        response.close();
     }
 
     public Board copyBoard(Board source, String targetName) {
-        WebTarget target = client.target(
+        WebTarget target = client().target(
                 getRootGrasshopperUri().path("rapidview").path(String.valueOf(source.id)).path("copy"));
 
-        Response response = performPut(target, new ModelNode().setEmptyObject());
+        Response response = performPut(target, new ModelNode().setEmptyObject(), Endpoint.RAPIDVIEW_COPY);
 
         ModelNode modelNode = responseBody(response);
+        cache.invalidateBoardName(targetName);
+        cache.invalidateBoardName(modelNode.get("name").asString());
         String sourceUri = source.uri.toString();
         sourceUri = sourceUri.substring(0, sourceUri.lastIndexOf("/"));
         return new Board(
@@ -109,77 +628,581 @@ public class Commands {
                 modelNode.get("name").asString());
     }
 
+    /**
+     * Creates a kanban board.
+     *
+     * @param name the name of the board
+     * @param filterId the id of the saved filter selecting the board's issues
+     * @return the new board
+     */
+    public Board createBoard(String name, int filterId) {
+        WebTarget target = client().target(getRootAgileUri().path("board"));
+        ModelNode node = new ModelNode();
+        node.get("name").set(name);
+        node.get("type").set("kanban");
+        node.get("filterId").set(filterId);
+        ModelNode created = responseBody(performPost(target, node, Endpoint.BOARD_CREATE));
+        cache.invalidateBoardName(name);
+        return new Board(
+                created.get("id").asInt(),
+                UriBuilder.fromUri(created.get("self").asString()).build(),
+                created.get("name").asString());
+    }
+
+    /**
+     * Reads the configuration of a board which can be copied to another board.
+     *
+     * @param board the board
+     * @return the configuration
+     */
+    public BoardConfiguration getBoardConfiguration(Board board) {
+        Response response = send(client().target(SwimlaneSource.EDIT_MODEL.getUri(this, board)), HttpMethod.GET, null, Endpoint.EDIT_MODEL);
+        if (!isSuccess(response)) {
+            throw new IllegalStateException("Could not read the configuration of board " + board.name + " "
+                    + response.getStatus() + " " + responseBody(response, true));
+        }
+        return BoardConfiguration.parse(responseBody(response));
+    }
+
+    /**
+     * Creates a saved filter.
+     *
+     * @param name the name of the filter
+     * @param jql the query
+     * @return the id of the new filter
+     */
+    public int createFilter(String name, String jql) {
+        WebTarget target = client().target(getRootRestUri().path("api").path("2").path("filter"));
+        ModelNode node = new ModelNode();
+        node.get("name").set(name);
+        node.get("jql").set(jql);
+        return responseBody(performPost(target, node, Endpoint.FILTER_CREATE)).get("id").asInt();
+    }
+
+    public void updateFilterJql(int filterId, String jql) {
+        WebTarget target = client().target(getRootRestUri().path("api").path("2").path("filter").path(String.valueOf(filterId)));
+        ModelNode node = new ModelNode();
+        node.get("jql").set(jql);
+        performPut(target, node, Endpoint.FILTER_UPDATE).close();
+    }
+
+    /**
+     * Makes the board use a different saved filter.
+     *
+     * @param board the board
+     * @param filterId the id of the filter
+     */
+    public void setBoardFilter(Board board, int filterId) {
+        WebTarget target = client().target(getRootGrasshopperUri().path("rapidviewconfig").path("filter"));
+        ModelNode node = new ModelNode();
+        node.get("id").set(board.id);
+        node.get("savedFilterId").set(filterId);
+        try {
+            performPut(target, node, Endpoint.RAPIDVIEW_CONFIG).close();
+        } finally {
+            cache.invalidateSnapshot(board.id);
+        }
+    }
+
+    /**
+     * @return the ids of all the statuses of the Jira instance, by name
+     */
+    public Map<String, String> getStatusIds() {
+        Response response = send(client().target(getRootRestUri().path("api").path("2").path("status")),
+                HttpMethod.GET, null, Endpoint.STATUSES);
+        if (!isSuccess(response)) {
+            throw new IllegalStateException("Could not read the statuses " + response.getStatus() + " " + responseBody(response, true));
+        }
+        Map<String, String> statuses = new HashMap<>();
+        for (ModelNode status : responseBody(response).asList()) {
+            statuses.put(status.get("name").asString(), status.get("id").asString());
+        }
+        return statuses;
+    }
+
+    /**
+     * Reads a page of the issues matching a query. The issues are parsed one at a time as the response is read.
+     *
+     * @param jql the query
+     * @param fields the fields wanted for each issue
+     * @param startAt the index of the first issue wanted
+     * @param maxResults the number of issues wanted. Jira may cap this
+     * @param handler called with each issue
+     * @return the total number of issues matching the query, and the page size Jira used
+     */
+    SearchPage searchIssues(String jql, List<String> fields, int startAt, int maxResults, Consumer<ModelNode> handler) {
+        WebTarget target = client().target(getRootRestUri().path("api").path("2").path("search"));
+        ModelNode node = new ModelNode();
+        node.get("jql").set(jql);
+        node.get("startAt").set(startAt);
+        node.get("maxResults").set(maxResults);
+        ModelNode fieldList = node.get("fields").setEmptyList();
+        for (String field : fields) {
+            fieldList.add(field);
+        }
+        Response response = performPost(target, node, Endpoint.ISSUE_SEARCH);
+
+        int[] totalAndPageSize = {0, maxResults};
+        Map<String, JsonStreams.ValueHandler> handlers = new HashMap<>();
+        handlers.put("total", parser -> totalAndPageSize[0] = parser.getValueAsInt());
+        handlers.put("maxResults", parser -> totalAndPageSize[1] = parser.getValueAsInt());
+        handlers.put("issues", parser -> JsonStreams.forEachElement(parser, element -> handler.accept(JsonStreams.readNode(element))));
+        readJson(response, handlers);
+        return new SearchPage(totalAndPageSize[0], totalAndPageSize[1]);
+    }
+
+    /**
+     * Works out how the issues of a board would be spread across a set of swimlanes, without changing the board.
+     *
+     * @param board the board
+     * @param jqlSwimlaneConfigs the swimlanes, in the order they would appear on the board
+     * @return the distribution
+     */
+    public SwimlaneDistribution analyzeSwimlanes(Board board, JqlSwimlaneConfigurations.JqlSwimlaneConfig... jqlSwimlaneConfigs) {
+        return SwimlaneDistribution.analyze(this, board, jqlSwimlaneConfigs);
+    }
+
+    /**
+     * Replaces the columns of the board.
+     *
+     * @param board the board
+     * @param statisticsField the id of the field used for the column constraints, or {@code null} to leave it as is
+     * @param columns the columns, whose statuses must have the ids used by this Jira instance
+     */
+    public void setColumns(Board board, String statisticsField, List<BoardConfiguration.Column> columns) {
+        WebTarget target = client().target(getRootGrasshopperUri().path("rapidviewconfig").path("columns"));
+        ModelNode node = new ModelNode();
+        node.get("rapidViewId").set(board.id);
+        if (statisticsField != null) {
+            node.get("currentStatisticsField", "id").set(statisticsField);
+        }
+        ModelNode mappedColumns = node.get("mappedColumns").setEmptyList();
+        for (BoardConfiguration.Column column : columns) {
+            ModelNode columnNode = new ModelNode();
+            columnNode.get("name").set(column.getName());
+            ModelNode statuses = columnNode.get("mappedStatuses").setEmptyList();
+            for (BoardConfiguration.Status status : column.getStatuses()) {
+                statuses.add(new ModelNode().set("id", status.getId()));
+            }
+            columnNode.get("min").set(column.getMin() == null ? "" : column.getMin());
+            columnNode.get("max").set(column.getMax() == null ? "" : column.getMax());
+            mappedColumns.add(columnNode);
+        }
+        try {
+            performPut(target, node, Endpoint.RAPIDVIEW_CONFIG).close();
+        } finally {
+            cache.invalidateSnapshot(board.id);
+        }
+    }
+
+    public int addQuickFilter(Board board, String name, String query, String description) {
+        WebTarget target = client().target(getRootGrasshopperUri().path("quickfilters").path(String.valueOf(board.id)));
+        try {
+            return responseBody(performPost(target, quickFilterNode(name, query, description), Endpoint.QUICK_FILTER_CREATE))
+                    .get("id").asInt();
+        } finally {
+            cache.invalidateSnapshot(board.id);
+        }
+    }
+
+    public void updateQuickFilter(Board board, int quickFilterId, String name, String query, String description) {
+        WebTarget target = client().target(
+                getRootGrasshopperUri().path("quickfilters").path(String.valueOf(board.id)).path(String.valueOf(quickFilterId)));
+        ModelNode node = quickFilterNode(name, query, description);
+        node.get("id").set(quickFilterId);
+        try {
+            performPut(target, node, Endpoint.QUICK_FILTER_UPDATE).close();
+        } finally {
+            cache.invalidateSnapshot(board.id);
+        }
+    }
+
+    public void deleteQuickFilter(Board board, int quickFilterId) {
+        WebTarget target = client().target(
+                getRootGrasshopperUri().path("quickfilters").path(String.valueOf(board.id)).path(String.valueOf(quickFilterId)));
+        try {
+            performDelete(target, Endpoint.QUICK_FILTER_DELETE).close();
+        } finally {
+            cache.invalidateSnapshot(board.id);
+        }
+    }
+
+    private static ModelNode quickFilterNode(String name, String query, String description) {
+        ModelNode node = new ModelNode();
+        node.get("name").set(name);
+        node.get("query").set(query);
+        node.get("description").set(description == null ? "" : description);
+        return node;
+    }
+
+    /**
+     * Sets what the colours of the cards are based on.
+     *
+     * @param board the board
+     * @param strategy the strategy, e.g. {@code priorities}, {@code issuetypes}, {@code assignees} or {@code custom} for queries
+     */
+    public void setCardColorStrategy(Board board, String strategy) {
+        WebTarget target = client().target(
+                getRootGrasshopperUri().path("cardcolors").path(String.valueOf(board.id)).path("strategy"));
+        ModelNode node = new ModelNode();
+        node.get("id").set(strategy);
+        try {
+            performPut(target, node, Endpoint.RAPIDVIEW_CONFIG).close();
+        } finally {
+            cache.invalidateSnapshot(board.id);
+        }
+    }
+
+    public int addCardColor(Board board, String strategy, String color, String value) {
+        WebTarget target = client().target(
+                getRootGrasshopperUri().path("cardcolors").path(String.valueOf(board.id)).path("strategy").path(strategy));
+        ModelNode node = new ModelNode();
+        node.get("color").set(color);
+        node.get("value").set(value);
+        try {
+            return responseBody(performPost(target, node, Endpoint.CARD_COLOR_CREATE)).get("id").asInt();
+        } finally {
+            cache.invalidateSnapshot(board.id);
+        }
+    }
+
+    public void deleteCardColor(Board board, String strategy, int cardColorId) {
+        WebTarget target = client().target(
+                getRootGrasshopperUri().path("cardcolors").path(String.valueOf(board.id)).path("strategy").path(strategy)
+                        .path(String.valueOf(cardColorId)));
+        try {
+            performDelete(target, Endpoint.CARD_COLOR_DELETE).close();
+        } finally {
+            cache.invalidateSnapshot(board.id);
+        }
+    }
+
     public void setSwimlaneStrategy(Board board, SwimLaneStrategy strategy) {
-        WebTarget target = client.target(
+        setSwimlaneStrategy(board, strategy.jsonValue);
+    }
+
+    /**
+     * Sets the swimlane strategy from its Jira id, so that strategies we do not otherwise support can be restored.
+     */
+    private void setSwimlaneStrategy(Board board, String strategyId) {
+        WebTarget target = client().target(
                 getRootGrasshopperUri().path("rapidviewconfig").path("swimlaneStrategy"));
         ModelNode node = new ModelNode();
         node.get("id").set(board.id);
-        node.get("swimlaneStrategyId").set(strategy.jsonValue);
-        performPut(target, node);
+        node.get("swimlaneStrategyId").set(strategyId);
+        long seq = journalIntent(board, "strategy", node);
+        try {
+            performPut(target, node, Endpoint.SWIMLANE_STRATEGY).close();
+        } finally {
+            cache.invalidateSnapshot(board.id);
+        }
+        journalDone(board, seq);
+    }
+
+    /**
+     * Reads the swimlanes currently configured for the board. They are read from the board configuration's edit
+     * model, which is small. If the Jira instance does not provide the board's swimlanes there, i.e. the edit model
+     * is not found or does not contain them, we fall back to the xboard/work/allData payload for that board, which
+     * contains all the issues on the board as well. Other failures are errors, rather than a reason to fall back.
+     * <p>
+     * If a snapshot of the swimlanes was cached, Jira is asked whether it has changed and the cached one is used
+     * if it has not.
+     *
+     * @param board the board
+     * @return the swimlanes, in the order they appear on the board
+     */
+    public BoardSwimlanes getSwimlanes(Board board) {
+        if (!editModelUnsupported.contains(board.id)) {
+            BoardSwimlanes swimlanes = getSwimlanes(board, SwimlaneSource.EDIT_MODEL);
+            if (swimlanes != null) {
+                return swimlanes;
+            }
+            System.err.println("The edit model of board " + board.name + " does not have its swimlanes, falling back to xboard/work/allData");
+            editModelUnsupported.add(board.id);
+            cache.invalidateSnapshot(board.id);
+        }
+        return getSwimlanes(board, SwimlaneSource.ALL_DATA);
+    }
+
+    private BoardSwimlanes getSwimlanes(Board board, SwimlaneSource source) {
+        WebTarget target = client().target(source.getUri(this, board));
+
+        BoardCache.Snapshot<BoardSwimlanes> snapshot = cache.getSnapshot(board.id);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        if (snapshot != null) {
+            if (snapshot.getEtag() != null) {
+                headers.putSingle(HttpHeaders.IF_NONE_MATCH, snapshot.getEtag());
+            }
+            if (snapshot.getLastModified() != null) {
+                headers.putSingle(HttpHeaders.IF_MODIFIED_SINCE, snapshot.getLastModified());
+            }
+        }
+
+        Response response = send(target, HttpMethod.GET, null, headers, source.endpoint);
+        if (snapshot != null && response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode()) {
+            return snapshot.getValue();
+        }
+        if (source == SwimlaneSource.EDIT_MODEL && response.getStatus() == Response.Status.NOT_FOUND.getStatusCode()) {
+            return null;
+        }
+        if (!isSuccess(response)) {
+            throw new IllegalStateException("Could not read the swimlanes of board " + board.name + " from " + source
+                    + ": " + response.getStatus() + " " + responseBody(response, true));
+        }
+        final BoardSwimlanes swimlanes;
+        try {
+            swimlanes = source.read(response.readEntity(InputStream.class));
+        } finally {
+            response.close();
+        }
+        if (swimlanes != null) {
+            cache.putSnapshot(board.id, response.getHeaderString(HttpHeaders.ETAG),
+                    response.getHeaderString(HttpHeaders.LAST_MODIFIED), swimlanes);
+        }
+        return swimlanes;
+    }
+
+    /**
+     * Reads the raw payload containing the board's swimlanes from one of the sources. Used to compare the sources.
+     */
+    String getSwimlanesPayload(Board board, SwimlaneSource source) {
+        Response response = send(client().target(source.getUri(this, board)), HttpMethod.GET, null, source.endpoint);
+        if (!isSuccess(response)) {
+            throw new IllegalStateException("Could not read " + source + " for " + board.id + " " + response.getStatus());
+        }
+        return response.readEntity(String.class);
     }
 
     public void deleteExistingJqlSwimlanes(Board board) {
-        WebTarget target = client.target(
-                getRootGrasshopperUri().path("xboard").path("work").path("allData")
-                    .queryParam("rapidViewId", String.valueOf(board.getId()))
-                    .queryParam("selectedProjectKey", jiraConfiguration.getProject()));
-
-        Response response = target.request(MediaType.APPLICATION_JSON)
-                .get();
-        ModelNode boardConfig = responseBody(response);
-        ModelNode swimlanes = boardConfig.get("swimlanesData", "customSwimlanesData", "swimlanes");
-        if (!swimlanes.isDefined()) {
+        BoardSwimlanes swimlanes = getSwimlanes(board);
+        if (!swimlanes.hasCustomSwimlanes()) {
             throw new IllegalStateException("The exisiting board does not appear to use custom swimlanes");
         }
-        for (ModelNode swimlane : swimlanes.asList()) {
-            if (!swimlane.get("defaultSwimlane").asBoolean()) {
+        List<Callable<Void>> deletes = new ArrayList<>();
+        for (Swimlane swimlane : swimlanes.getSwimlanes()) {
+            if (!swimlane.isDefaultSwimlane()) {
                 //Delete the swimlane
-                deleteSwimlane(board, swimlane.get("name").asString(), swimlane.get("id").asInt());
+                deletes.add(() -> {
+                    deleteSwimlane(board, swimlane.getName(), swimlane.getId());
+                    return null;
+                });
+            }
+        }
+        executor.invokeAll(deletes);
+    }
+
+    /**
+     * Starts a batch of swimlane changes for the board. The board's current swimlanes are read now.
+     *
+     * @param board the board
+     * @return the batch
+     */
+    public SwimlaneBatch newSwimlaneBatch(Board board) {
+        return new SwimlaneBatch(this, board, getSwimlanes(board));
+    }
+
+    /**
+     * Makes the board's custom swimlanes match {@code jqlSwimlaneConfigs}, using the swimlane names to match the
+     * existing swimlanes with the wanted ones. Only the differences are sent to Jira, so if the board is already
+     * up to date the only request made is the one reading the existing swimlanes. The queries are not validated
+     * here, since that needs the project's components; call {@link #preflight(Collection)} before the first change.
+     *
+     * @param board the board
+     * @param jqlSwimlaneConfigs the wanted swimlanes, in the order they should appear on the board
+     */
+    public void reconcileJqlSwimlanes(Board board, JqlSwimlaneConfigurations.JqlSwimlaneConfig... jqlSwimlaneConfigs) {
+        SwimlaneBatch batch = newSwimlaneBatch(board);
+        BoardSwimlanes existing = batch.getExisting();
+        if (!SwimLaneStrategy.QUERIES.jsonValue.equals(existing.getStrategy())) {
+            setSwimlaneStrategy(board, SwimLaneStrategy.QUERIES);
+        }
+
+        Map<String, Swimlane> existingByName = new HashMap<>();
+        for (Swimlane swimlane : existing.getSwimlanes()) {
+            if (swimlane.isDefaultSwimlane()) {
+                continue;
+            }
+            if (existingByName.putIfAbsent(swimlane.getName(), swimlane) != null) {
+                //Duplicate name, only the first one is kept
+                batch.delete(swimlane.getId());
+            }
+        }
+
+        Set<String> wantedNames = new HashSet<>();
+        List<Integer> order = new ArrayList<>();
+        for (JqlSwimlaneConfigurations.JqlSwimlaneConfig config : jqlSwimlaneConfigs) {
+            if (!wantedNames.add(config.getName())) {
+                throw new IllegalStateException("More than one swimlane called " + config.getName());
+            }
+            Swimlane swimlane = existingByName.get(config.getName());
+            if (swimlane == null) {
+                order.add(batch.create(config));
+            } else {
+                if (!swimlane.matches(config)) {
+                    batch.update(swimlane.getId(), config);
+                }
+                order.add(swimlane.getId());
+            }
+        }
+        for (Swimlane swimlane : existingByName.values()) {
+            if (!wantedNames.contains(swimlane.getName())) {
+                batch.delete(swimlane.getId());
             }
         }
+        batch.order(order);
+        batch.apply();
     }
 
-    private void deleteSwimlane(Board board, String name, int swimlaneId) {
-        WebTarget target = client.target(
+    void deleteSwimlane(Board board, String name, int swimlaneId) {
+        WebTarget target = client().target(
                 getRootGrasshopperUri().path("swimlanes").path(String.valueOf(board.id)).path(String.valueOf(swimlaneId)));
 
-        Response response = target.request(MediaType.APPLICATION_JSON)
-                .delete();
+        ModelNode op = new ModelNode();
+        op.get("id").set(swimlaneId);
+        op.get("name").set(name);
+        long seq = journalIntent(board, "delete", op);
+        Response response = send(target, HttpMethod.DELETE, null, Endpoint.SWIMLANE_DELETE);
+        cache.invalidateSnapshot(board.id);
         if (!isSuccess(response)) {
             throw new IllegalStateException("Could not delete swimlane " + name + "(" + swimlaneId + ")");
         }
+        response.close();
+        journalDone(board, seq);
     }
 
 
-    public void addJqlSwimlane(Board board, JqlSwimlaneConfigurations.JqlSwimlaneConfig jqlSwimlaneConfig) {
-        WebTarget target = client.target(
+    /**
+     * Adds the swimlanes to the board. The swimlanes are created concurrently, and then moved so that they
+     * appear on the board in the same order as in {@code jqlSwimlaneConfigs}, above any existing swimlanes.
+     *
+     * @param board the board
+     * @param jqlSwimlaneConfigs the swimlanes to add
+     */
+    public void addJqlSwimlanes(Board board, JqlSwimlaneConfigurations.JqlSwimlaneConfig... jqlSwimlaneConfigs) {
+        checkJql(jqlSwimlaneConfigs);
+        SwimlaneBatch batch = newSwimlaneBatch(board);
+        List<Integer> order = new ArrayList<>();
+        for (JqlSwimlaneConfigurations.JqlSwimlaneConfig jqlSwimlaneConfig : jqlSwimlaneConfigs) {
+            order.add(batch.create(jqlSwimlaneConfig));
+        }
+        batch.order(order);
+        batch.apply();
+    }
+
+    /**
+     * Adds a swimlane to the board. Jira puts new swimlanes at the top of the board.
+     *
+     * @param board the board
+     * @param jqlSwimlaneConfig the swimlane to add
+     * @return the id of the new swimlane
+     */
+    public int addJqlSwimlane(Board board, JqlSwimlaneConfigurations.JqlSwimlaneConfig jqlSwimlaneConfig) {
+        WebTarget target = client().target(
                 getRootGrasshopperUri().path("swimlanes").path(String.valueOf(board.id)));
         ModelNode node = new ModelNode();
         node.get("name").set(jqlSwimlaneConfig.getName());
-        node.get("query").set(jqlSwimlaneConfig.getJql());
+        if (jqlSwimlaneConfig.getJql() != null) {
+            node.get("query").set(jqlSwimlaneConfig.getJql());
+        }
         if (jqlSwimlaneConfig.getDescription() != null) {
             node.get("description").set(jqlSwimlaneConfig.getDescription());
         }
-        performPost(target, node);
+        long seq = journalIntent(board, "create", node);
+        try {
+            Response response = performPost(target, node, Endpoint.SWIMLANE_CREATE);
+            int id = responseBody(response).get("id").asInt();
+            journalDone(board, seq);
+            return id;
+        } finally {
+            cache.invalidateSnapshot(board.id);
+        }
     }
 
+    /**
+     * Changes the name, query and description of an existing swimlane.
+     *
+     * @param board the board
+     * @param swimlaneId the id of the swimlane to update
+     * @param jqlSwimlaneConfig the new settings
+     */
+    public void updateJqlSwimlane(Board board, int swimlaneId, JqlSwimlaneConfigurations.JqlSwimlaneConfig jqlSwimlaneConfig) {
+        WebTarget target = client().target(
+                getRootGrasshopperUri().path("swimlanes").path(String.valueOf(board.id)).path(String.valueOf(swimlaneId)));
+        ModelNode node = new ModelNode();
+        node.get("id").set(swimlaneId);
+        node.get("name").set(jqlSwimlaneConfig.getName());
+        if (jqlSwimlaneConfig.getJql() != null) {
+            node.get("query").set(jqlSwimlaneConfig.getJql());
+        }
+        node.get("description").set(jqlSwimlaneConfig.getDescription() == null ? "" : jqlSwimlaneConfig.getDescription());
+        long seq = journalIntent(board, "update", node);
+        try {
+            performPut(target, node, Endpoint.SWIMLANE_UPDATE).close();
+        } finally {
+            cache.invalidateSnapshot(board.id);
+        }
+        journalDone(board, seq);
+    }
 
-    private ModelNode getOneValue(Response response, String key, String value) {
-        ModelNode result = responseBody(response);
-        List<ModelNode> values = result.get("values").asList();
-        ModelNode found = null;
-        for (ModelNode node : values) {
-            if (node.get(key).asString().equals(value)) {
-                if (found != null) {
-                    throw new IllegalStateException("More than one entry with " + key + "==" + value + result);
-                }
-                found = node;
-            }
+    /**
+     * Moves a swimlane.
+     *
+     * @param board the board
+     * @param swimlaneId the id of the swimlane to move
+     * @param afterSwimlaneId the id of the swimlane it should be placed after, or {@code null} to make it the first one
+     */
+    public void moveSwimlane(Board board, int swimlaneId, Integer afterSwimlaneId) {
+        WebTarget target = client().target(
+                getRootGrasshopperUri().path("swimlanes").path(String.valueOf(board.id)).path(String.valueOf(swimlaneId)).path("move"));
+        ModelNode node = new ModelNode();
+        if (afterSwimlaneId == null) {
+            node.get("position").set("First");
+        } else {
+            node.get("after").set(afterSwimlaneId);
         }
-        if (found == null) {
-            throw new IllegalStateException("Could not find any entry with " + key + "==" + value + result);
+        ModelNode op = node.clone();
+        op.get("id").set(swimlaneId);
+        long seq = journalIntent(board, "move", op);
+        try {
+            performPost(target, node, Endpoint.SWIMLANE_MOVE).close();
+        } finally {
+            cache.invalidateSnapshot(board.id);
+        }
+        journalDone(board, seq);
+    }
+
+    private long journalIntent(Board board, String type, ModelNode request) {
+        Journal journal = this.journal;
+        if (journal == null || !journal.hasRun(board)) {
+            //Changes outside of a run, e.g. when cloning a board, have nothing to be rolled back to
+            return -1;
+        }
+        ModelNode op = request.clone();
+        op.get("op").set(type);
+        return journal.intent(board, op);
+    }
+
+    private void journalDone(Board board, long seq) {
+        Journal journal = this.journal;
+        if (journal != null && seq >= 0) {
+            journal.done(board, seq);
+        }
+    }
+
+
+    /**
+     * Reads selected values from the body of the response without parsing the whole body into a model node tree.
+     *
+     * @param response the response
+     * @param handlers the handlers for the values wanted, keyed by their path
+     * @see JsonStreams#visit(InputStream, Map)
+     */
+    private void readJson(Response response, Map<String, JsonStreams.ValueHandler> handlers) {
+        try {
+            JsonStreams.visit(response.readEntity(InputStream.class), handlers);
+        } finally {
+            response.close();
         }
-        return found;
     }
 
     private ModelNode responseBody(Response response) {
@@ -187,7 +1210,16 @@ public class Commands {
     }
 
     private ModelNode responseBody(Response response, boolean forError) {
-        String body = response.readEntity(String.class);
+        final String body;
+        try {
+            body = response.readEntity(String.class);
+        } catch (IllegalStateException e) {
+            //send() closes responses without a body, which error responses from proxies often are
+            if (forError) {
+                return new ModelNode("(no body)");
+            }
+            throw e;
+        }
         try {
             return ModelNode.fromJSONString(body);
         } catch (IllegalArgumentException e) {
@@ -199,28 +1231,113 @@ public class Commands {
         }
     }
 
-    private Response performPut(WebTarget target, ModelNode requestBody) {
-        Response response = target.request(MediaType.APPLICATION_JSON)
-                .put(Entity.entity(requestBody.toJSONString(true), MediaType.APPLICATION_JSON));
+    private Response performPut(WebTarget target, ModelNode requestBody, Endpoint endpoint) {
+        Response response = send(target, HttpMethod.PUT, Entity.entity(requestBody, MediaType.APPLICATION_JSON), endpoint);
         if (!isSuccess(response)) {
-            throw new IllegalStateException("Could not set swimlane strategy " + response.getStatus() + " " + responseBody(response, true));
+            throw new IllegalStateException("Could not PUT " + target.getUri() + " " + response.getStatus() + " " + responseBody(response, true));
         }
         return response;
     }
 
-    private Response performPost(WebTarget target, ModelNode requestBody) {
-        Response response = target.request(MediaType.APPLICATION_JSON)
-                .post(Entity.entity(requestBody.toJSONString(true), MediaType.APPLICATION_JSON));
+    private Response performDelete(WebTarget target, Endpoint endpoint) {
+        Response response = send(target, HttpMethod.DELETE, null, endpoint);
         if (!isSuccess(response)) {
-            throw new IllegalStateException("Could not set swimlane strategy " + response.getStatus() + " " + responseBody(response, true));
+            throw new IllegalStateException("Could not DELETE " + target.getUri() + " " + response.getStatus() + " " + responseBody(response, true));
         }
         return response;
     }
 
+    private Response performPost(WebTarget target, ModelNode requestBody, Endpoint endpoint) {
+        Response response = send(target, HttpMethod.POST, Entity.entity(requestBody, MediaType.APPLICATION_JSON), endpoint);
+        if (!isSuccess(response)) {
+            throw new IllegalStateException("Could not POST " + target.getUri() + " " + response.getStatus() + " " + responseBody(response, true));
+        }
+        return response;
+    }
+
+    /**
+     * All requests to Jira go through here and are run by the {@link RequestScheduler}, which limits the number of
+     * requests in flight and the request rate no matter how many threads are using this instance, and retries
+     * throttled and failed requests. A successful response body is left to be streamed by the caller, which must
+     * read it or close the response to hand the connection back to the pool. Error response bodies are buffered, since
+     * they are read more than once, and responses without a body are closed before returning. The metrics for the
+     * request are reported once its response body has been read.
+     */
+    private Response send(WebTarget target, String method, Entity<?> entity, Endpoint endpoint) {
+        return send(target, method, entity, null, endpoint);
+    }
+
+    private Response send(WebTarget target, String method, Entity<?> entity, MultivaluedMap<String, Object> headers, Endpoint endpoint) {
+        final long start = System.nanoTime();
+        final ByteCounter[] counter = new ByteCounter[1];
+        final int[] retries = new int[1];
+        final CommandMetrics metrics = this.metrics;
+        try {
+            Response result = scheduler.execute(method, target.getUri(), () -> {
+                counter[0] = new ByteCounter();
+                Invocation.Builder builder = target.request(MediaType.APPLICATION_JSON)
+                        .property(ByteCounter.PROPERTY, counter[0]);
+                if (headers != null) {
+                    builder.headers(headers);
+                }
+                Response response = entity == null ? builder.method(method) : builder.method(method, entity);
+                if (!response.hasEntity()) {
+                    response.close();
+                    counter[0].complete();
+                } else if (!isSuccess(response)) {
+                    try {
+                        response.bufferEntity();
+                    } catch (RuntimeException e) {
+                        response.close();
+                        throw e;
+                    }
+                }
+                return response;
+            }, () -> retries[0]++);
+            final long durationNanos = System.nanoTime() - start;
+            final ByteCounter resultCounter = counter[0];
+            final int status = result.getStatus();
+            final int resultRetries = retries[0];
+            resultCounter.onComplete(() -> metrics.onResponse(endpoint, durationNanos, status,
+                    resultCounter.getRequestBytes(), resultCounter.getResponseBytes(), resultRetries));
+            return result;
+        } catch (RuntimeException e) {
+            metrics.onError(endpoint, System.nanoTime() - start, e, retries[0]);
+            throw e;
+        }
+    }
+
     boolean isSuccess(Response response) {
         return response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL;
     }
 
+    private static class ProjectComponents {
+        private final String etag;
+        private final String lastModified;
+        private final String hash;
+        private final Set<String> names;
+
+        ProjectComponents(String etag, String lastModified, String hash, Set<String> names) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.names = names;
+        }
+    }
+
+    /**
+     * The size of a search result, returned by {@link #searchIssues(String, List, int, int, Consumer)}.
+     */
+    static class SearchPage {
+        final int total;
+        final int pageSize;
+
+        SearchPage(int total, int pageSize) {
+            this.total = total;
+            this.pageSize = pageSize;
+        }
+    }
+
     public static class Board {
         final int id;
         final URI uri;
@@ -235,6 +1352,186 @@ public class Commands {
         public int getId() {
             return id;
         }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public static class BoardSwimlanes {
+        private final String strategy;
+        private final List<Swimlane> swimlanes;
+
+        BoardSwimlanes(String strategy, List<Swimlane> swimlanes) {
+            this.strategy = strategy;
+            this.swimlanes = swimlanes;
+        }
+
+        public String getStrategy() {
+            return strategy;
+        }
+
+        public boolean hasCustomSwimlanes() {
+            return swimlanes != null;
+        }
+
+        public List<Swimlane> getSwimlanes() {
+            return swimlanes == null ? Collections.emptyList() : Collections.unmodifiableList(swimlanes);
+        }
+    }
+
+    public static class Swimlane {
+        private final int id;
+        private final String name;
+        private final String query;
+        private final String description;
+        private final boolean defaultSwimlane;
+
+        Swimlane(int id, String name, String query, String description, boolean defaultSwimlane) {
+            this.id = id;
+            this.name = name;
+            this.query = query;
+            this.description = description;
+            this.defaultSwimlane = defaultSwimlane;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public boolean isDefaultSwimlane() {
+            return defaultSwimlane;
+        }
+
+        boolean matches(JqlSwimlaneConfigurations.JqlSwimlaneConfig config) {
+            return name.equals(config.getName())
+                    && Objects.equals(query, config.getJql())
+                    && Objects.equals(emptyToNull(description), emptyToNull(config.getDescription()));
+        }
+
+        private static String emptyToNull(String s) {
+            return s == null || s.isEmpty() ? null : s;
+        }
+    }
+
+    /**
+     * The places the swimlanes of a board can be read from
+     */
+    enum SwimlaneSource {
+        /**
+         * The board configuration edit model, which only contains the board's settings
+         */
+        EDIT_MODEL(Endpoint.EDIT_MODEL) {
+            @Override
+            URI getUri(Commands commands, Board board) {
+                return commands.getRootGrasshopperUri().path("rapidviewconfig").path("editmodel.json")
+                        .queryParam("rapidViewId", String.valueOf(board.getId()))
+                        .build();
+            }
+
+            @Override
+            BoardSwimlanes read(InputStream payload) {
+                SwimlanesHolder holder = new SwimlanesHolder();
+                Map<String, JsonStreams.ValueHandler> handlers = new HashMap<>();
+                handlers.put("swimlanesConfig/swimlaneStrategy", parser -> holder.strategy = parser.getValueAsString());
+                handlers.put("swimlanesConfig/swimlanes", parser -> holder.readSwimlanes(parser, "isDefault"));
+                JsonStreams.visit(payload, handlers);
+                return holder.swimlanes == null ? null : new BoardSwimlanes(holder.strategy, holder.swimlanes);
+            }
+
+        },
+        /**
+         * The data used to render the board, which contains all the issues as well as the settings
+         */
+        ALL_DATA(Endpoint.ALL_DATA) {
+            @Override
+            URI getUri(Commands commands, Board board) {
+                return commands.getRootGrasshopperUri().path("xboard").path("work").path("allData")
+                        .queryParam("rapidViewId", String.valueOf(board.getId()))
+                        .queryParam("selectedProjectKey", commands.jiraConfiguration.getProject())
+                        .build();
+            }
+
+            @Override
+            BoardSwimlanes read(InputStream payload) {
+                SwimlanesHolder holder = new SwimlanesHolder();
+                Map<String, JsonStreams.ValueHandler> handlers = new HashMap<>();
+                handlers.put("swimlaneStrategy", parser -> holder.strategy = parser.getValueAsString());
+                handlers.put("swimlanesData/customSwimlanesData/swimlanes", parser -> holder.readSwimlanes(parser, "defaultSwimlane"));
+                JsonStreams.visit(payload, handlers);
+                return new BoardSwimlanes(holder.strategy, holder.swimlanes);
+            }
+
+        };
+
+        private final Endpoint endpoint;
+
+        SwimlaneSource(Endpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        abstract URI getUri(Commands commands, Board board);
+
+        /**
+         * Reads the swimlanes from the payload, streaming past the parts of it we are not interested in.
+         *
+         * @return the swimlanes, or {@code null} if the payload does not contain them
+         */
+        abstract BoardSwimlanes read(InputStream payload);
+
+        /**
+         * Reads the swimlanes from an already parsed edit model, for callers which need the rest of the board
+         * configuration as well.
+         *
+         * @return the swimlanes, or {@code null} if the edit model does not contain them
+         */
+        static BoardSwimlanes parseEditModel(ModelNode editModel) {
+            ModelNode config = editModel.get("swimlanesConfig");
+            if (!config.isDefined()) {
+                return null;
+            }
+            String strategy = config.get("swimlaneStrategy").isDefined() ? config.get("swimlaneStrategy").asString() : null;
+            List<Swimlane> swimlanes = null;
+            if (config.get("swimlanes").isDefined()) {
+                swimlanes = new ArrayList<>();
+                for (ModelNode swimlane : config.get("swimlanes").asList()) {
+                    swimlanes.add(parseSwimlane(swimlane, "isDefault"));
+                }
+            }
+            return new BoardSwimlanes(strategy, swimlanes);
+        }
+
+        private static Swimlane parseSwimlane(ModelNode swimlane, String defaultKey) {
+            return new Swimlane(
+                    swimlane.get("id").asInt(),
+                    swimlane.get("name").asString(),
+                    swimlane.get("query").isDefined() ? swimlane.get("query").asString() : null,
+                    swimlane.get("description").isDefined() ? swimlane.get("description").asString() : null,
+                    swimlane.get(defaultKey).asBoolean(false));
+        }
+
+        private static class SwimlanesHolder {
+            private String strategy;
+            private List<Swimlane> swimlanes;
+
+            void readSwimlanes(JsonParser parser, String defaultKey) throws IOException {
+                List<Swimlane> result = new ArrayList<>();
+                JsonStreams.forEachElement(parser, element -> result.add(parseSwimlane(JsonStreams.readNode(element), defaultKey)));
+                swimlanes = result;
+            }
+        }
     }
 
     public enum SwimLaneStrategy {
@@ -248,5 +1545,9 @@ public class Commands {
         SwimLaneStrategy(String jsonValue) {
             this.jsonValue = jsonValue;
         }
+
+        public String getJsonValue() {
+            return jsonValue;
+        }
     }
 }
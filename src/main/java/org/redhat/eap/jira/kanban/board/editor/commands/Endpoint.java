@@ -0,0 +1,74 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+/**
+ * The Jira REST endpoints used by {@link Commands}, used to break down the {@link CommandMetrics}.
+ *
+ * @author Kabir Khan
+ */
+public enum Endpoint {
+    /** GET agile/1.0/board */
+    BOARD_SEARCH,
+    /** PUT greenhopper/1.0/rapidview/{id}/copy */
+    RAPIDVIEW_COPY,
+    /** DELETE greenhopper/1.0/rapidview/{id} */
+    RAPIDVIEW_DELETE,
+    /** PUT greenhopper/1.0/rapidviewconfig/swimlaneStrategy */
+    SWIMLANE_STRATEGY,
+    /** GET greenhopper/1.0/rapidviewconfig/editmodel.json */
+    EDIT_MODEL,
+    /** GET greenhopper/1.0/xboard/work/allData */
+    ALL_DATA,
+    /** POST greenhopper/1.0/swimlanes/{boardId} */
+    SWIMLANE_CREATE,
+    /** PUT greenhopper/1.0/swimlanes/{boardId}/{id} */
+    SWIMLANE_UPDATE,
+    /** DELETE greenhopper/1.0/swimlanes/{boardId}/{id} */
+    SWIMLANE_DELETE,
+    /** POST greenhopper/1.0/swimlanes/{boardId}/{id}/move */
+    SWIMLANE_MOVE,
+    /** GET api/2/project/{key}/components */
+    PROJECT_COMPONENTS,
+    /** POST agile/1.0/board */
+    BOARD_CREATE,
+    /** PUT greenhopper/1.0/rapidviewconfig/filter, columns and the card colour strategy */
+    RAPIDVIEW_CONFIG,
+    /** POST api/2/filter */
+    FILTER_CREATE,
+    /** PUT api/2/filter/{id} */
+    FILTER_UPDATE,
+    /** GET api/2/status */
+    STATUSES,
+    /** POST greenhopper/1.0/quickfilters/{boardId} */
+    QUICK_FILTER_CREATE,
+    /** PUT greenhopper/1.0/quickfilters/{boardId}/{id} */
+    QUICK_FILTER_UPDATE,
+    /** DELETE greenhopper/1.0/quickfilters/{boardId}/{id} */
+    QUICK_FILTER_DELETE,
+    /** POST greenhopper/1.0/cardcolors/{boardId}/strategy/{strategy} */
+    CARD_COLOR_CREATE,
+    /** DELETE greenhopper/1.0/cardcolors/{boardId}/strategy/{strategy}/{id} */
+    CARD_COLOR_DELETE,
+    /** POST api/2/search */
+    ISSUE_SEARCH
+}
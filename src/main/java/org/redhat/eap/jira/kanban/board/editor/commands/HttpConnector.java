@@ -0,0 +1,148 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+
+/**
+ * The HTTP connectors which can be used by the Jersey client in {@link Commands}.
+ *
+ * @author Kabir Khan
+ */
+public enum HttpConnector {
+    /**
+     * The default Jersey connector, using the JDK's HttpURLConnection
+     */
+    DEFAULT("default") {
+        @Override
+        Supplier<ConnectionPoolStats> configure(ClientConfig config, JiraConfiguration jiraConfiguration) {
+            configureTimeouts(config, jiraConfiguration);
+            return null;
+        }
+    },
+    /**
+     * The Apache HttpClient connector, with a bounded pool of keep-alive connections
+     */
+    APACHE("apache") {
+        @Override
+        Supplier<ConnectionPoolStats> configure(ClientConfig config, JiraConfiguration jiraConfiguration) {
+            configureTimeouts(config, jiraConfiguration);
+            final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+            connectionManager.setMaxTotal(jiraConfiguration.getHttpMaxConnections());
+            connectionManager.setDefaultMaxPerRoute(jiraConfiguration.getHttpMaxConnectionsPerRoute());
+            //Check pooled connections which have been idle for a while before reusing them, so that a connection
+            //closed by the server does not fail a request
+            connectionManager.setValidateAfterInactivity(2000);
+            config.property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager);
+            config.connectorProvider(new ApacheConnectorProvider());
+            return () -> {
+                PoolStats stats = connectionManager.getTotalStats();
+                return new ConnectionPoolStats(stats.getLeased(), stats.getPending(), stats.getAvailable(), stats.getMax());
+            };
+        }
+    };
+
+    private final String name;
+
+    HttpConnector(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Sets up the client config to use this connector.
+     *
+     * @param config the client config
+     * @param jiraConfiguration the configuration
+     * @return a supplier for the connection pool statistics, or {@code null} if this connector does not pool connections
+     */
+    abstract Supplier<ConnectionPoolStats> configure(ClientConfig config, JiraConfiguration jiraConfiguration);
+
+    static HttpConnector forName(String name) {
+        String lower = name.trim().toLowerCase(Locale.ENGLISH);
+        for (HttpConnector connector : values()) {
+            if (connector.name.equals(lower)) {
+                return connector;
+            }
+        }
+        throw new IllegalStateException("Unknown HTTP connector '" + name + "'");
+    }
+
+    private static void configureTimeouts(ClientConfig config, JiraConfiguration jiraConfiguration) {
+        config.property(ClientProperties.CONNECT_TIMEOUT, jiraConfiguration.getHttpConnectTimeoutMs());
+        config.property(ClientProperties.READ_TIMEOUT, jiraConfiguration.getHttpReadTimeoutMs());
+    }
+
+    /**
+     * A snapshot of the usage of the connection pool.
+     */
+    public static class ConnectionPoolStats {
+        private final int leased;
+        private final int pending;
+        private final int available;
+        private final int max;
+
+        ConnectionPoolStats(int leased, int pending, int available, int max) {
+            this.leased = leased;
+            this.pending = pending;
+            this.available = available;
+            this.max = max;
+        }
+
+        /**
+         * @return the number of connections currently being used for a request
+         */
+        public int getLeased() {
+            return leased;
+        }
+
+        /**
+         * @return the number of requests waiting for a connection
+         */
+        public int getPending() {
+            return pending;
+        }
+
+        /**
+         * @return the number of idle connections kept alive in the pool
+         */
+        public int getAvailable() {
+            return available;
+        }
+
+        public int getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "leased=" + leased + ", pending=" + pending + ", available=" + available + ", max=" + max;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+
+/**
+ * An in memory index of the fields of a set of issues, which JQL conditions on those fields can be evaluated against
+ * without asking Jira. Each issue gets a number as it is added, and each distinct value of a field gets a number the
+ * first time it is seen; for each value the index holds a {@link BitSet} of the issues which have it. Evaluating a
+ * condition is then a matter of combining bit sets.
+ * <p/>
+ * Only the fields in {@link #FIELDS} are indexed, by the name, id, key or account id of their values as Jira
+ * matches on any of those, ignoring case. Negation is pushed down onto the clauses like Jira does, so that e.g.
+ * {@code NOT component = A} does not match issues with no component, just like {@code component != A}. Conditions
+ * using anything else, such as other fields, functions or the history operators, cannot be evaluated locally.
+ * <p/>
+ * Adding issues is thread safe, but evaluating conditions must only be done once all the issues have been added.
+ *
+ * @author Kabir Khan
+ */
+class IssueIndex {
+    /** The Jira fields which are indexed, to be requested when searching for the issues */
+    static final List<String> FIELDS = Collections.unmodifiableList(Arrays.asList(
+            "project", "issuetype", "status", "priority", "resolution", "components", "labels", "fixVersions",
+            "versions", "assignee", "reporter"));
+
+    //JQL field name -> Jira field
+    private static final Map<String, String> JQL_FIELDS = new HashMap<>();
+    static {
+        for (String field : FIELDS) {
+            JQL_FIELDS.put(field.toLowerCase(Locale.ENGLISH), field);
+        }
+        JQL_FIELDS.put("component", "components");
+        JQL_FIELDS.put("type", "issuetype");
+        JQL_FIELDS.put("fixversion", "fixVersions");
+        JQL_FIELDS.put("affectedversion", "versions");
+    }
+
+    private final Map<String, FieldIndex> fields = new HashMap<>();
+    //Lower case issue key and id -> issue number
+    private final Map<String, Integer> issues = new HashMap<>();
+    private int size;
+
+    IssueIndex() {
+        for (String field : FIELDS) {
+            fields.put(field, new FieldIndex());
+        }
+    }
+
+    /**
+     * Adds an issue from a search result. An issue which has already been added is ignored.
+     *
+     * @param issue the issue
+     */
+    synchronized void add(ModelNode issue) {
+        String key = lower(issue.get("key").asString());
+        if (issues.containsKey(key)) {
+            return;
+        }
+        int number = size++;
+        issues.put(key, number);
+        if (issue.hasDefined("id")) {
+            issues.put(issue.get("id").asString(), number);
+        }
+        ModelNode issueFields = issue.get("fields");
+        for (Map.Entry<String, FieldIndex> field : fields.entrySet()) {
+            if (!issueFields.hasDefined(field.getKey())) {
+                continue;
+            }
+            ModelNode value = issueFields.get(field.getKey());
+            if (value.getType() == ModelType.LIST) {
+                for (ModelNode element : value.asList()) {
+                    field.getValue().add(number, element);
+                }
+            } else {
+                field.getValue().add(number, value);
+            }
+        }
+    }
+
+    /**
+     * @return the number of issues
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @param key the key of an issue
+     * @return the number of the issue, or {@code -1} if it is not in the index
+     */
+    synchronized int getIssueNumber(String key) {
+        Integer number = issues.get(lower(key));
+        return number == null ? -1 : number;
+    }
+
+    /**
+     * Works out which issues a condition matches.
+     *
+     * @param jql the condition
+     * @return the numbers of the matching issues, or {@code null} if the condition cannot be evaluated locally
+     */
+    BitSet evaluate(Jql jql) {
+        return evaluate(jql.getRoot(), false);
+    }
+
+    private BitSet evaluate(Jql.Node node, boolean negated) {
+        if (node == null) {
+            return negated ? new BitSet() : all();
+        }
+        if (node instanceof Jql.Not) {
+            return evaluate(((Jql.Not) node).getChild(), !negated);
+        }
+        if (node instanceof Jql.Clause) {
+            return evaluate((Jql.Clause) node, negated);
+        }
+        //De Morgan: a negated AND is an OR of the negated children, and vice versa
+        boolean and = node instanceof Jql.And != negated;
+        List<Jql.Node> children = node instanceof Jql.And ? ((Jql.And) node).getChildren() : ((Jql.Or) node).getChildren();
+        BitSet result = null;
+        for (Jql.Node child : children) {
+            BitSet matches = evaluate(child, negated);
+            if (matches == null) {
+                return null;
+            }
+            if (result == null) {
+                result = matches;
+            } else if (and) {
+                result.and(matches);
+            } else {
+                result.or(matches);
+            }
+        }
+        return result;
+    }
+
+    private BitSet evaluate(Jql.Clause clause, boolean negated) {
+        Jql.Operator operator = negated ? negate(clause.getOperator()) : clause.getOperator();
+        if (operator == null) {
+            return null;
+        }
+        String fieldName = clause.getNormalizedField();
+        if (fieldName.equals("key") || fieldName.equals("issuekey") || fieldName.equals("id")) {
+            return evaluateKey(operator, clause.getValues());
+        }
+        String field = JQL_FIELDS.get(fieldName);
+        if (field == null) {
+            return null;
+        }
+        FieldIndex index = fields.get(field);
+        switch (operator) {
+            case EQUALS:
+            case IN: {
+                BitSet result = new BitSet();
+                for (Jql.Value value : clause.getValues()) {
+                    BitSet matches = index.matches(field, value, size);
+                    if (matches == null) {
+                        return null;
+                    }
+                    result.or(matches);
+                }
+                return result;
+            }
+            case NOT_EQUALS:
+            case NOT_IN: {
+                //Like Jira, this never matches issues with no value, even if one of the values is EMPTY
+                BitSet result = (BitSet) index.nonEmpty.clone();
+                for (Jql.Value value : clause.getValues()) {
+                    BitSet matches = index.matches(field, value, size);
+                    if (matches == null) {
+                        return null;
+                    }
+                    result.andNot(matches);
+                }
+                return result;
+            }
+            case IS:
+            case IS_NOT: {
+                if (clause.getValues().size() != 1 || clause.getValues().get(0).getKind() != Jql.Value.Kind.EMPTY) {
+                    return null;
+                }
+                return operator == Jql.Operator.IS ? index.empty(size) : (BitSet) index.nonEmpty.clone();
+            }
+            default:
+                return null;
+        }
+    }
+
+    private BitSet evaluateKey(Jql.Operator operator, List<Jql.Value> values) {
+        if (operator != Jql.Operator.EQUALS && operator != Jql.Operator.IN
+                && operator != Jql.Operator.NOT_EQUALS && operator != Jql.Operator.NOT_IN) {
+            return null;
+        }
+        BitSet result = new BitSet();
+        for (Jql.Value value : values) {
+            if (value.getKind() != Jql.Value.Kind.LITERAL) {
+                return null;
+            }
+            Integer number = issues.get(lower(value.getText()));
+            if (number != null) {
+                result.set(number);
+            }
+        }
+        if (operator.isNegated()) {
+            result.flip(0, size);
+        }
+        return result;
+    }
+
+    private BitSet all() {
+        BitSet all = new BitSet(size);
+        all.set(0, size);
+        return all;
+    }
+
+    private static Jql.Operator negate(Jql.Operator operator) {
+        switch (operator) {
+            case EQUALS:
+                return Jql.Operator.NOT_EQUALS;
+            case NOT_EQUALS:
+                return Jql.Operator.EQUALS;
+            case IN:
+                return Jql.Operator.NOT_IN;
+            case NOT_IN:
+                return Jql.Operator.IN;
+            case IS:
+                return Jql.Operator.IS_NOT;
+            case IS_NOT:
+                return Jql.Operator.IS;
+            default:
+                return null;
+        }
+    }
+
+    private static String lower(String s) {
+        return s.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * The values of one field.
+     */
+    private static class FieldIndex {
+        //Lower case name, id, key or account id -> value number
+        private final Map<String, Integer> valueNumbers = new HashMap<>();
+        //Value number -> issues with that value
+        private final List<BitSet> valueIssues = new ArrayList<>();
+        private final BitSet nonEmpty = new BitSet();
+
+        void add(int issue, ModelNode value) {
+            List<String> names = new ArrayList<>(2);
+            if (value.getType() == ModelType.OBJECT) {
+                for (String identifier : new String[]{"name", "id", "key", "accountId"}) {
+                    if (value.hasDefined(identifier)) {
+                        names.add(lower(value.get(identifier).asString()));
+                    }
+                }
+            } else {
+                names.add(lower(value.asString()));
+            }
+            Integer number = null;
+            for (String name : names) {
+                number = valueNumbers.get(name);
+                if (number != null) {
+                    break;
+                }
+            }
+            if (number == null) {
+                number = valueIssues.size();
+                valueIssues.add(new BitSet());
+            }
+            for (String name : names) {
+                valueNumbers.putIfAbsent(name, number);
+            }
+            valueIssues.get(number).set(issue);
+            nonEmpty.set(issue);
+        }
+
+        /**
+         * @param field the Jira field
+         * @param value the value
+         * @param size the number of issues
+         * @return the issues with the value, or {@code null} if it is a function
+         */
+        BitSet matches(String field, Jql.Value value, int size) {
+            switch (value.getKind()) {
+                case LITERAL:
+                    if (field.equals("resolution") && value.getText().equalsIgnoreCase("unresolved")) {
+                        return empty(size);
+                    }
+                    Integer number = valueNumbers.get(lower(value.getText()));
+                    return number == null ? new BitSet() : valueIssues.get(number);
+                case EMPTY:
+                    return empty(size);
+                default:
+                    return null;
+            }
+        }
+
+        BitSet empty(int size) {
+            BitSet empty = (BitSet) nonEmpty.clone();
+            empty.flip(0, size);
+            return empty;
+        }
+    }
+}
@@ -22,8 +22,6 @@
 package org.redhat.eap.jira.kanban.board.editor.commands;
 
 import java.io.BufferedInputStream;
-import java.io.File;
-import java.io.FileInputStream;
 import java.net.URI;
 import java.net.URL;
 import java.util.Properties;
@@ -35,10 +33,46 @@ import java.util.Properties;
  * <li><b>editor.password</b> the Jira password</li>
  * <li><b>editor.jira.url</b> the url of the Jira instance (defaults to https://issues.jboss.org</li>
  * <li><b>editor.jira.project</b> the key of the Jira project</li>
+ * <li><b>editor.parallelism</b> the maximum number of requests a single command sends to Jira concurrently (defaults to 8)</li>
+ * <li><b>editor.max.requests.in.flight</b> the maximum number of requests sent to Jira concurrently across all
+ * commands, e.g. when working on several boards at once (defaults to 16)</li>
+ * <li><b>editor.max.requests.per.host</b> the maximum number of requests sent to one Jira host concurrently (defaults to 16)</li>
+ * <li><b>editor.rate.limit.per.second</b> the maximum number of requests sent to Jira per second, 0 means no limit (defaults to 20)</li>
+ * <li><b>editor.retry.max</b> the maximum number of times a throttled or failed request is retried (defaults to 5)</li>
+ * <li><b>editor.retry.backoff.ms</b> the initial backoff before retrying a failed request in milliseconds, doubled on each
+ * retry (defaults to 500)</li>
+ * <li><b>editor.retry.backoff.max.ms</b> the maximum backoff before retrying a failed request in milliseconds (defaults to 30000)</li>
+ * <li><b>editor.fleet.parallelism</b> the number of boards the fleet tool works on concurrently (defaults to 4)</li>
+ * <li><b>editor.virtual.threads</b> whether to run concurrent tasks on virtual threads rather than pools of
+ * {@code editor.parallelism} and {@code editor.fleet.parallelism} threads. Needs Java 21 or later, and is ignored
+ * otherwise (defaults to false)</li>
+ * <li><b>editor.http.connector</b> the HTTP connector used to talk to Jira, {@code apache} for a pooled keep-alive
+ * connector or {@code default} for the JDK HttpURLConnection (defaults to apache)</li>
+ * <li><b>editor.http.max.connections</b> the size of the connection pool (defaults to 32)</li>
+ * <li><b>editor.http.max.connections.per.route</b> the maximum number of pooled connections to one host (defaults to 16)</li>
+ * <li><b>editor.http.connect.timeout.ms</b> the connect timeout in milliseconds (defaults to 10000)</li>
+ * <li><b>editor.http.read.timeout.ms</b> the read timeout in milliseconds (defaults to 60000)</li>
+ * <li><b>editor.metrics.jmx</b> whether to expose the request metrics over JMX (defaults to false)</li>
+ * <li><b>editor.metrics.report</b> a file to write the request metrics to as JSON at the end of a run (defaults to none)</li>
+ * <li><b>editor.journal</b> a file to record the swimlane changes in, so that interrupted runs can be resumed or
+ * rolled back (defaults to none)</li>
+ * <li><b>editor.snapshot.dir</b> the directory of the board configuration snapshot store (defaults to {@code snapshots})</li>
+ * <li><b>editor.record.dir</b> a directory to record the traffic with Jira in, so that it can be replayed without Jira
+ * (defaults to none)</li>
+ * <li><b>editor.gzip.responses</b> whether to ask Jira for gzip compressed responses. The apache connector always
+ * asks for them, and decompresses them before the request metrics count the bytes (defaults to true)</li>
+ * <li><b>editor.gzip.requests</b> whether to gzip the request bodies sent to Jira. Only enable this if the server in
+ * front of Jira decompresses request bodies. Compressed responses are then asked for too (defaults to false)</li>
+ * <li><b>editor.watch.interval.seconds</b> how often the watch tool checks the project's components for changes (defaults to 60)</li>
+ * <li><b>editor.cache.ttl.seconds</b> how long board name lookups are cached for, 0 disables the cache (defaults to 300)</li>
  * </ul>
  *
  * The above can also be specified using system properties, in which case the system property takes precedence over what
  * is in the file.
+ * <p/>
+ * A second Jira instance, e.g. to copy boards to, can be configured in the same file by prefixing the keys, e.g.
+ * {@code target.editor.jira.url}, and loaded with {@link #loadConfiguration(String)}. Keys which are not set with the
+ * prefix fall back to the unprefixed ones.
  *
  * @author Kabir Khan
  */
@@ -48,18 +82,87 @@ public class JiraConfiguration {
     private static final String PASSWORD_KEY = "editor.password";
     private static final String JIRA_URL_KEY = "editor.jira.url";
     private static final String PROJECT_KEY = "editor.jira.project";
+    private static final String PARALLELISM_KEY = "editor.parallelism";
+    private static final String MAX_REQUESTS_IN_FLIGHT_KEY = "editor.max.requests.in.flight";
+    private static final String MAX_REQUESTS_PER_HOST_KEY = "editor.max.requests.per.host";
+    private static final String RATE_LIMIT_KEY = "editor.rate.limit.per.second";
+    private static final String MAX_RETRIES_KEY = "editor.retry.max";
+    private static final String RETRY_BACKOFF_KEY = "editor.retry.backoff.ms";
+    private static final String RETRY_MAX_BACKOFF_KEY = "editor.retry.backoff.max.ms";
+    private static final String FLEET_PARALLELISM_KEY = "editor.fleet.parallelism";
+    private static final String HTTP_CONNECTOR_KEY = "editor.http.connector";
+    private static final String HTTP_MAX_CONNECTIONS_KEY = "editor.http.max.connections";
+    private static final String HTTP_MAX_CONNECTIONS_PER_ROUTE_KEY = "editor.http.max.connections.per.route";
+    private static final String HTTP_CONNECT_TIMEOUT_KEY = "editor.http.connect.timeout.ms";
+    private static final String HTTP_READ_TIMEOUT_KEY = "editor.http.read.timeout.ms";
+    private static final String CACHE_TTL_KEY = "editor.cache.ttl.seconds";
+    private static final String METRICS_JMX_KEY = "editor.metrics.jmx";
+    private static final String METRICS_REPORT_KEY = "editor.metrics.report";
+    private static final String JOURNAL_KEY = "editor.journal";
+    private static final String SNAPSHOT_DIR_KEY = "editor.snapshot.dir";
+    private static final String VIRTUAL_THREADS_KEY = "editor.virtual.threads";
+    private static final String WATCH_INTERVAL_KEY = "editor.watch.interval.seconds";
+    private static final String RECORD_DIR_KEY = "editor.record.dir";
+    private static final String GZIP_RESPONSES_KEY = "editor.gzip.responses";
+    private static final String GZIP_REQUESTS_KEY = "editor.gzip.requests";
 
     private final String username;
     private final String password;
     private final URI uri;
     private final String project;
+    private final int parallelism;
+    private final int maxRequestsInFlight;
+    private final int maxRequestsPerHost;
+    private final double rateLimitPerSecond;
+    private final int maxRetries;
+    private final long retryBackoffMs;
+    private final long retryMaxBackoffMs;
+    private final int fleetParallelism;
+    private final HttpConnector httpConnector;
+    private final int httpMaxConnections;
+    private final int httpMaxConnectionsPerRoute;
+    private final int httpConnectTimeoutMs;
+    private final int httpReadTimeoutMs;
+    private final int cacheTtlSeconds;
+    private final boolean metricsJmx;
+    private final String metricsReport;
+    private final String journal;
+    private final String snapshotDir;
+    private final boolean virtualThreads;
+    private final int watchIntervalSeconds;
+    private final String recordDir;
+    private final boolean gzipResponses;
+    private final boolean gzipRequests;
     private Commands commands;
 
-    private JiraConfiguration(String username, String password, URI uri, String project) {
-        this.username = username;
-        this.password = password;
-        this.uri = uri;
-        this.project = project;
+    private JiraConfiguration(Builder builder) {
+        this.username = builder.username;
+        this.password = builder.password;
+        this.uri = builder.uri;
+        this.project = builder.project;
+        this.parallelism = builder.parallelism;
+        this.maxRequestsInFlight = builder.maxRequestsInFlight;
+        this.maxRequestsPerHost = builder.maxRequestsPerHost;
+        this.rateLimitPerSecond = builder.rateLimitPerSecond;
+        this.maxRetries = builder.maxRetries;
+        this.retryBackoffMs = builder.retryBackoffMs;
+        this.retryMaxBackoffMs = builder.retryMaxBackoffMs;
+        this.fleetParallelism = builder.fleetParallelism;
+        this.httpConnector = builder.httpConnector;
+        this.httpMaxConnections = builder.httpMaxConnections;
+        this.httpMaxConnectionsPerRoute = builder.httpMaxConnectionsPerRoute;
+        this.httpConnectTimeoutMs = builder.httpConnectTimeoutMs;
+        this.httpReadTimeoutMs = builder.httpReadTimeoutMs;
+        this.cacheTtlSeconds = builder.cacheTtlSeconds;
+        this.metricsJmx = builder.metricsJmx;
+        this.metricsReport = builder.metricsReport;
+        this.journal = builder.journal;
+        this.snapshotDir = builder.snapshotDir;
+        this.virtualThreads = builder.virtualThreads;
+        this.watchIntervalSeconds = builder.watchIntervalSeconds;
+        this.recordDir = builder.recordDir;
+        this.gzipResponses = builder.gzipResponses;
+        this.gzipRequests = builder.gzipRequests;
     }
 
     public Commands createCommands() {
@@ -86,13 +189,133 @@ public class JiraConfiguration {
         return project;
     }
 
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getMaxRequestsInFlight() {
+        return maxRequestsInFlight;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    public double getRateLimitPerSecond() {
+        return rateLimitPerSecond;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getRetryBackoffMs() {
+        return retryBackoffMs;
+    }
+
+    public long getRetryMaxBackoffMs() {
+        return retryMaxBackoffMs;
+    }
+
+    public int getFleetParallelism() {
+        return fleetParallelism;
+    }
+
+    /**
+     * @return whether concurrent tasks should run on virtual threads, if the JVM supports them
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public HttpConnector getHttpConnector() {
+        return httpConnector;
+    }
+
+    public int getHttpMaxConnections() {
+        return httpMaxConnections;
+    }
+
+    public int getHttpMaxConnectionsPerRoute() {
+        return httpMaxConnectionsPerRoute;
+    }
+
+    public int getHttpConnectTimeoutMs() {
+        return httpConnectTimeoutMs;
+    }
+
+    public int getHttpReadTimeoutMs() {
+        return httpReadTimeoutMs;
+    }
+
+    public int getCacheTtlSeconds() {
+        return cacheTtlSeconds;
+    }
+
+    public boolean isMetricsJmx() {
+        return metricsJmx;
+    }
+
+    /**
+     * @return the file to write the metrics report to, or {@code null} if none
+     */
+    public String getMetricsReport() {
+        return metricsReport;
+    }
+
+    /**
+     * @return the journal file, or {@code null} if changes are not journaled
+     */
+    public String getJournal() {
+        return journal;
+    }
+
+    /**
+     * @return the directory of the board configuration snapshot store
+     */
+    public String getSnapshotDir() {
+        return snapshotDir;
+    }
+
+    /**
+     * @return how often the watch tool checks the project's components for changes, in seconds
+     */
+    public int getWatchIntervalSeconds() {
+        return watchIntervalSeconds;
+    }
+
+    /**
+     * @return the directory to record the traffic with Jira in, or {@code null} if it is not recorded
+     */
+    public String getRecordDir() {
+        return recordDir;
+    }
+
+    public boolean isGzipResponses() {
+        return gzipResponses;
+    }
+
+    public boolean isGzipRequests() {
+        return gzipRequests;
+    }
+
     public static JiraConfiguration loadConfiguration() throws Exception {
+        return loadConfiguration("");
+    }
+
+    /**
+     * Loads the configuration of a Jira instance whose keys are prefixed with {@code prefix}.
+     *
+     * @param prefix the prefix, e.g. {@code target.}
+     * @return the configuration
+     */
+    public static JiraConfiguration loadConfiguration(String prefix) throws Exception {
         final URL configUrl = JiraConfiguration.class.getResource("/configuration.properties");
         final Properties configProperties = new Properties();
         if (configUrl == null) {
             System.out.println("There is no /src/resources/jiraConfiguration.properties file. Relying on system properties");
         } else {
-            try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(new File(configUrl.toURI())))){
+            try (BufferedInputStream in = new BufferedInputStream(configUrl.openStream())){
                 configProperties.load(in);
             }
         }
@@ -100,21 +323,57 @@ public class JiraConfiguration {
         final URL defaultsUrl = JiraConfiguration.class.getResource("/defaults.properties");
         final Properties defaultsProperties = new Properties();
         if (defaultsUrl != null) {
-            try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(new File(defaultsUrl.toURI())))){
+            try (BufferedInputStream in = new BufferedInputStream(defaultsUrl.openStream())){
                 defaultsProperties.load(in);
             }
         }
 
-        final String username = getProperty(USERNAME_KEY, configProperties, defaultsProperties, configUrl);
-        final String password = getProperty(PASSWORD_KEY, configProperties, defaultsProperties, configUrl);
-        final String jiraUrl = getProperty(JIRA_URL_KEY, configProperties, defaultsProperties, configUrl);
-        final String project = getProperty(PROJECT_KEY, configProperties, defaultsProperties, configUrl);
+        final String metricsReport = getProperty(METRICS_REPORT_KEY, prefix, configProperties, defaultsProperties, configUrl).trim();
+        final String journal = getProperty(JOURNAL_KEY, prefix, configProperties, defaultsProperties, configUrl).trim();
+        final String recordDir = getProperty(RECORD_DIR_KEY, prefix, configProperties, defaultsProperties, configUrl).trim();
 
-        return new JiraConfiguration(username, password, new URL(jiraUrl).toURI(), project);
+        return new Builder()
+                .username(getProperty(USERNAME_KEY, prefix, configProperties, defaultsProperties, configUrl))
+                .password(getProperty(PASSWORD_KEY, prefix, configProperties, defaultsProperties, configUrl))
+                .uri(new URL(getProperty(JIRA_URL_KEY, prefix, configProperties, defaultsProperties, configUrl)).toURI())
+                .project(getProperty(PROJECT_KEY, prefix, configProperties, defaultsProperties, configUrl))
+                .parallelism(Integer.parseInt(getProperty(PARALLELISM_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .maxRequestsInFlight(Integer.parseInt(getProperty(MAX_REQUESTS_IN_FLIGHT_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .maxRequestsPerHost(Integer.parseInt(getProperty(MAX_REQUESTS_PER_HOST_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .rateLimitPerSecond(Double.parseDouble(getProperty(RATE_LIMIT_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .maxRetries(Integer.parseInt(getProperty(MAX_RETRIES_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .retryBackoffMs(Long.parseLong(getProperty(RETRY_BACKOFF_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .retryMaxBackoffMs(Long.parseLong(getProperty(RETRY_MAX_BACKOFF_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .fleetParallelism(Integer.parseInt(getProperty(FLEET_PARALLELISM_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .httpConnector(HttpConnector.forName(getProperty(HTTP_CONNECTOR_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .httpMaxConnections(Integer.parseInt(getProperty(HTTP_MAX_CONNECTIONS_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .httpMaxConnectionsPerRoute(Integer.parseInt(getProperty(HTTP_MAX_CONNECTIONS_PER_ROUTE_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .httpConnectTimeoutMs(Integer.parseInt(getProperty(HTTP_CONNECT_TIMEOUT_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .httpReadTimeoutMs(Integer.parseInt(getProperty(HTTP_READ_TIMEOUT_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .cacheTtlSeconds(Integer.parseInt(getProperty(CACHE_TTL_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .metricsJmx(Boolean.parseBoolean(getProperty(METRICS_JMX_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .metricsReport(metricsReport.isEmpty() ? null : metricsReport)
+                .journal(journal.isEmpty() ? null : journal)
+                .snapshotDir(getProperty(SNAPSHOT_DIR_KEY, prefix, configProperties, defaultsProperties, configUrl).trim())
+                .virtualThreads(Boolean.parseBoolean(getProperty(VIRTUAL_THREADS_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .watchIntervalSeconds(Integer.parseInt(getProperty(WATCH_INTERVAL_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .recordDir(recordDir.isEmpty() ? null : recordDir)
+                .gzipResponses(Boolean.parseBoolean(getProperty(GZIP_RESPONSES_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .gzipRequests(Boolean.parseBoolean(getProperty(GZIP_REQUESTS_KEY, prefix, configProperties, defaultsProperties, configUrl)))
+                .build();
     }
 
-    private static String getProperty(String key, Properties configProperties, Properties defaultProperties, URL propertiesUrl) {
-        String value = System.getProperty(key);
+    private static String getProperty(String key, String prefix, Properties configProperties, Properties defaultProperties, URL propertiesUrl) {
+        String value = null;
+        if (!prefix.isEmpty()) {
+            value = System.getProperty(prefix + key);
+            if (value == null) {
+                value = configProperties.getProperty(prefix + key);
+            }
+        }
+        if (value == null) {
+            value = System.getProperty(key);
+        }
         if (value == null) {
             value = configProperties.getProperty(key);
         }
@@ -128,4 +387,175 @@ public class JiraConfiguration {
         throw new IllegalStateException("No value set for '" + key + "' either in " + propertiesUrl + " or as -D" + key + "=...");
     }
 
+    /**
+     * Collects the settings for a {@link JiraConfiguration}, so that they are set by name rather than by position.
+     */
+    private static class Builder {
+        private String username;
+        private String password;
+        private URI uri;
+        private String project;
+        private int parallelism;
+        private int maxRequestsInFlight;
+        private int maxRequestsPerHost;
+        private double rateLimitPerSecond;
+        private int maxRetries;
+        private long retryBackoffMs;
+        private long retryMaxBackoffMs;
+        private int fleetParallelism;
+        private HttpConnector httpConnector;
+        private int httpMaxConnections;
+        private int httpMaxConnectionsPerRoute;
+        private int httpConnectTimeoutMs;
+        private int httpReadTimeoutMs;
+        private int cacheTtlSeconds;
+        private boolean metricsJmx;
+        private String metricsReport;
+        private String journal;
+        private String snapshotDir;
+        private boolean virtualThreads;
+        private int watchIntervalSeconds;
+        private String recordDir;
+        private boolean gzipResponses;
+        private boolean gzipRequests;
+
+        Builder username(String username) {
+            this.username = username;
+            return this;
+        }
+
+        Builder password(String password) {
+            this.password = password;
+            return this;
+        }
+
+        Builder uri(URI uri) {
+            this.uri = uri;
+            return this;
+        }
+
+        Builder project(String project) {
+            this.project = project;
+            return this;
+        }
+
+        Builder parallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        Builder maxRequestsInFlight(int maxRequestsInFlight) {
+            this.maxRequestsInFlight = maxRequestsInFlight;
+            return this;
+        }
+
+        Builder maxRequestsPerHost(int maxRequestsPerHost) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        Builder rateLimitPerSecond(double rateLimitPerSecond) {
+            this.rateLimitPerSecond = rateLimitPerSecond;
+            return this;
+        }
+
+        Builder maxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        Builder retryBackoffMs(long retryBackoffMs) {
+            this.retryBackoffMs = retryBackoffMs;
+            return this;
+        }
+
+        Builder retryMaxBackoffMs(long retryMaxBackoffMs) {
+            this.retryMaxBackoffMs = retryMaxBackoffMs;
+            return this;
+        }
+
+        Builder fleetParallelism(int fleetParallelism) {
+            this.fleetParallelism = fleetParallelism;
+            return this;
+        }
+
+        Builder httpConnector(HttpConnector httpConnector) {
+            this.httpConnector = httpConnector;
+            return this;
+        }
+
+        Builder httpMaxConnections(int httpMaxConnections) {
+            this.httpMaxConnections = httpMaxConnections;
+            return this;
+        }
+
+        Builder httpMaxConnectionsPerRoute(int httpMaxConnectionsPerRoute) {
+            this.httpMaxConnectionsPerRoute = httpMaxConnectionsPerRoute;
+            return this;
+        }
+
+        Builder httpConnectTimeoutMs(int httpConnectTimeoutMs) {
+            this.httpConnectTimeoutMs = httpConnectTimeoutMs;
+            return this;
+        }
+
+        Builder httpReadTimeoutMs(int httpReadTimeoutMs) {
+            this.httpReadTimeoutMs = httpReadTimeoutMs;
+            return this;
+        }
+
+        Builder cacheTtlSeconds(int cacheTtlSeconds) {
+            this.cacheTtlSeconds = cacheTtlSeconds;
+            return this;
+        }
+
+        Builder metricsJmx(boolean metricsJmx) {
+            this.metricsJmx = metricsJmx;
+            return this;
+        }
+
+        Builder metricsReport(String metricsReport) {
+            this.metricsReport = metricsReport;
+            return this;
+        }
+
+        Builder journal(String journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        Builder snapshotDir(String snapshotDir) {
+            this.snapshotDir = snapshotDir;
+            return this;
+        }
+
+        Builder virtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        Builder watchIntervalSeconds(int watchIntervalSeconds) {
+            this.watchIntervalSeconds = watchIntervalSeconds;
+            return this;
+        }
+
+        Builder recordDir(String recordDir) {
+            this.recordDir = recordDir;
+            return this;
+        }
+
+        Builder gzipResponses(boolean gzipResponses) {
+            this.gzipResponses = gzipResponses;
+            return this;
+        }
+
+        Builder gzipRequests(boolean gzipRequests) {
+            this.gzipRequests = gzipRequests;
+            return this;
+        }
+
+        JiraConfiguration build() {
+            return new JiraConfiguration(this);
+        }
+    }
 }
@@ -0,0 +1,452 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jboss.dmr.ModelNode;
+import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations.JqlSwimlaneConfig;
+
+/**
+ * An append-only write-ahead journal of the swimlane changes {@link Commands} makes, so that a run which dies half way
+ * through can be resumed or rolled back.
+ * <p/>
+ * Each line is a JSON record. A run on a board starts with a {@code begin} record holding the board's swimlanes before
+ * the run and, if known, the swimlanes the run is aiming for. Every change is recorded as an {@code intent} before
+ * it is sent to Jira and as {@code done} once Jira has accepted it, and the run ends with a {@code commit}. Intent,
+ * begin and commit records are forced to disk before returning; concurrent writers share a single force, so
+ * parallel requests do not pay for one each. Done records are not forced, since losing one only means the change
+ * is checked again when resuming.
+ * <p/>
+ * Changes made to a board outside of a run, such as those made while cloning a board, are not journaled. When the
+ * journal is opened, runs without a commit are reported by {@link #getIncompleteRuns()}. If there are none the file
+ * is truncated, and it is truncated again whenever the last open run is committed, so that a long running process
+ * does not grow it without bound.
+ *
+ * @author Kabir Khan
+ */
+public class Journal implements Closeable {
+    private final Path file;
+    private final FileChannel channel;
+    private final List<Run> incompleteRuns;
+    //The boards with a run begun by this process which has not been committed. Only changed with writeLock held, so
+    //that committing the last one and truncating the file cannot race with a new run beginning
+    private final Set<Integer> openRuns = ConcurrentHashMap.newKeySet();
+    //Locks rather than monitors, so that virtual threads waiting for the disk do not pin their carriers
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    //Guarded by writeLock. This counts every byte ever written, including those truncated away since, so that the
+    //positions handed to sync() keep growing
+    private long written;
+    private long nextSeq;
+    //Guarded by syncLock
+    private long synced;
+
+    private Journal(Path file, FileChannel channel, List<Run> incompleteRuns, long nextSeq) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.incompleteRuns = new CopyOnWriteArrayList<>(incompleteRuns);
+        this.nextSeq = nextSeq;
+        this.written = channel.size();
+        this.synced = written;
+    }
+
+    /**
+     * Opens the journal, creating it if it does not exist.
+     *
+     * @param file the journal file
+     * @return the journal
+     */
+    public static Journal open(Path file) throws IOException {
+        Map<Integer, Run> runs = new LinkedHashMap<>();
+        long nextSeq = 0;
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final ModelNode record;
+                    try {
+                        record = ModelNode.fromJSONString(line);
+                    } catch (IllegalArgumentException e) {
+                        //The last record may have been cut short by a crash, in which case the change it describes
+                        //was never sent
+                        System.err.println("Ignoring unreadable journal record in " + file + ": " + line);
+                        continue;
+                    }
+                    int boardId = record.get("board").asInt();
+                    switch (record.get("type").asString()) {
+                        case "begin":
+                            runs.put(boardId, new Run(record));
+                            break;
+                        case "intent": {
+                            long seq = record.get("seq").asLong();
+                            nextSeq = Math.max(nextSeq, seq + 1);
+                            Run run = runs.get(boardId);
+                            if (run != null) {
+                                run.pending.put(seq, record.get("op"));
+                            }
+                            break;
+                        }
+                        case "done": {
+                            Run run = runs.get(boardId);
+                            if (run != null) {
+                                run.pending.remove(record.get("seq").asLong());
+                            }
+                            break;
+                        }
+                        case "commit":
+                            runs.remove(boardId);
+                            break;
+                        default:
+                            throw new IllegalStateException("Unknown journal record in " + file + ": " + line);
+                    }
+                }
+            }
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (runs.isEmpty()) {
+            channel.truncate(0);
+        } else {
+            long length = completeLength(channel);
+            if (length < channel.size()) {
+                //Drop the cut short last record, so that the next one does not end up on the same line
+                channel.truncate(length);
+            }
+        }
+        channel.position(channel.size());
+        return new Journal(file, channel, new ArrayList<>(runs.values()), nextSeq);
+    }
+
+    /**
+     * Finds the length of the journal up to and including the last newline, i.e. without a last record which was
+     * cut short by a crash.
+     */
+    private static long completeLength(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long end = channel.size();
+        while (end > 0) {
+            long start = Math.max(0, end - buffer.capacity());
+            buffer.clear();
+            buffer.limit((int) (end - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new IOException("Journal shrank while being read");
+                }
+            }
+            for (int i = buffer.limit() - 1 ; i >= 0 ; i--) {
+                if (buffer.get(i) == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return the runs which were started but not committed when the journal was opened, and have not been
+     * committed since
+     */
+    public List<Run> getIncompleteRuns() {
+        return Collections.unmodifiableList(new ArrayList<>(incompleteRuns));
+    }
+
+    /**
+     * @param board the board
+     * @return whether there is a run on the board which its changes belong to, either one begun by this process or
+     * an incomplete one found when the journal was opened
+     */
+    boolean hasRun(Commands.Board board) {
+        if (openRuns.contains(board.id)) {
+            return true;
+        }
+        for (Run run : incompleteRuns) {
+            if (run.boardId == board.id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records the start of a run on a board.
+     *
+     * @param board the board
+     * @param before the swimlanes of the board before the run
+     * @param wanted the swimlanes the run will leave the board with, or {@code null} if not known
+     */
+    void begin(Commands.Board board, Commands.BoardSwimlanes before, JqlSwimlaneConfig[] wanted) {
+        for (Run run : incompleteRuns) {
+            if (run.boardId == board.id) {
+                //A new begin record would replace the swimlanes the interrupted run needs to roll back to
+                throw new IllegalStateException("Board " + board.name + " has an interrupted run in journal " + file
+                        + " which has not been recovered");
+            }
+        }
+        ModelNode record = record("begin", board.id);
+        record.get("name").set(board.name);
+        if (before.getStrategy() != null) {
+            record.get("strategy").set(before.getStrategy());
+        }
+        ModelNode lanes = record.get("before").setEmptyList();
+        for (Commands.Swimlane swimlane : before.getSwimlanes()) {
+            if (!swimlane.isDefaultSwimlane()) {
+                lanes.add(lane(swimlane.getName(), swimlane.getQuery(), swimlane.getDescription()));
+            }
+        }
+        if (wanted != null) {
+            ModelNode wantedLanes = record.get("wanted").setEmptyList();
+            for (JqlSwimlaneConfig config : wanted) {
+                wantedLanes.add(lane(config.getName(), config.getJql(), config.getDescription()));
+            }
+        }
+        final long position;
+        writeLock.lock();
+        try {
+            if (!openRuns.add(board.id)) {
+                throw new IllegalStateException("Board " + board.name + " already has a run in progress");
+            }
+            position = write(record);
+        } finally {
+            writeLock.unlock();
+        }
+        sync(position);
+    }
+
+    /**
+     * Records a change which is about to be sent to Jira, and waits until it is on disk.
+     *
+     * @param board the board
+     * @param op the change
+     * @return the sequence number of the change, to pass to {@link #done(Commands.Board, long)}
+     */
+    long intent(Commands.Board board, ModelNode op) {
+        final long seq;
+        final long position;
+        writeLock.lock();
+        try {
+            seq = nextSeq++;
+            ModelNode record = record("intent", board.id);
+            record.get("seq").set(seq);
+            record.get("op").set(op);
+            position = write(record);
+        } finally {
+            writeLock.unlock();
+        }
+        sync(position);
+        return seq;
+    }
+
+    void done(Commands.Board board, long seq) {
+        ModelNode record = record("done", board.id);
+        record.get("seq").set(seq);
+        append(record);
+    }
+
+    void commit(Commands.Board board) {
+        final long position;
+        writeLock.lock();
+        try {
+            position = write(record("commit", board.id));
+            openRuns.remove(board.id);
+            incompleteRuns.removeIf(run -> run.boardId == board.id);
+            if (openRuns.isEmpty() && incompleteRuns.isEmpty()) {
+                //Nothing in the file is needed any more. The truncation is forced, so that records written after it
+                //cannot end up in front of stale ones after a crash
+                try {
+                    channel.truncate(0);
+                    channel.force(true);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not truncate journal " + file, e);
+                }
+                return;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        sync(position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static ModelNode record(String type, int boardId) {
+        ModelNode record = new ModelNode();
+        record.get("type").set(type);
+        record.get("board").set(boardId);
+        return record;
+    }
+
+    private static ModelNode lane(String name, String jql, String description) {
+        ModelNode lane = new ModelNode();
+        lane.get("name").set(name);
+        if (jql != null) {
+            lane.get("jql").set(jql);
+        }
+        if (description != null) {
+            lane.get("description").set(description);
+        }
+        return lane;
+    }
+
+    private long append(ModelNode record) {
+        writeLock.lock();
+        try {
+            return write(record);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private long write(ModelNode record) {
+        ByteBuffer buffer = ByteBuffer.wrap((record.toJSONString(true) + "\n").getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write to journal " + file, e);
+        }
+        written += buffer.capacity();
+        return written;
+    }
+
+    /**
+     * Waits until everything up to {@code position} is on disk. Whoever forces the channel covers everything written
+     * before it started, so threads waiting on the lock meanwhile will usually find their record already synced.
+     */
+    private void sync(long position) {
+        syncLock.lock();
+        try {
+            if (synced >= position) {
+                return;
+            }
+            final long target;
+            writeLock.lock();
+            try {
+                target = written;
+            } finally {
+                writeLock.unlock();
+            }
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not sync journal " + file, e);
+            }
+            synced = target;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * A run found in the journal which was not committed.
+     */
+    public static class Run {
+        private final int boardId;
+        private final String boardName;
+        private final String strategy;
+        private final JqlSwimlaneConfig[] before;
+        private final JqlSwimlaneConfig[] wanted;
+        private final Map<Long, ModelNode> pending = new LinkedHashMap<>();
+
+        private Run(ModelNode begin) {
+            this.boardId = begin.get("board").asInt();
+            this.boardName = begin.get("name").asString();
+            this.strategy = begin.hasDefined("strategy") ? begin.get("strategy").asString() : null;
+            this.before = lanes(begin.get("before"));
+            this.wanted = begin.hasDefined("wanted") ? lanes(begin.get("wanted")) : null;
+        }
+
+        private static JqlSwimlaneConfig[] lanes(ModelNode list) {
+            List<ModelNode> lanes = list.isDefined() ? list.asList() : Collections.emptyList();
+            JqlSwimlaneConfig[] configs = new JqlSwimlaneConfig[lanes.size()];
+            for (int i = 0 ; i < configs.length ; i++) {
+                ModelNode lane = lanes.get(i);
+                configs[i] = JqlSwimlaneConfig.fromBoard(lane.get("name").asString(),
+                        lane.hasDefined("jql") ? lane.get("jql").asString() : null,
+                        lane.hasDefined("description") ? lane.get("description").asString() : null);
+            }
+            return configs;
+        }
+
+        public int getBoardId() {
+            return boardId;
+        }
+
+        public String getBoardName() {
+            return boardName;
+        }
+
+        /**
+         * @return the swimlane strategy of the board before the run
+         */
+        public String getStrategy() {
+            return strategy;
+        }
+
+        /**
+         * @return the custom swimlanes of the board before the run
+         */
+        public JqlSwimlaneConfig[] getBefore() {
+            return before.clone();
+        }
+
+        /**
+         * @return the swimlanes the run was aiming for, or {@code null} if not known
+         */
+        public JqlSwimlaneConfig[] getWanted() {
+            return wanted == null ? null : wanted.clone();
+        }
+
+        /**
+         * @return the changes which were started but not confirmed as done, in the order they were started
+         */
+        public List<ModelNode> getPendingOperations() {
+            return new ArrayList<>(pending.values());
+        }
+    }
+}
@@ -0,0 +1,790 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A parsed JQL query. This covers the subset of JQL used for swimlane and filter queries: clauses combined with
+ * {@code AND}, {@code OR}, {@code NOT} and parentheses, the comparison, {@code IN}, {@code IS}, {@code WAS} and
+ * {@code CHANGED} operators, quoted and unquoted values, functions and an optional {@code ORDER BY}.
+ * <p/>
+ * Parse errors are reported as an {@link IllegalStateException} giving the position of the problem.
+ *
+ * @author Kabir Khan
+ */
+public class Jql {
+    private final String query;
+    private final Node root;
+    private final List<String> orderBy;
+
+    private Jql(String query, Node root, List<String> orderBy) {
+        this.query = query;
+        this.root = root;
+        this.orderBy = orderBy;
+    }
+
+    public static Jql parse(String query) {
+        return new Parser(query).parse();
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * @return the root of the condition, or {@code null} if the query has no condition and matches everything
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    public List<String> getOrderBy() {
+        return orderBy;
+    }
+
+    @Override
+    public String toString() {
+        return root == null ? "" : root.toString();
+    }
+
+    public enum Operator {
+        EQUALS("="),
+        NOT_EQUALS("!="),
+        CONTAINS("~"),
+        NOT_CONTAINS("!~"),
+        LESS_THAN("<"),
+        LESS_THAN_EQUALS("<="),
+        GREATER_THAN(">"),
+        GREATER_THAN_EQUALS(">="),
+        IN("in"),
+        NOT_IN("not in"),
+        IS("is"),
+        IS_NOT("is not"),
+        WAS("was"),
+        WAS_NOT("was not"),
+        WAS_IN("was in"),
+        WAS_NOT_IN("was not in"),
+        CHANGED("changed");
+
+        private final String text;
+
+        Operator(String text) {
+            this.text = text;
+        }
+
+        public boolean isList() {
+            return this == IN || this == NOT_IN || this == WAS_IN || this == WAS_NOT_IN;
+        }
+
+        public boolean isNegated() {
+            return this == NOT_EQUALS || this == NOT_CONTAINS || this == NOT_IN || this == IS_NOT
+                    || this == WAS_NOT || this == WAS_NOT_IN;
+        }
+
+        /**
+         * @return whether the operator is about the history of the issue rather than its current state
+         */
+        public boolean isHistory() {
+            return this == WAS || this == WAS_NOT || this == WAS_IN || this == WAS_NOT_IN || this == CHANGED;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    public abstract static class Node {
+        Node() {
+        }
+    }
+
+    public static class And extends Node {
+        private final List<Node> children;
+
+        And(List<Node> children) {
+            this.children = Collections.unmodifiableList(children);
+        }
+
+        public List<Node> getChildren() {
+            return children;
+        }
+
+        @Override
+        public String toString() {
+            return join(children, " AND ");
+        }
+    }
+
+    public static class Or extends Node {
+        private final List<Node> children;
+
+        Or(List<Node> children) {
+            this.children = Collections.unmodifiableList(children);
+        }
+
+        public List<Node> getChildren() {
+            return children;
+        }
+
+        @Override
+        public String toString() {
+            return join(children, " OR ");
+        }
+    }
+
+    public static class Not extends Node {
+        private final Node child;
+
+        Not(Node child) {
+            this.child = child;
+        }
+
+        public Node getChild() {
+            return child;
+        }
+
+        @Override
+        public String toString() {
+            return "NOT (" + child + ")";
+        }
+    }
+
+    public static class Clause extends Node {
+        private final String field;
+        private final boolean quotedField;
+        private final Operator operator;
+        private final List<Value> values;
+        private final List<Predicate> predicates;
+
+        Clause(String field, boolean quotedField, Operator operator, List<Value> values, List<Predicate> predicates) {
+            this.field = field;
+            this.quotedField = quotedField;
+            this.operator = operator;
+            this.values = Collections.unmodifiableList(values);
+            this.predicates = Collections.unmodifiableList(predicates);
+        }
+
+        /**
+         * @return the field name as written in the query
+         */
+        public String getField() {
+            return field;
+        }
+
+        /**
+         * @return the field name in lower case, which is how Jira compares field names
+         */
+        public String getNormalizedField() {
+            return field.toLowerCase(Locale.ENGLISH);
+        }
+
+        public boolean isQuotedField() {
+            return quotedField;
+        }
+
+        public Operator getOperator() {
+            return operator;
+        }
+
+        /**
+         * @return the operand. It can have more than one entry for the list operators, whose operand is either a
+         * list or a single function, and is empty for {@code CHANGED}
+         */
+        public List<Value> getValues() {
+            return values;
+        }
+
+        /**
+         * @return the predicates narrowing down a {@code WAS} or {@code CHANGED} clause, e.g. {@code after -2w}, or an
+         * empty list if there are none
+         */
+        public List<Predicate> getPredicates() {
+            return predicates;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(quotedField ? quote(field) : field).append(' ').append(operator);
+            if (operator.isList() && !(values.size() == 1 && values.get(0).kind == Value.Kind.FUNCTION)) {
+                sb.append(" (");
+                for (int i = 0 ; i < values.size() ; i++) {
+                    if (i > 0) {
+                        sb.append(", ");
+                    }
+                    sb.append(values.get(i));
+                }
+                sb.append(')');
+            } else if (values.size() > 0) {
+                sb.append(' ').append(values.get(0));
+            }
+            for (Predicate predicate : predicates) {
+                sb.append(' ').append(predicate);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * A predicate of a history clause, such as {@code after "2015-01-01"} or {@code during ("2015-01-01", now())}.
+     */
+    public static class Predicate {
+        private final String keyword;
+        private final List<Value> values;
+
+        Predicate(String keyword, List<Value> values) {
+            this.keyword = keyword;
+            this.values = Collections.unmodifiableList(values);
+        }
+
+        /**
+         * @return the keyword in lower case, e.g. {@code after}
+         */
+        public String getKeyword() {
+            return keyword;
+        }
+
+        /**
+         * @return the operand, which has two entries for {@code during} and one otherwise
+         */
+        public List<Value> getValues() {
+            return values;
+        }
+
+        @Override
+        public String toString() {
+            if (values.size() == 1) {
+                return keyword + ' ' + values.get(0);
+            }
+            return keyword + " (" + values.get(0) + ", " + values.get(1) + ")";
+        }
+    }
+
+    public static class Value {
+        public enum Kind {
+            /** A quoted or unquoted literal */
+            LITERAL,
+            /** {@code EMPTY} or {@code NULL} */
+            EMPTY,
+            /** A function call such as {@code currentUser()} */
+            FUNCTION
+        }
+
+        private final Kind kind;
+        private final String text;
+        private final boolean quoted;
+        private final List<String> arguments;
+
+        Value(Kind kind, String text, boolean quoted, List<String> arguments) {
+            this.kind = kind;
+            this.text = text;
+            this.quoted = quoted;
+            this.arguments = arguments;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the literal with any quotes and escapes removed, or the function name
+         */
+        public String getText() {
+            return text;
+        }
+
+        public boolean isQuoted() {
+            return quoted;
+        }
+
+        /**
+         * @return the function arguments, or an empty list if this is not a function
+         */
+        public List<String> getArguments() {
+            return arguments;
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case EMPTY:
+                    return "EMPTY";
+                case FUNCTION:
+                    StringBuilder sb = new StringBuilder(text).append('(');
+                    for (int i = 0 ; i < arguments.size() ; i++) {
+                        if (i > 0) {
+                            sb.append(", ");
+                        }
+                        sb.append(quote(arguments.get(i)));
+                    }
+                    return sb.append(')').toString();
+                default:
+                    return quoted ? quote(text) : text;
+            }
+        }
+    }
+
+    private static String join(List<Node> nodes, String separator) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0 ; i < nodes.size() ; i++) {
+            if (i > 0) {
+                sb.append(separator);
+            }
+            Node node = nodes.get(i);
+            boolean parens = node instanceof And || node instanceof Or;
+            sb.append(parens ? "(" : "").append(node).append(parens ? ")" : "");
+        }
+        return sb.toString();
+    }
+
+    private static String quote(String s) {
+        return '"' + s.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    /**
+     * A recursive descent parser. {@code OR} binds less tightly than {@code AND}, which binds less tightly than
+     * {@code NOT}, as in Jira.
+     */
+    private static class Parser {
+        private final String query;
+        private final List<Token> tokens;
+        private int index;
+
+        Parser(String query) {
+            if (query == null) {
+                throw new IllegalStateException("Null query");
+            }
+            this.query = query;
+            this.tokens = new Lexer(query).tokenize();
+        }
+
+        Jql parse() {
+            Node root = null;
+            if (!peekKeyword("order") && peek().type != TokenType.END) {
+                root = parseOr();
+            }
+            List<String> orderBy = Collections.emptyList();
+            if (peekKeyword("order")) {
+                next();
+                expectKeyword("by");
+                orderBy = new ArrayList<>();
+                do {
+                    Token field = next();
+                    if (field.type != TokenType.WORD && field.type != TokenType.STRING) {
+                        throw error(field, "Expected a field to order by");
+                    }
+                    orderBy.add(field.text);
+                    if (peekKeyword("asc") || peekKeyword("desc")) {
+                        next();
+                    }
+                } while (accept(TokenType.COMMA));
+            }
+            Token end = peek();
+            if (end.type != TokenType.END) {
+                throw error(end, "Unexpected '" + end.text + "'");
+            }
+            return new Jql(query, root, orderBy);
+        }
+
+        private Node parseOr() {
+            List<Node> children = new ArrayList<>();
+            children.add(parseAnd());
+            while (peekKeyword("or") || peek().type == TokenType.OR) {
+                next();
+                children.add(parseAnd());
+            }
+            return children.size() == 1 ? children.get(0) : new Or(children);
+        }
+
+        private Node parseAnd() {
+            List<Node> children = new ArrayList<>();
+            children.add(parseNot());
+            while (peekKeyword("and") || peek().type == TokenType.AND) {
+                next();
+                children.add(parseNot());
+            }
+            return children.size() == 1 ? children.get(0) : new And(children);
+        }
+
+        private Node parseNot() {
+            if (peekKeyword("not") || peek().type == TokenType.BANG) {
+                next();
+                return new Not(parseNot());
+            }
+            if (accept(TokenType.LPAREN)) {
+                Node node = parseOr();
+                expect(TokenType.RPAREN, "Expected ')'");
+                return node;
+            }
+            return parseClause();
+        }
+
+        private Node parseClause() {
+            Token field = next();
+            if (field.type != TokenType.WORD && field.type != TokenType.STRING) {
+                throw error(field, field.type == TokenType.END ? "Expected a clause" : "Expected a field but got '" + field.text + "'");
+            }
+            if (field.type == TokenType.WORD && isReserved(field.text)) {
+                throw error(field, "'" + field.text + "' is a reserved word, so it has to be quoted to be used as a field");
+            }
+            Operator operator = parseOperator();
+            List<Value> values = new ArrayList<>();
+            List<Predicate> predicates = Collections.emptyList();
+            if (operator == Operator.CHANGED) {
+                predicates = parseHistoryPredicates();
+            } else if (operator.isList()) {
+                if (accept(TokenType.LPAREN)) {
+                    do {
+                        values.add(parseValue());
+                    } while (accept(TokenType.COMMA));
+                    expect(TokenType.RPAREN, "Expected ')' or ','");
+                } else {
+                    //A function returning a list, e.g. 'sprint in openSprints()'
+                    Token start = peek();
+                    Value value = parseValue();
+                    if (value.kind != Value.Kind.FUNCTION) {
+                        throw error(start, "Expected '(' or a function after '" + operator + "'");
+                    }
+                    values.add(value);
+                }
+            } else {
+                Token start = peek();
+                Value value = parseValue();
+                if ((operator == Operator.IS || operator == Operator.IS_NOT) && value.kind != Value.Kind.EMPTY) {
+                    throw error(start, "'" + operator + "' can only be used with EMPTY or NULL");
+                }
+                values.add(value);
+            }
+            if (operator.isHistory() && operator != Operator.CHANGED) {
+                predicates = parseHistoryPredicates();
+            }
+            return new Clause(field.text, field.type == TokenType.STRING, operator, values, predicates);
+        }
+
+        private Operator parseOperator() {
+            Token token = next();
+            switch (token.type) {
+                case EQUALS:
+                    return Operator.EQUALS;
+                case NOT_EQUALS:
+                    return Operator.NOT_EQUALS;
+                case TILDE:
+                    return Operator.CONTAINS;
+                case NOT_TILDE:
+                    return Operator.NOT_CONTAINS;
+                case LT:
+                    return Operator.LESS_THAN;
+                case LE:
+                    return Operator.LESS_THAN_EQUALS;
+                case GT:
+                    return Operator.GREATER_THAN;
+                case GE:
+                    return Operator.GREATER_THAN_EQUALS;
+                case WORD:
+                    String word = token.text.toLowerCase(Locale.ENGLISH);
+                    switch (word) {
+                        case "in":
+                            return Operator.IN;
+                        case "not":
+                            expectKeyword("in");
+                            return Operator.NOT_IN;
+                        case "is":
+                            if (peekKeyword("not")) {
+                                next();
+                                return Operator.IS_NOT;
+                            }
+                            return Operator.IS;
+                        case "was":
+                            boolean not = false;
+                            if (peekKeyword("not")) {
+                                next();
+                                not = true;
+                            }
+                            if (peekKeyword("in")) {
+                                next();
+                                return not ? Operator.WAS_NOT_IN : Operator.WAS_IN;
+                            }
+                            return not ? Operator.WAS_NOT : Operator.WAS;
+                        case "changed":
+                            return Operator.CHANGED;
+                    }
+                    break;
+            }
+            throw error(token, token.type == TokenType.END ? "Expected an operator" : "Expected an operator but got '" + token.text + "'");
+        }
+
+        private List<Predicate> parseHistoryPredicates() {
+            List<Predicate> predicates = new ArrayList<>();
+            while (peekKeyword("after") || peekKeyword("before") || peekKeyword("by") || peekKeyword("on")
+                    || peekKeyword("during") || peekKeyword("from") || peekKeyword("to")) {
+                String keyword = next().text.toLowerCase(Locale.ENGLISH);
+                List<Value> values = new ArrayList<>();
+                if (keyword.equals("during")) {
+                    expect(TokenType.LPAREN, "Expected '(' after 'during'");
+                    values.add(parseValue());
+                    expect(TokenType.COMMA, "Expected ','");
+                    values.add(parseValue());
+                    expect(TokenType.RPAREN, "Expected ')'");
+                } else {
+                    values.add(parseValue());
+                }
+                predicates.add(new Predicate(keyword, values));
+            }
+            return predicates;
+        }
+
+        private Value parseValue() {
+            Token token = next();
+            if (token.type == TokenType.STRING) {
+                return new Value(Value.Kind.LITERAL, token.text, true, Collections.emptyList());
+            }
+            if (token.type != TokenType.WORD) {
+                throw error(token, token.type == TokenType.END ? "Expected a value" : "Expected a value but got '" + token.text + "'");
+            }
+            String lower = token.text.toLowerCase(Locale.ENGLISH);
+            if (lower.equals("empty") || lower.equals("null")) {
+                return new Value(Value.Kind.EMPTY, token.text, false, Collections.emptyList());
+            }
+            if (accept(TokenType.LPAREN)) {
+                List<String> arguments = new ArrayList<>();
+                if (!accept(TokenType.RPAREN)) {
+                    do {
+                        Token argument = next();
+                        if (argument.type != TokenType.WORD && argument.type != TokenType.STRING) {
+                            throw error(argument, "Expected a function argument");
+                        }
+                        arguments.add(argument.text);
+                    } while (accept(TokenType.COMMA));
+                    expect(TokenType.RPAREN, "Expected ')' or ','");
+                }
+                return new Value(Value.Kind.FUNCTION, token.text, false, Collections.unmodifiableList(arguments));
+            }
+            if (isReserved(token.text)) {
+                throw error(token, "'" + token.text + "' is a reserved word, so it has to be quoted to be used as a value");
+            }
+            return new Value(Value.Kind.LITERAL, token.text, false, Collections.emptyList());
+        }
+
+        private Token peek() {
+            return tokens.get(index);
+        }
+
+        private Token next() {
+            Token token = tokens.get(index);
+            if (token.type != TokenType.END) {
+                index++;
+            }
+            return token;
+        }
+
+        private boolean peekKeyword(String keyword) {
+            Token token = peek();
+            return token.type == TokenType.WORD && token.text.equalsIgnoreCase(keyword);
+        }
+
+        private void expectKeyword(String keyword) {
+            Token token = next();
+            if (token.type != TokenType.WORD || !token.text.equalsIgnoreCase(keyword)) {
+                throw error(token, "Expected '" + keyword + "'");
+            }
+        }
+
+        private boolean accept(TokenType type) {
+            if (peek().type == type) {
+                next();
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(TokenType type, String message) {
+            Token token = next();
+            if (token.type != type) {
+                throw error(token, message);
+            }
+        }
+
+        private IllegalStateException error(Token token, String message) {
+            return new IllegalStateException(message + " at position " + token.position + " of: " + query);
+        }
+
+        private static boolean isReserved(String word) {
+            switch (word.toLowerCase(Locale.ENGLISH)) {
+                case "and":
+                case "or":
+                case "not":
+                case "in":
+                case "is":
+                case "was":
+                case "order":
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    private enum TokenType {
+        WORD, STRING, LPAREN, RPAREN, COMMA, EQUALS, NOT_EQUALS, TILDE, NOT_TILDE, LT, LE, GT, GE, AND, OR, BANG, END
+    }
+
+    private static class Token {
+        private final TokenType type;
+        private final String text;
+        private final int position;
+
+        Token(TokenType type, String text, int position) {
+            this.type = type;
+            this.text = text;
+            this.position = position;
+        }
+    }
+
+    private static class Lexer {
+        private final String query;
+        private int pos;
+
+        Lexer(String query) {
+            this.query = query;
+        }
+
+        List<Token> tokenize() {
+            List<Token> tokens = new ArrayList<>();
+            while (true) {
+                while (pos < query.length() && Character.isWhitespace(query.charAt(pos))) {
+                    pos++;
+                }
+                if (pos >= query.length()) {
+                    tokens.add(new Token(TokenType.END, "", pos));
+                    return tokens;
+                }
+                int start = pos;
+                char c = query.charAt(pos);
+                switch (c) {
+                    case '(':
+                        tokens.add(symbol(TokenType.LPAREN, 1));
+                        break;
+                    case ')':
+                        tokens.add(symbol(TokenType.RPAREN, 1));
+                        break;
+                    case ',':
+                        tokens.add(symbol(TokenType.COMMA, 1));
+                        break;
+                    case '=':
+                        tokens.add(symbol(TokenType.EQUALS, 1));
+                        break;
+                    case '~':
+                        tokens.add(symbol(TokenType.TILDE, 1));
+                        break;
+                    case '!':
+                        if (lookingAt("!=")) {
+                            tokens.add(symbol(TokenType.NOT_EQUALS, 2));
+                        } else if (lookingAt("!~")) {
+                            tokens.add(symbol(TokenType.NOT_TILDE, 2));
+                        } else {
+                            tokens.add(symbol(TokenType.BANG, 1));
+                        }
+                        break;
+                    case '<':
+                        tokens.add(lookingAt("<=") ? symbol(TokenType.LE, 2) : symbol(TokenType.LT, 1));
+                        break;
+                    case '>':
+                        tokens.add(lookingAt(">=") ? symbol(TokenType.GE, 2) : symbol(TokenType.GT, 1));
+                        break;
+                    case '&':
+                        if (!lookingAt("&&")) {
+                            throw new IllegalStateException("Expected '&&' at position " + start + " of: " + query);
+                        }
+                        tokens.add(symbol(TokenType.AND, 2));
+                        break;
+                    case '|':
+                        if (!lookingAt("||")) {
+                            throw new IllegalStateException("Expected '||' at position " + start + " of: " + query);
+                        }
+                        tokens.add(symbol(TokenType.OR, 2));
+                        break;
+                    case '"':
+                    case '\'':
+                        tokens.add(new Token(TokenType.STRING, quoted(c), start));
+                        break;
+                    default:
+                        while (pos < query.length() && isWordChar(query.charAt(pos))) {
+                            pos++;
+                        }
+                        tokens.add(new Token(TokenType.WORD, query.substring(start, pos), start));
+                }
+            }
+        }
+
+        private Token symbol(TokenType type, int length) {
+            Token token = new Token(type, query.substring(pos, pos + length), pos);
+            pos += length;
+            return token;
+        }
+
+        private boolean lookingAt(String s) {
+            return query.startsWith(s, pos);
+        }
+
+        private String quoted(char quote) {
+            int start = pos++;
+            StringBuilder sb = new StringBuilder();
+            while (pos < query.length()) {
+                char c = query.charAt(pos++);
+                if (c == quote) {
+                    return sb.toString();
+                }
+                if (c == '\\') {
+                    if (pos >= query.length()) {
+                        break;
+                    }
+                    char escaped = query.charAt(pos++);
+                    switch (escaped) {
+                        case 'n':
+                            sb.append('\n');
+                            break;
+                        case 't':
+                            sb.append('\t');
+                            break;
+                        case 'r':
+                            sb.append('\r');
+                            break;
+                        default:
+                            sb.append(escaped);
+                    }
+                } else {
+                    sb.append(c);
+                }
+            }
+            throw new IllegalStateException("Unterminated string starting at position " + start + " of: " + query);
+        }
+
+        private static boolean isWordChar(char c) {
+            return !Character.isWhitespace(c) && "()=!~<>,\"'&|".indexOf(c) < 0;
+        }
+    }
+}
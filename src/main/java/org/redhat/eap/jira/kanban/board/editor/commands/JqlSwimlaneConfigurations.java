@@ -21,7 +21,45 @@
  */
 package org.redhat.eap.jira.kanban.board.editor.commands;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+
 /**
+ * The swimlane sets which can be applied to a board. Apart from the built in {@link JqlSwimlaneSet}s, sets can be
+ * defined in JSON files of the form
+ * <pre>
+ * {
+ *     "name" : "wildfly",
+ *     "swimlanes" : [
+ *         {"name" : "Expedite", "jql" : "priority=\"Blocker\"", "description" : "Drop everything"},
+ *         {"component" : "Server"},
+ *         {"components" : ["Clustering", "EE", "JMS"]}
+ *     ]
+ * }
+ * </pre>
+ * {@code component} and {@code components} entries use the {@code component="<name>"} template for each component.
+ * The name defaults to the file name without the {@code .json} extension.
+ * <p/>
+ * A file is only parsed once (unless it is modified, or it has not been used for a while), so applying the same set to
+ * lots of boards shares the same {@link SwimlaneSet} instance.
+ *
  * @author Kabir Khan
  */
 public class JqlSwimlaneConfigurations {
@@ -35,17 +73,199 @@ public class JqlSwimlaneConfigurations {
             JqlSwimlaneConfig.forComponent("Component B")
     };
 
+    private static final ConcurrentMap<JqlSwimlaneSet, SwimlaneSet> BUILT_IN_SETS = new ConcurrentHashMap<>();
+    /**
+     * The number of definition files whose sets are kept. A long running process such as the daemon may be handed any
+     * number of files, so only the most recently used ones are kept, which is plenty for a fleet manifest.
+     */
+    private static final int MAX_LOADED_SETS = 64;
+    private static final Lock LOADED_SETS_LOCK = new ReentrantLock();
+    //Guarded by LOADED_SETS_LOCK, in access order so that the least recently used set is evicted
+    private static final Map<Path, LoadedSet> LOADED_SETS = new LinkedHashMap<Path, LoadedSet>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, LoadedSet> eldest) {
+            return size() > MAX_LOADED_SETS;
+        }
+    };
+    /**
+     * Component names, swimlane names etc. tend to be repeated across sets so share a single instance of each. The
+     * strings are only weakly held, so they go away with the last set using them.
+     */
+    private static final Lock STRINGS_LOCK = new ReentrantLock();
+    //Guarded by STRINGS_LOCK
+    private static final Map<String, WeakReference<String>> STRINGS = new WeakHashMap<>();
+
     public static JqlSwimlaneConfig[] getSwimlaneConfigs(JqlSwimlaneSet set) {
-        if (set == JqlSwimlaneSet.TEST) {
-            return testConfigs;
+        return getSwimlaneSet(set).getSwimlaneConfigs();
+    }
+
+    public static SwimlaneSet getSwimlaneSet(JqlSwimlaneSet set) {
+        return BUILT_IN_SETS.computeIfAbsent(set, s -> {
+            if (s == JqlSwimlaneSet.TEST) {
+                return new SwimlaneSet(s.name(), testConfigs);
+            }
+            throw new IllegalStateException("Unknown set " + s);
+        });
+    }
+
+    /**
+     * Gets a swimlane set from a definition file. The file is only parsed again if it has been modified since the
+     * last call.
+     *
+     * @param file the definition file
+     * @return the swimlane set
+     */
+    public static SwimlaneSet getSwimlaneSet(Path file) {
+        final Path key = file.toAbsolutePath().normalize();
+        final long lastModified;
+        try {
+            lastModified = Files.getLastModifiedTime(key).toMillis();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read swimlane set " + file, e);
+        }
+        LoadedSet loaded;
+        LOADED_SETS_LOCK.lock();
+        try {
+            loaded = LOADED_SETS.get(key);
+        } finally {
+            LOADED_SETS_LOCK.unlock();
+        }
+        if (loaded == null || loaded.lastModified != lastModified) {
+            //Parsed outside the lock, if two threads race for the same file one of the results is simply dropped
+            loaded = new LoadedSet(lastModified, loadSwimlaneSet(key));
+            LOADED_SETS_LOCK.lock();
+            try {
+                LOADED_SETS.put(key, loaded);
+            } finally {
+                LOADED_SETS_LOCK.unlock();
+            }
+        }
+        return loaded.set;
+    }
+
+    /**
+     * Gets a swimlane set by the name of one of the built in {@link JqlSwimlaneSet}s, or else by the path of a
+     * definition file.
+     *
+     * @param nameOrFile the name of a built in set, or a file name
+     * @param baseDir the directory relative file names are resolved against
+     * @return the swimlane set
+     */
+    public static SwimlaneSet getSwimlaneSet(String nameOrFile, Path baseDir) {
+        for (JqlSwimlaneSet set : JqlSwimlaneSet.values()) {
+            if (set.name().equals(nameOrFile)) {
+                return getSwimlaneSet(set);
+            }
+        }
+        Path file = baseDir.resolve(nameOrFile);
+        if (!Files.exists(file)) {
+            throw new IllegalStateException("'" + nameOrFile + "' is neither a built in swimlane set nor an existing file");
+        }
+        return getSwimlaneSet(file);
+    }
+
+    private static SwimlaneSet loadSwimlaneSet(Path file) {
+        final ModelNode root;
+        try (InputStream in = Files.newInputStream(file)) {
+            root = ModelNode.fromJSONStream(in);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalStateException("Could not parse swimlane set " + file, e);
+        }
+        String name = root.hasDefined("name") ? root.get("name").asString() : file.getFileName().toString().replaceFirst("\\.json$", "");
+        if (!root.hasDefined("swimlanes") || root.get("swimlanes").getType() != ModelType.LIST) {
+            throw new IllegalStateException("No 'swimlanes' list in swimlane set " + file);
+        }
+        List<JqlSwimlaneConfig> configs = new ArrayList<>();
+        for (ModelNode swimlane : root.get("swimlanes").asList()) {
+            if (swimlane.hasDefined("component")) {
+                configs.add(JqlSwimlaneConfig.forComponent(intern(swimlane.get("component").asString())));
+            } else if (swimlane.hasDefined("components")) {
+                for (ModelNode component : swimlane.get("components").asList()) {
+                    configs.add(JqlSwimlaneConfig.forComponent(intern(component.asString())));
+                }
+            } else if (swimlane.hasDefined("name") && swimlane.hasDefined("jql")) {
+                configs.add(new JqlSwimlaneConfig(
+                        intern(swimlane.get("name").asString()),
+                        intern(swimlane.get("jql").asString()),
+                        swimlane.hasDefined("description") ? intern(swimlane.get("description").asString()) : null));
+            } else {
+                throw new IllegalStateException("Swimlane set " + file + " has an entry with neither a 'component', " +
+                        "'components' nor a 'name' and 'jql': " + swimlane.toJSONString(true));
+            }
+        }
+        return new SwimlaneSet(intern(name), configs.toArray(new JqlSwimlaneConfig[configs.size()]));
+    }
+
+    private static String intern(String s) {
+        STRINGS_LOCK.lock();
+        try {
+            WeakReference<String> ref = STRINGS.get(s);
+            String existing = ref == null ? null : ref.get();
+            if (existing != null) {
+                return existing;
+            }
+            STRINGS.put(s, new WeakReference<>(s));
+            return s;
+        } finally {
+            STRINGS_LOCK.unlock();
+        }
+    }
+
+    /**
+     * An immutable swimlane set
+     */
+    public static class SwimlaneSet {
+        private final String name;
+        private final JqlSwimlaneConfig[] configs;
+
+        SwimlaneSet(String name, JqlSwimlaneConfig[] configs) {
+            this.name = name;
+            this.configs = configs;
+            Set<String> names = new HashSet<>();
+            for (JqlSwimlaneConfig config : configs) {
+                if (!names.add(config.getName())) {
+                    throw new IllegalStateException("More than one swimlane called " + config.getName() + " in swimlane set " + name);
+                }
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the swimlanes, in the order they should appear on the board
+         */
+        public JqlSwimlaneConfig[] getSwimlaneConfigs() {
+            return configs.clone();
+        }
+
+        public int size() {
+            return configs.length;
+        }
+
+        @Override
+        public String toString() {
+            return name + "(" + configs.length + " swimlanes)";
+        }
+    }
+
+    private static class LoadedSet {
+        private final long lastModified;
+        private final SwimlaneSet set;
+
+        LoadedSet(long lastModified, SwimlaneSet set) {
+            this.lastModified = lastModified;
+            this.set = set;
         }
-        throw new IllegalStateException("Unknown set " + set);
     }
 
     public static class JqlSwimlaneConfig {
         private final String name;
-        private final String jql;
-        private final String description;
+        private final String component;
+        //Computed on first use for swimlanes made from the component template
+        private String jql;
+        private String description;
 
         public JqlSwimlaneConfig(String name, String jql) {
             this(name, jql, null);
@@ -56,6 +276,22 @@ public class JqlSwimlaneConfigurations {
                 throw new IllegalStateException("Null name or jql");
             }
             this.name = name;
+            this.component = null;
+            this.jql = jql;
+            this.description = description;
+        }
+
+        private JqlSwimlaneConfig(String componentName) {
+            if (componentName == null) {
+                throw new IllegalStateException("Null component");
+            }
+            this.name = componentName;
+            this.component = componentName;
+        }
+
+        private JqlSwimlaneConfig(String name, String component, String jql, String description) {
+            this.name = name;
+            this.component = component;
             this.jql = jql;
             this.description = description;
         }
@@ -65,15 +301,71 @@ public class JqlSwimlaneConfigurations {
         }
 
         public String getJql() {
+            String jql = this.jql;
+            if (jql == null && component != null) {
+                //Racy, but the worst that can happen is that it is built more than once
+                jql = "component=\"" + component + "\"";
+                this.jql = jql;
+            }
             return jql;
         }
 
         public String getDescription() {
+            String description = this.description;
+            if (description == null && component != null) {
+                description = "Swimlane for " + component;
+                this.description = description;
+            }
             return description;
         }
 
-        static JqlSwimlaneConfig forComponent(String componentNane) {
-            return new JqlSwimlaneConfig(componentNane, "component=\"" + componentNane + "\"", "Swimlane for " + componentNane);
+        /**
+         * @param componentName the name of the component
+         * @return a swimlane for the component, made from the {@code component="<name>"} template
+         */
+        public static JqlSwimlaneConfig forComponent(String componentName) {
+            return new JqlSwimlaneConfig(componentName);
+        }
+
+        /**
+         * Like {@link #JqlSwimlaneConfig(String, String, String)}, but for a swimlane as it was on a board, which may
+         * not have a query.
+         *
+         * @param name the name of the swimlane
+         * @param jql the query of the swimlane, or {@code null} if it has none
+         * @param description the description of the swimlane
+         * @return the swimlane
+         */
+        static JqlSwimlaneConfig fromBoard(String name, String jql, String description) {
+            if (name == null) {
+                throw new IllegalStateException("Null name");
+            }
+            return new JqlSwimlaneConfig(name, null, jql, description);
+        }
+
+        /**
+         * The reverse of {@link #forComponent(String)}.
+         *
+         * @param jql the query of a swimlane
+         * @return the component if the query selects exactly one component, e.g. {@code component = "Server"}, or
+         * {@code null} if it does something else
+         */
+        public static String getComponent(String jql) {
+            final Jql.Node root;
+            try {
+                root = Jql.parse(jql).getRoot();
+            } catch (IllegalStateException e) {
+                return null;
+            }
+            if (!(root instanceof Jql.Clause)) {
+                return null;
+            }
+            Jql.Clause clause = (Jql.Clause) root;
+            if (!clause.getNormalizedField().equals("component") || clause.getOperator() != Jql.Operator.EQUALS
+                    || clause.getValues().get(0).getKind() != Jql.Value.Kind.LITERAL) {
+                return null;
+            }
+            return clause.getValues().get(0).getText();
         }
     }
 
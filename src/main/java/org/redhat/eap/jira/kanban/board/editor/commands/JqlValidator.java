@@ -0,0 +1,212 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations.JqlSwimlaneConfig;
+import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations.SwimlaneSet;
+
+/**
+ * Checks swimlane queries locally, so that mistakes are found before anything is changed in Jira. Each query is
+ * checked for syntax, for the operators used with the Jira system fields, and for references to components which do
+ * not exist in the project.
+ * <p/>
+ * Any other field, such as a custom field referred to by name, quoted or not, or as {@code cf[<id>]}, is not known
+ * here and so is not checked; Jira accepts unquoted custom field names as long as they are single words. The results
+ * are kept per query, so checking the same swimlane set for lots of boards only parses it once.
+ *
+ * @author Kabir Khan
+ */
+public class JqlValidator {
+    private static final Set<String> SYSTEM_FIELDS = new HashSet<>(Arrays.asList(
+            "affectedversion", "approvals", "assignee", "attachments", "category", "comment", "component", "created",
+            "createddate", "creator", "description", "due", "duedate", "environment", "filter",
+            "fixversion", "id", "issue", "issuekey", "issuetype", "key", "labels", "lastviewed", "level",
+            "originalestimate", "parent", "priority", "project", "remainingestimate", "reporter", "request",
+            "resolution", "resolutiondate", "resolved", "sprint", "status", "statuscategory", "summary", "text",
+            "timeestimate", "timeoriginalestimate", "timespent", "type", "updated", "updateddate", "voter", "votes",
+            "watcher", "watchers", "workratio", "worklogauthor", "worklogcomment", "worklogdate", "subtasks",
+            "issuefunction", "savedfilter", "searchrequest", "fixversions", "affectedversions", "components",
+            "issuelinktype", "issuelinks"));
+    private static final Set<String> TEXT_FIELDS = new HashSet<>(Arrays.asList(
+            "summary", "description", "environment", "comment", "text"));
+
+    private final Set<String> components;
+    private final ConcurrentMap<String, Result> results = new ConcurrentHashMap<>();
+
+    /**
+     * @param components the names of the project's components, compared ignoring case. If {@code null} component
+     *                   references are not checked
+     */
+    public JqlValidator(Set<String> components) {
+        if (components == null) {
+            this.components = null;
+        } else {
+            Set<String> lower = new HashSet<>();
+            for (String component : components) {
+                lower.add(component.toLowerCase(Locale.ENGLISH));
+            }
+            this.components = lower;
+        }
+    }
+
+    /**
+     * Parses and checks a query.
+     *
+     * @param jql the query
+     * @return the problems found, or an empty list if there are none
+     */
+    public List<String> validate(String jql) {
+        return check(jql).problems;
+    }
+
+    /**
+     * Gets the parsed form of a query.
+     *
+     * @param jql the query
+     * @return the parsed query
+     * @throws IllegalStateException if the query can't be parsed
+     */
+    public Jql parse(String jql) {
+        Result result = check(jql);
+        if (result.jql == null) {
+            throw new IllegalStateException(result.problems.get(0));
+        }
+        return result.jql;
+    }
+
+    /**
+     * @param configs the swimlanes
+     * @return the problems found in all the swimlanes, each prefixed with the swimlane name
+     */
+    public List<String> validate(JqlSwimlaneConfig... configs) {
+        List<String> problems = new ArrayList<>();
+        for (JqlSwimlaneConfig config : configs) {
+            for (String problem : validate(config.getJql())) {
+                problems.add("Swimlane '" + config.getName() + "': " + problem);
+            }
+        }
+        return problems;
+    }
+
+    public List<String> validate(SwimlaneSet set) {
+        List<String> problems = new ArrayList<>();
+        for (String problem : validate(set.getSwimlaneConfigs())) {
+            problems.add("Swimlane set " + set.getName() + ": " + problem);
+        }
+        return problems;
+    }
+
+    private Result check(String jql) {
+        Result result = results.get(jql);
+        if (result == null) {
+            result = doCheck(jql);
+            results.putIfAbsent(jql, result);
+        }
+        return result;
+    }
+
+    private Result doCheck(String query) {
+        final Jql jql;
+        try {
+            jql = Jql.parse(query);
+        } catch (IllegalStateException e) {
+            return new Result(null, Collections.singletonList(e.getMessage()));
+        }
+        List<String> problems = new ArrayList<>();
+        if (jql.getRoot() == null) {
+            problems.add("Empty query");
+        } else {
+            checkNode(jql.getRoot(), problems);
+        }
+        return new Result(jql, problems);
+    }
+
+    private void checkNode(Jql.Node node, List<String> problems) {
+        if (node instanceof Jql.And) {
+            for (Jql.Node child : ((Jql.And) node).getChildren()) {
+                checkNode(child, problems);
+            }
+        } else if (node instanceof Jql.Or) {
+            for (Jql.Node child : ((Jql.Or) node).getChildren()) {
+                checkNode(child, problems);
+            }
+        } else if (node instanceof Jql.Not) {
+            checkNode(((Jql.Not) node).getChild(), problems);
+        } else {
+            checkClause((Jql.Clause) node, problems);
+        }
+    }
+
+    private void checkClause(Jql.Clause clause, List<String> problems) {
+        String field = clause.getNormalizedField();
+        if (clause.isQuotedField() || !SYSTEM_FIELDS.contains(field)) {
+            //A custom field, we don't know anything about those
+            return;
+        }
+        Jql.Operator operator = clause.getOperator();
+        boolean text = TEXT_FIELDS.contains(field);
+        if ((operator == Jql.Operator.CONTAINS || operator == Jql.Operator.NOT_CONTAINS) && !text) {
+            problems.add("'" + operator + "' can only be used with text fields in '" + clause + "'");
+        } else if (text && !(operator == Jql.Operator.CONTAINS || operator == Jql.Operator.NOT_CONTAINS
+                || operator == Jql.Operator.IS || operator == Jql.Operator.IS_NOT)) {
+            problems.add("Text field '" + clause.getField() + "' only supports '~', '!~', 'is' and 'is not' in '" + clause + "'");
+        }
+        if (components != null && (field.equals("component") || field.equals("components"))) {
+            for (Jql.Value value : clause.getValues()) {
+                if (value.getKind() == Jql.Value.Kind.LITERAL && !components.contains(value.getText().toLowerCase(Locale.ENGLISH))
+                        && !isNumeric(value.getText())) {
+                    problems.add("Unknown component '" + value.getText() + "' in '" + clause + "'");
+                }
+            }
+        }
+    }
+
+    private static boolean isNumeric(String s) {
+        //Components can be referred to by id
+        for (int i = 0 ; i < s.length() ; i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return s.length() > 0;
+    }
+
+    private static class Result {
+        private final Jql jql;
+        private final List<String> problems;
+
+        Result(Jql jql, List<String> problems) {
+            this.jql = jql;
+            this.problems = Collections.unmodifiableList(problems);
+        }
+    }
+}
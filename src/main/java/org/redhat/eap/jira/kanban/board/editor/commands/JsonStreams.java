@@ -0,0 +1,237 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.Property;
+
+/**
+ * Pulls selected values out of a JSON document without building a tree for the whole document. The values
+ * wanted are registered by their path of field names from the root object, e.g. {@code swimlanesConfig/swimlanes},
+ * and everything not on the way to one of those paths is skipped by the tokenizer. Going the other way, model nodes
+ * are written as compact JSON straight to a stream, without rendering them to a string first.
+ *
+ * @author Kabir Khan
+ */
+class JsonStreams {
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private JsonStreams() {
+    }
+
+    /**
+     * Walks the JSON object in the stream and calls the handler registered for each path found.
+     *
+     * @param in the stream containing the JSON object. It is not closed by this method
+     * @param handlers the handlers, keyed by path
+     */
+    static void visit(InputStream in, Map<String, ValueHandler> handlers) {
+        Set<String> parents = new HashSet<>();
+        for (String path : handlers.keySet()) {
+            for (int index = path.indexOf('/') ; index != -1 ; index = path.indexOf('/', index + 1)) {
+                parents.add(path.substring(0, index));
+            }
+        }
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            //The caller closes the stream, e.g. by closing the response, which releases the connection
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalStateException("Expected a JSON object, got " + parser.getCurrentToken());
+            }
+            visitObject(parser, null, handlers, parents);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not parse the JSON", e);
+        }
+    }
+
+    private static void visitObject(JsonParser parser, String path, Map<String, ValueHandler> handlers, Set<String> parents) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldPath = path == null ? parser.getCurrentName() : path + "/" + parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            ValueHandler handler = handlers.get(fieldPath);
+            if (handler != null) {
+                handler.handle(parser);
+            } else if (token == JsonToken.START_OBJECT && parents.contains(fieldPath)) {
+                visitObject(parser, fieldPath, handlers, parents);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Calls the handler for each element of the array the parser is positioned at. If the parser is positioned at
+     * {@code null} instead, nothing happens.
+     *
+     * @param parser the parser
+     * @param handler the handler
+     */
+    static void forEachElement(JsonParser parser, ValueHandler handler) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return;
+        }
+        if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+            throw new IllegalStateException("Expected a JSON array, got " + parser.getCurrentToken());
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            handler.handle(parser);
+        }
+    }
+
+    /**
+     * Reads the value the parser is positioned at into a model node. Only use this for values known to be small.
+     *
+     * @param parser the parser
+     * @return the model node
+     */
+    static ModelNode readNode(JsonParser parser) throws IOException {
+        ModelNode node = new ModelNode();
+        switch (parser.getCurrentToken()) {
+            case START_OBJECT:
+                node.setEmptyObject();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    node.get(name).set(readNode(parser));
+                }
+                break;
+            case START_ARRAY:
+                node.setEmptyList();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    node.add(readNode(parser));
+                }
+                break;
+            case VALUE_STRING:
+                node.set(parser.getText());
+                break;
+            case VALUE_NUMBER_INT:
+                switch (parser.getNumberType()) {
+                    case INT:
+                        node.set(parser.getIntValue());
+                        break;
+                    case LONG:
+                        node.set(parser.getLongValue());
+                        break;
+                    default:
+                        node.set(parser.getBigIntegerValue());
+                }
+                break;
+            case VALUE_NUMBER_FLOAT:
+                node.set(parser.getDecimalValue());
+                break;
+            case VALUE_TRUE:
+                node.set(true);
+                break;
+            case VALUE_FALSE:
+                node.set(false);
+                break;
+            case VALUE_NULL:
+                break;
+            default:
+                throw new IllegalStateException("Unexpected token " + parser.getCurrentToken());
+        }
+        return node;
+    }
+
+    /**
+     * Writes a model node as compact JSON.
+     *
+     * @param out the stream to write to. It is flushed but not closed by this method
+     * @param node the model node
+     */
+    static void writeNode(OutputStream out, ModelNode node) throws IOException {
+        try (JsonGenerator generator = FACTORY.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writeNode(generator, node);
+        }
+    }
+
+    private static void writeNode(JsonGenerator generator, ModelNode node) throws IOException {
+        switch (node.getType()) {
+            case OBJECT:
+                generator.writeStartObject();
+                for (String key : node.keys()) {
+                    generator.writeFieldName(key);
+                    writeNode(generator, node.get(key));
+                }
+                generator.writeEndObject();
+                break;
+            case PROPERTY:
+                //jboss-dmr writes a property as an object with a single field
+                Property property = node.asProperty();
+                generator.writeStartObject();
+                generator.writeFieldName(property.getName());
+                writeNode(generator, property.getValue());
+                generator.writeEndObject();
+                break;
+            case LIST:
+                generator.writeStartArray();
+                for (ModelNode element : node.asList()) {
+                    writeNode(generator, element);
+                }
+                generator.writeEndArray();
+                break;
+            case INT:
+                generator.writeNumber(node.asInt());
+                break;
+            case LONG:
+                generator.writeNumber(node.asLong());
+                break;
+            case DOUBLE:
+                generator.writeNumber(node.asDouble());
+                break;
+            case BIG_INTEGER:
+                generator.writeNumber(node.asBigInteger());
+                break;
+            case BIG_DECIMAL:
+                generator.writeNumber(node.asBigDecimal());
+                break;
+            case BOOLEAN:
+                generator.writeBoolean(node.asBoolean());
+                break;
+            case UNDEFINED:
+                generator.writeNull();
+                break;
+            default:
+                generator.writeString(node.asString());
+        }
+    }
+
+    /**
+     * Handles a value. When called the parser is positioned at the first token of the value, and when it returns
+     * the parser must be positioned at the last token of the value.
+     */
+    interface ValueHandler {
+        void handle(JsonParser parser) throws IOException;
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs batches of independent tasks (typically one REST call each) with a bounded number of them in flight.
+ * The threads are daemon threads so that the command line tools exit once {@code main} returns.
+ * <p/>
+ * On Java 21 and later the tasks can instead each run on their own virtual thread. The number of tasks in flight is
+ * then not bounded, since a blocked virtual thread costs next to nothing; the number of requests sent to Jira is
+ * still bounded by {@link RequestScheduler}. Since there is no pool to exhaust, tasks may also wait for tasks they
+ * submitted to the same executor. On older versions the normal thread pool is used.
+ *
+ * @author Kabir Khan
+ */
+public class ParallelExecutor {
+    private final int parallelism;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    public ParallelExecutor(String name, int parallelism) {
+        this(name, parallelism, false);
+    }
+
+    /**
+     * @param name the prefix of the thread names
+     * @param parallelism the number of threads, if not using virtual threads
+     * @param virtualThreads whether to run each task on its own virtual thread if the JVM supports them
+     */
+    public ParallelExecutor(String name, int parallelism, boolean virtualThreads) {
+        if (parallelism < 1) {
+            throw new IllegalStateException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        ExecutorService virtualExecutor = virtualThreads ? VirtualThreads.newExecutor(name) : null;
+        this.virtualThreads = virtualExecutor != null;
+        this.executor = virtualExecutor != null
+                ? virtualExecutor
+                : Executors.newFixedThreadPool(parallelism, new DaemonThreadFactory(name));
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return whether the tasks run on virtual threads
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Runs all the tasks and waits for them to complete. If one of the tasks fails, the ones which have
+     * not yet completed are cancelled and the failure is rethrown.
+     *
+     * @param tasks the tasks to run
+     * @return the results of the tasks, in the same order as the tasks
+     */
+    public <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        if (tasks.size() == 0) {
+            return new ArrayList<>();
+        }
+        if (tasks.size() == 1) {
+            //No point in handing it off to another thread
+            try {
+                List<T> result = new ArrayList<>(1);
+                result.add(tasks.get(0).call());
+                return result;
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        ExecutorCompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            futures.add(completionService.submit(task));
+        }
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                completionService.take().get();
+            }
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Runs a task in the background, e.g. to prefetch something. Since the task may have to wait for one of the
+     * threads to become free, callers should not block waiting for it to start.
+     *
+     * @param task the task
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Creates virtual thread executors via reflection, since we still build for Java 8.
+     */
+    private static class VirtualThreads {
+        private static final Method OF_VIRTUAL;
+        private static final Method NAME;
+        private static final Method FACTORY;
+        private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+        static {
+            Method ofVirtual = null;
+            Method name = null;
+            Method factory = null;
+            Method newThreadPerTaskExecutor = null;
+            try {
+                ofVirtual = Thread.class.getMethod("ofVirtual");
+                Class<?> builder = Class.forName("java.lang.Thread$Builder");
+                name = builder.getMethod("name", String.class, long.class);
+                factory = builder.getMethod("factory");
+                newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            } catch (ReflectiveOperationException e) {
+                //Older than Java 21
+            }
+            OF_VIRTUAL = ofVirtual;
+            NAME = name;
+            FACTORY = factory;
+            NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+        }
+
+        /**
+         * @return an executor starting a named virtual thread per task, or {@code null} if this JVM does not have them
+         */
+        static ExecutorService newExecutor(String name) {
+            if (NEW_THREAD_PER_TASK_EXECUTOR == null) {
+                System.err.println("Virtual threads need Java 21 or later, using a pool of platform threads for " + name);
+                return null;
+            }
+            try {
+                Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name + "-", 1L);
+                ThreadFactory factory = (ThreadFactory) FACTORY.invoke(builder);
+                return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+            } catch (ReflectiveOperationException e) {
+                //e.g. Java 19 or 20 without --enable-preview
+                System.err.println("Could not create virtual threads, using a pool of platform threads for " + name + ": " + e.getCause());
+                return null;
+            }
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
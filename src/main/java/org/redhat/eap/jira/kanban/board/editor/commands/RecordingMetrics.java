@@ -0,0 +1,290 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.jboss.dmr.ModelNode;
+
+/**
+ * Keeps request counts, byte counts, retry counts, error counts by class and a latency histogram for each
+ * {@link Endpoint}. The results can be printed, written as a JSON report, or exposed over JMX.
+ *
+ * @author Kabir Khan
+ */
+public class RecordingMetrics implements CommandMetrics {
+    private final Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+
+    public RecordingMetrics() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            stats.put(endpoint, new EndpointStats());
+        }
+    }
+
+    @Override
+    public void onResponse(Endpoint endpoint, long durationNanos, int status, long requestBytes, long responseBytes, int retries) {
+        EndpointStats endpointStats = stats.get(endpoint);
+        endpointStats.record(durationNanos, requestBytes, responseBytes, retries);
+        if (status >= 400) {
+            endpointStats.error("HTTP " + status / 100 + "xx");
+        }
+    }
+
+    @Override
+    public void onError(Endpoint endpoint, long durationNanos, Throwable error, int retries) {
+        EndpointStats endpointStats = stats.get(endpoint);
+        endpointStats.record(durationNanos, 0, 0, retries);
+        Throwable cause = error;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        endpointStats.error(cause.getClass().getSimpleName());
+    }
+
+    public EndpointStatsMXBean getStats(Endpoint endpoint) {
+        return stats.get(endpoint);
+    }
+
+    /**
+     * Registers an MXBean for each endpoint with the platform MBean server, named
+     * {@code org.redhat.eap.jira.kanban.board.editor:type=CommandMetrics,endpoint=<endpoint>}.
+     */
+    public void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Map.Entry<Endpoint, EndpointStats> entry : stats.entrySet()) {
+            try {
+                ObjectName name = new ObjectName("org.redhat.eap.jira.kanban.board.editor:type=CommandMetrics,endpoint=" + entry.getKey());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(entry.getValue(), name);
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not register the metrics MBean for " + entry.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * @return the metrics of all the endpoints which have been used, as a model node
+     */
+    public ModelNode toModelNode() {
+        ModelNode report = new ModelNode().setEmptyObject();
+        for (Map.Entry<Endpoint, EndpointStats> entry : stats.entrySet()) {
+            EndpointStats endpointStats = entry.getValue();
+            if (endpointStats.getCount() == 0) {
+                continue;
+            }
+            ModelNode node = report.get("endpoints", entry.getKey().name());
+            node.get("count").set(endpointStats.getCount());
+            node.get("retries").set(endpointStats.getRetries());
+            node.get("requestBytes").set(endpointStats.getRequestBytes());
+            node.get("responseBytes").set(endpointStats.getResponseBytes());
+            node.get("latencyMs", "mean").set(endpointStats.getMeanMs());
+            node.get("latencyMs", "p50").set(endpointStats.getP50Ms());
+            node.get("latencyMs", "p90").set(endpointStats.getP90Ms());
+            node.get("latencyMs", "p99").set(endpointStats.getP99Ms());
+            node.get("latencyMs", "max").set(endpointStats.getMaxMs());
+            node.get("errors").setEmptyObject();
+            for (Map.Entry<String, Long> error : endpointStats.getErrors().entrySet()) {
+                node.get("errors", error.getKey()).set(error.getValue());
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Writes the report from {@link #toModelNode()} as JSON.
+     *
+     * @param path the file to write to
+     */
+    public void writeReport(Path path) throws IOException {
+        Files.write(path, toModelNode().toJSONString(false).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Prints a table of the metrics of all the endpoints which have been used.
+     *
+     * @param out the stream to print to
+     */
+    public void printReport(PrintStream out) {
+        out.println(String.format("%-18s %7s %7s %7s %12s %12s %9s %9s %9s %9s",
+                "endpoint", "count", "errors", "retries", "sent", "received", "mean(ms)", "p50(ms)", "p99(ms)", "max(ms)"));
+        for (Map.Entry<Endpoint, EndpointStats> entry : stats.entrySet()) {
+            EndpointStats s = entry.getValue();
+            if (s.getCount() == 0) {
+                continue;
+            }
+            long errors = 0;
+            for (long count : s.getErrors().values()) {
+                errors += count;
+            }
+            out.println(String.format("%-18s %7d %7d %7d %12d %12d %9.1f %9.1f %9.1f %9.1f",
+                    entry.getKey(), s.getCount(), errors, s.getRetries(), s.getRequestBytes(), s.getResponseBytes(),
+                    s.getMeanMs(), s.getP50Ms(), s.getP99Ms(), s.getMaxMs()));
+        }
+    }
+
+    public interface EndpointStatsMXBean {
+        long getCount();
+
+        long getRetries();
+
+        long getRequestBytes();
+
+        long getResponseBytes();
+
+        double getMeanMs();
+
+        double getP50Ms();
+
+        double getP90Ms();
+
+        double getP99Ms();
+
+        double getMaxMs();
+
+        Map<String, Long> getErrors();
+    }
+
+    private static class EndpointStats implements EndpointStatsMXBean {
+        /**
+         * Bucket i counts the requests taking at least 2^i and less than 2^(i+1) microseconds
+         */
+        private final AtomicLongArray histogram = new AtomicLongArray(40);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+        private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        void record(long durationNanos, long requestBytes, long responseBytes, int retries) {
+            long micros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(durationNanos));
+            int bucket = Math.min(histogram.length() - 1, 63 - Long.numberOfLeadingZeros(micros));
+            histogram.incrementAndGet(bucket);
+            count.increment();
+            totalNanos.add(durationNanos);
+            maxNanos.accumulate(durationNanos);
+            this.retries.add(retries);
+            this.requestBytes.add(requestBytes);
+            this.responseBytes.add(responseBytes);
+        }
+
+        void error(String errorClass) {
+            errors.computeIfAbsent(errorClass, e -> new LongAdder()).increment();
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public long getRetries() {
+            return retries.sum();
+        }
+
+        @Override
+        public long getRequestBytes() {
+            return requestBytes.sum();
+        }
+
+        @Override
+        public long getResponseBytes() {
+            return responseBytes.sum();
+        }
+
+        @Override
+        public double getMeanMs() {
+            long count = getCount();
+            return count == 0 ? 0 : totalNanos.sum() / (double) count / 1000000;
+        }
+
+        @Override
+        public double getP50Ms() {
+            return percentileMs(0.5);
+        }
+
+        @Override
+        public double getP90Ms() {
+            return percentileMs(0.9);
+        }
+
+        @Override
+        public double getP99Ms() {
+            return percentileMs(0.99);
+        }
+
+        @Override
+        public double getMaxMs() {
+            return maxNanos.get() / 1000000.0;
+        }
+
+        @Override
+        public Map<String, Long> getErrors() {
+            Map<String, Long> result = new TreeMap<>();
+            for (Map.Entry<String, LongAdder> entry : errors.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().sum());
+            }
+            return result;
+        }
+
+        /**
+         * @return the upper bound of the histogram bucket containing the percentile, capped at the max
+         */
+        private double percentileMs(double percentile) {
+            long total = 0;
+            for (int i = 0 ; i < histogram.length() ; i++) {
+                total += histogram.get(i);
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long wanted = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0 ; i < histogram.length() ; i++) {
+                seen += histogram.get(i);
+                if (seen >= wanted) {
+                    return Math.min((1L << (i + 1)) / 1000.0, getMaxMs());
+                }
+            }
+            return getMaxMs();
+        }
+    }
+}
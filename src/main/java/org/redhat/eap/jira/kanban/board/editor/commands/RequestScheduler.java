@@ -0,0 +1,244 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.net.URI;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+/**
+ * Schedules every request {@link Commands} sends to Jira. It
+ * <ul>
+ * <li>caps the number of requests in flight, in total and per host</li>
+ * <li>limits the request rate on the client side with a token bucket</li>
+ * <li>retries throttled requests (429, and 503 for idempotent requests) once the time given in the
+ * {@code Retry-After} header has passed, and holds back all other requests until then as well. If the server asks
+ * for a longer wait than the maximum backoff, the throttled response is returned instead</li>
+ * <li>retries idempotent requests failing with an I/O error or a 502/503/504 using exponential backoff with jitter</li>
+ * </ul>
+ * No permits are held while waiting to retry.
+ *
+ * @author Kabir Khan
+ */
+class RequestScheduler {
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final Semaphore inFlight;
+    private final int maxInFlightPerHost;
+    private final ConcurrentMap<String, Semaphore> inFlightPerHost = new ConcurrentHashMap<>();
+    private final TokenBucket tokenBucket;
+    private final int maxRetries;
+    private final long backoffMs;
+    private final long maxBackoffMs;
+
+    RequestScheduler(JiraConfiguration jiraConfiguration) {
+        this.inFlight = new Semaphore(jiraConfiguration.getMaxRequestsInFlight());
+        this.maxInFlightPerHost = jiraConfiguration.getMaxRequestsPerHost();
+        this.tokenBucket = new TokenBucket(jiraConfiguration.getRateLimitPerSecond());
+        this.maxRetries = jiraConfiguration.getMaxRetries();
+        this.backoffMs = jiraConfiguration.getRetryBackoffMs();
+        this.maxBackoffMs = jiraConfiguration.getRetryMaxBackoffMs();
+    }
+
+    /**
+     * Executes a request, retrying it if needed. If all the retries are used up, the last response is returned.
+     *
+     * @param method the HTTP method
+     * @param uri the URI of the request
+     * @param request sends the request and returns the response, with the entity buffered
+     * @param onRetry called each time the request is retried
+     * @return the response
+     */
+    Response execute(String method, URI uri, Supplier<Response> request, Runnable onRetry) {
+        final boolean idempotent = isIdempotent(method);
+        final Semaphore hostInFlight = inFlightPerHost.computeIfAbsent(uri.getHost() + ":" + uri.getPort(),
+                host -> new Semaphore(maxInFlightPerHost));
+        for (int attempt = 0 ; ; attempt++) {
+            tokenBucket.take();
+            Response response;
+            acquire(inFlight);
+            try {
+                acquire(hostInFlight);
+                try {
+                    response = request.get();
+                } finally {
+                    hostInFlight.release();
+                }
+            } catch (ProcessingException e) {
+                if (!idempotent || attempt >= maxRetries) {
+                    throw e;
+                }
+                System.err.println("Retrying " + method + " " + uri + " after " + e.getMessage());
+                onRetry.run();
+                sleep(backoff(attempt));
+                continue;
+            } finally {
+                inFlight.release();
+            }
+
+            final int status = response.getStatus();
+            if (attempt >= maxRetries || !isRetryable(status, idempotent)) {
+                return response;
+            }
+            long retryAfter = retryAfterMs(response);
+            if (retryAfter > maxBackoffMs) {
+                //Rather than stalling every request for longer than we are prepared to back off, give up on this one
+                System.err.println("Not retrying " + method + " " + uri + " after status " + status + ", Retry-After of "
+                        + retryAfter + "ms is longer than the maximum backoff of " + maxBackoffMs + "ms");
+                return response;
+            }
+            response.close();
+            final long delay;
+            if (retryAfter >= 0) {
+                delay = retryAfter;
+                //The server told us to back off, so make everyone else wait too
+                tokenBucket.pauseFor(retryAfter);
+            } else {
+                delay = backoff(attempt);
+            }
+            System.err.println("Retrying " + method + " " + uri + " in " + delay + "ms after status " + status);
+            onRetry.run();
+            sleep(delay);
+        }
+    }
+
+    private boolean isRetryable(int status, boolean idempotent) {
+        if (status == TOO_MANY_REQUESTS) {
+            //The request was rejected before being processed, so it is safe to send again
+            return true;
+        }
+        return idempotent && (status == 502 || status == 503 || status == 504);
+    }
+
+    private static boolean isIdempotent(String method) {
+        return method.equals(HttpMethod.GET) || method.equals(HttpMethod.HEAD)
+                || method.equals(HttpMethod.PUT) || method.equals(HttpMethod.DELETE);
+    }
+
+    /**
+     * Exponential backoff with equal jitter: the delay is between half the backoff and the backoff, so that retries
+     * are spread out but never come back straight away
+     */
+    private long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, backoffMs << Math.min(attempt, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    private static long retryAfterMs(Response response) {
+        String retryAfter = response.getHeaderString(HttpHeaders.RETRY_AFTER);
+        if (retryAfter == null) {
+            return -1;
+        }
+        retryAfter = retryAfter.trim();
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter));
+        } catch (NumberFormatException e) {
+            //Not a number of seconds, so it should be a date
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static void acquire(Semaphore semaphore) {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long ms) {
+        if (ms <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Hands out permits at a fixed rate, allowing bursts of up to one second's worth of permits. A rate of zero
+     * or less disables it.
+     */
+    private static class TokenBucket {
+        private final double permitsPerNano;
+        private final double maxPermits;
+        private double permits;
+        private long lastRefill = System.nanoTime();
+        private long pausedUntil = lastRefill;
+
+        TokenBucket(double permitsPerSecond) {
+            this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.maxPermits = Math.max(1, permitsPerSecond);
+            this.permits = maxPermits;
+        }
+
+        void take() {
+            if (permitsPerNano <= 0) {
+                long wait;
+                synchronized (this) {
+                    wait = pausedUntil - System.nanoTime();
+                }
+                sleep(TimeUnit.NANOSECONDS.toMillis(wait));
+                return;
+            }
+            sleep(TimeUnit.NANOSECONDS.toMillis(reserve()));
+        }
+
+        /**
+         * Takes a permit, going into debt if there are none left
+         *
+         * @return how long to wait in nanoseconds before using the permit
+         */
+        private synchronized long reserve() {
+            long now = System.nanoTime();
+            permits = Math.min(maxPermits, permits + (now - lastRefill) * permitsPerNano);
+            lastRefill = now;
+            permits -= 1;
+            long wait = permits >= 0 ? 0 : (long) (-permits / permitsPerNano);
+            return Math.max(wait, pausedUntil - now);
+        }
+
+        synchronized void pauseFor(long ms) {
+            pausedUntil = Math.max(pausedUntil, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+    }
+}
@@ -0,0 +1,543 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.jboss.dmr.ModelNode;
+
+/**
+ * Keeps versions of board configurations on disk, so that they can be audited and compared without fetching
+ * them from Jira again.
+ * <p/>
+ * Objects (the parts of a configuration, and the manifests listing the parts of a snapshot) are stored gzipped
+ * under {@code objects/} and named by the SHA-256 of their content, so identical parts are only stored once across
+ * all boards and versions. The versions of a board are listed in {@code boards/<board id>}, one
+ * {@code <captured at> <manifest hash>} line per version, oldest first. A new version is only added if the
+ * configuration changed.
+ *
+ * @author Kabir Khan
+ */
+public class SnapshotStore {
+    private final Path objects;
+    private final Path boards;
+    //Objects never change once written, so they can be cached for as long as we like
+    private final ConcurrentMap<String, ModelNode> objectCache = new ConcurrentHashMap<>();
+
+    private SnapshotStore(Path root) {
+        this.objects = root.resolve("objects");
+        this.boards = root.resolve("boards");
+    }
+
+    /**
+     * Opens a store, creating it if it does not exist.
+     *
+     * @param root the directory of the store
+     * @return the store
+     */
+    public static SnapshotStore open(Path root) throws IOException {
+        SnapshotStore store = new SnapshotStore(root);
+        Files.createDirectories(store.objects);
+        Files.createDirectories(store.boards);
+        return store;
+    }
+
+    /**
+     * Reads the board's configuration from Jira and stores it, unless it is the same as the latest stored version.
+     *
+     * @param commands the commands to read the board with
+     * @param board the board
+     * @return the latest version
+     */
+    public BoardSnapshot capture(Commands commands, Commands.Board board) throws IOException {
+        Map<String, ModelNode> parts = parts(commands.getBoardConfiguration(board));
+        Map<String, String> partHashes = new LinkedHashMap<>();
+        for (Map.Entry<String, ModelNode> part : parts.entrySet()) {
+            partHashes.put(part.getKey(), put(part.getValue()));
+        }
+        ModelNode manifest = manifest(board.id, board.name, partHashes);
+        String hash = put(manifest);
+
+        synchronized (this) {
+            BoardSnapshot latest = getLatest(board.id);
+            if (latest != null && latest.getHash().equals(hash)) {
+                return latest;
+            }
+            long capturedAt = System.currentTimeMillis();
+            Files.write(boards.resolve(String.valueOf(board.id)),
+                    (capturedAt + " " + hash + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            return new BoardSnapshot(board.id, board.name, capturedAt, hash, partHashes, this::get);
+        }
+    }
+
+    /**
+     * Reads the board's configuration from Jira without storing it, e.g. to compare it with a stored version.
+     *
+     * @param commands the commands to read the board with
+     * @param board the board
+     * @return the current configuration
+     */
+    public static BoardSnapshot live(Commands commands, Commands.Board board) {
+        Map<String, ModelNode> parts = parts(commands.getBoardConfiguration(board));
+        Map<String, String> partHashes = new LinkedHashMap<>();
+        Map<String, ModelNode> byHash = new HashMap<>();
+        for (Map.Entry<String, ModelNode> part : parts.entrySet()) {
+            String hash = hash(serialize(part.getValue()));
+            partHashes.put(part.getKey(), hash);
+            byHash.put(hash, part.getValue());
+        }
+        String hash = hash(serialize(manifest(board.id, board.name, partHashes)));
+        return new BoardSnapshot(board.id, board.name, System.currentTimeMillis(), hash, partHashes, byHash::get);
+    }
+
+    /**
+     * @return the ids of all the boards with stored versions
+     */
+    public List<Integer> getBoardIds() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(boards)) {
+            for (Path file : files) {
+                ids.add(Integer.valueOf(file.getFileName().toString()));
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * @param boardId the board id
+     * @return the stored versions of the board, oldest first
+     */
+    public List<BoardSnapshot> getVersions(int boardId) throws IOException {
+        Path file = boards.resolve(String.valueOf(boardId));
+        List<BoardSnapshot> versions = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return versions;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                BoardSnapshot version = loadVersion(line);
+                if (version != null) {
+                    versions.add(version);
+                }
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * @param boardId the board id
+     * @return the latest stored version of the board, or {@code null} if there is none
+     */
+    public BoardSnapshot getLatest(int boardId) throws IOException {
+        Path file = boards.resolve(String.valueOf(boardId));
+        if (!Files.exists(file)) {
+            return null;
+        }
+        //Only the last line is read, so only the manifest of the latest version is loaded
+        String line = lastLine(file);
+        return line == null ? null : loadVersion(line);
+    }
+
+    /**
+     * Reads the last non-empty line of a file by reading backwards from the end.
+     *
+     * @return the line, or {@code null} if there is none
+     */
+    private static String lastLine(Path file) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            ByteArrayOutputStream reversed = new ByteArrayOutputStream();
+            long position = channel.size();
+            while (position > 0) {
+                int length = (int) Math.min(buffer.capacity(), position);
+                position -= length;
+                buffer.clear();
+                buffer.limit(length);
+                channel.position(position);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        throw new IOException("Could not read " + file);
+                    }
+                }
+                for (int i = length - 1 ; i >= 0 ; i--) {
+                    byte b = buffer.get(i);
+                    if (b == '\n' || b == '\r') {
+                        if (reversed.size() > 0) {
+                            return reverse(reversed);
+                        }
+                    } else {
+                        reversed.write(b);
+                    }
+                }
+            }
+            return reversed.size() > 0 ? reverse(reversed) : null;
+        }
+    }
+
+    private static String reverse(ByteArrayOutputStream reversed) {
+        byte[] bytes = reversed.toByteArray();
+        for (int i = 0, j = bytes.length - 1 ; i < j ; i++, j--) {
+            byte b = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = b;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the latest version of each of the boards as one JSON object per line.
+     *
+     * @param boardIds the boards to export
+     * @param out the stream to write to
+     * @return the number of boards exported
+     */
+    public int export(List<Integer> boardIds, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        int count = 0;
+        for (int boardId : boardIds) {
+            BoardSnapshot latest = getLatest(boardId);
+            if (latest != null) {
+                writer.write(latest.toModelNode().toJSONString(true));
+                writer.write('\n');
+                count++;
+            }
+        }
+        writer.flush();
+        return count;
+    }
+
+    /**
+     * Compares two versions of a board's configuration. Parts with the same hash are not looked at, so comparing
+     * mostly identical snapshots is cheap.
+     *
+     * @param from the older version
+     * @param to the newer version
+     * @return a line per difference, or an empty list if they are the same
+     */
+    public static List<String> diff(BoardSnapshot from, BoardSnapshot to) {
+        List<String> diffs = new ArrayList<>();
+        if (from.getHash().equals(to.getHash())) {
+            return diffs;
+        }
+        if (!from.getBoardName().equals(to.getBoardName())) {
+            diffs.add("name: " + from.getBoardName() + " -> " + to.getBoardName());
+        }
+        for (String part : new String[]{BoardSnapshot.FILTER, BoardSnapshot.COLUMNS, BoardSnapshot.SWIMLANES,
+                BoardSnapshot.QUICK_FILTERS, BoardSnapshot.CARD_COLORS}) {
+            if (Objects.equals(from.getPartHashes().get(part), to.getPartHashes().get(part))) {
+                continue;
+            }
+            ModelNode fromPart = from.getPart(part);
+            ModelNode toPart = to.getPart(part);
+            switch (part) {
+                case BoardSnapshot.COLUMNS:
+                    diffFields(part, fromPart, toPart, "statisticsField", diffs);
+                    diffNamedList(part, fromPart.get("columns"), toPart.get("columns"), diffs);
+                    break;
+                case BoardSnapshot.SWIMLANES:
+                    diffFields(part, fromPart, toPart, "strategy", diffs);
+                    diffNamedList(part, fromPart.get("swimlanes"), toPart.get("swimlanes"), diffs);
+                    break;
+                case BoardSnapshot.QUICK_FILTERS:
+                    diffNamedList(part, fromPart, toPart, diffs);
+                    break;
+                case BoardSnapshot.CARD_COLORS:
+                    diffFields(part, fromPart, toPart, "strategy", diffs);
+                    diffNamedList(part, fromPart.get("colors"), toPart.get("colors"), diffs);
+                    break;
+                default:
+                    diffFields(part, fromPart, toPart, null, diffs);
+            }
+        }
+        return diffs;
+    }
+
+    private static void diffFields(String part, ModelNode from, ModelNode to, String onlyField, List<String> diffs) {
+        for (String field : from.isDefined() ? from.keys() : Collections.<String>emptySet()) {
+            if (onlyField != null && !onlyField.equals(field)) {
+                continue;
+            }
+            if (!from.get(field).equals(to.get(field))) {
+                diffs.add(part + "." + field + ": " + text(from.get(field)) + " -> " + text(to.get(field)));
+            }
+        }
+        for (String field : to.isDefined() ? to.keys() : Collections.<String>emptySet()) {
+            if ((onlyField == null || onlyField.equals(field)) && !from.has(field)) {
+                diffs.add(part + "." + field + ": (none) -> " + text(to.get(field)));
+            }
+        }
+    }
+
+    private static void diffNamedList(String part, ModelNode from, ModelNode to, List<String> diffs) {
+        Map<String, ModelNode> fromByName = byName(from);
+        Map<String, ModelNode> toByName = byName(to);
+        List<String> kept = new ArrayList<>();
+        for (Map.Entry<String, ModelNode> entry : fromByName.entrySet()) {
+            ModelNode other = toByName.get(entry.getKey());
+            if (other == null) {
+                diffs.add(part + ": - " + entry.getKey());
+            } else {
+                kept.add(entry.getKey());
+                if (!entry.getValue().equals(other)) {
+                    diffs.add(part + ": ~ " + entry.getKey() + " " + entry.getValue().toJSONString(true) + " -> " + other.toJSONString(true));
+                }
+            }
+        }
+        List<String> keptInNewOrder = new ArrayList<>();
+        for (String name : toByName.keySet()) {
+            if (!fromByName.containsKey(name)) {
+                diffs.add(part + ": + " + name + " " + toByName.get(name).toJSONString(true));
+            } else {
+                keptInNewOrder.add(name);
+            }
+        }
+        if (!kept.equals(keptInNewOrder)) {
+            diffs.add(part + ": order " + kept + " -> " + keptInNewOrder);
+        }
+    }
+
+    private static Map<String, ModelNode> byName(ModelNode list) {
+        Map<String, ModelNode> byName = new LinkedHashMap<>();
+        if (list.isDefined()) {
+            for (ModelNode entry : list.asList()) {
+                String name = entry.has("name") ? entry.get("name").asString() : entry.toJSONString(true);
+                byName.putIfAbsent(name, entry);
+            }
+        }
+        return byName;
+    }
+
+    private static String text(ModelNode node) {
+        return node.isDefined() ? node.asString() : "(none)";
+    }
+
+    /**
+     * Splits a configuration into the parts which are stored separately. The ids of swimlanes, quick filters and
+     * statuses are left out, so that boards which are set up the same way share those parts. The filter keeps its id,
+     * since which filter a board uses is part of its configuration; boards sharing a filter share that part too.
+     */
+    static Map<String, ModelNode> parts(BoardConfiguration config) {
+        Map<String, ModelNode> parts = new LinkedHashMap<>();
+
+        ModelNode filter = new ModelNode();
+        filter.get("id").set(config.getFilterId());
+        filter.get("name").set(config.getFilterName());
+        filter.get("jql").set(config.getFilterJql());
+        parts.put(BoardSnapshot.FILTER, filter);
+
+        ModelNode columns = new ModelNode();
+        if (config.getStatisticsField() != null) {
+            columns.get("statisticsField").set(config.getStatisticsField());
+        }
+        ModelNode columnList = columns.get("columns").setEmptyList();
+        for (BoardConfiguration.Column column : config.getColumns()) {
+            ModelNode node = new ModelNode();
+            node.get("name").set(column.getName());
+            ModelNode statuses = node.get("statuses").setEmptyList();
+            for (BoardConfiguration.Status status : column.getStatuses()) {
+                statuses.add(status.getName());
+            }
+            setIfNotNull(node, "min", column.getMin());
+            setIfNotNull(node, "max", column.getMax());
+            columnList.add(node);
+        }
+        parts.put(BoardSnapshot.COLUMNS, columns);
+
+        ModelNode swimlanes = new ModelNode();
+        Commands.BoardSwimlanes boardSwimlanes = config.getSwimlanes();
+        if (boardSwimlanes != null) {
+            setIfNotNull(swimlanes, "strategy", boardSwimlanes.getStrategy());
+        }
+        ModelNode swimlaneList = swimlanes.get("swimlanes").setEmptyList();
+        if (boardSwimlanes != null) {
+            for (Commands.Swimlane swimlane : boardSwimlanes.getSwimlanes()) {
+                ModelNode node = new ModelNode();
+                node.get("name").set(swimlane.getName());
+                setIfNotNull(node, "query", swimlane.getQuery());
+                setIfNotNull(node, "description", swimlane.getDescription());
+                if (swimlane.isDefaultSwimlane()) {
+                    node.get("default").set(true);
+                }
+                swimlaneList.add(node);
+            }
+        }
+        parts.put(BoardSnapshot.SWIMLANES, swimlanes);
+
+        ModelNode quickFilters = new ModelNode().setEmptyList();
+        for (BoardConfiguration.QuickFilter quickFilter : config.getQuickFilters()) {
+            ModelNode node = new ModelNode();
+            node.get("name").set(quickFilter.getName());
+            node.get("query").set(quickFilter.getQuery());
+            setIfNotNull(node, "description", quickFilter.getDescription());
+            quickFilters.add(node);
+        }
+        parts.put(BoardSnapshot.QUICK_FILTERS, quickFilters);
+
+        ModelNode cardColors = new ModelNode();
+        setIfNotNull(cardColors, "strategy", config.getCardColorStrategy());
+        ModelNode colorList = cardColors.get("colors").setEmptyList();
+        for (BoardConfiguration.CardColor cardColor : config.getCardColors()) {
+            ModelNode node = new ModelNode();
+            //The value is what identifies a colour, there can only be one per value
+            setIfNotNull(node, "name", cardColor.getValue());
+            node.get("color").set(cardColor.getColor());
+            colorList.add(node);
+        }
+        parts.put(BoardSnapshot.CARD_COLORS, cardColors);
+        return parts;
+    }
+
+    private static void setIfNotNull(ModelNode node, String key, String value) {
+        if (value != null) {
+            node.get(key).set(value);
+        }
+    }
+
+    private static ModelNode manifest(int boardId, String boardName, Map<String, String> partHashes) {
+        ModelNode manifest = new ModelNode();
+        manifest.get("board").set(boardId);
+        manifest.get("name").set(boardName);
+        for (Map.Entry<String, String> part : partHashes.entrySet()) {
+            manifest.get("parts", part.getKey()).set(part.getValue());
+        }
+        return manifest;
+    }
+
+    /**
+     * @param line a {@code <captured at> <manifest hash>} line from a board's file
+     * @return the version, or {@code null} if the line does not hold one
+     */
+    private BoardSnapshot loadVersion(String line) {
+        int space = line.indexOf(' ');
+        if (space <= 0) {
+            return null;
+        }
+        return load(Long.parseLong(line.substring(0, space)), line.substring(space + 1).trim());
+    }
+
+    private BoardSnapshot load(long capturedAt, String hash) {
+        ModelNode manifest = get(hash);
+        Map<String, String> partHashes = new LinkedHashMap<>();
+        for (String part : manifest.get("parts").keys()) {
+            partHashes.put(part, manifest.get("parts", part).asString());
+        }
+        return new BoardSnapshot(manifest.get("board").asInt(), manifest.get("name").asString(), capturedAt, hash,
+                partHashes, this::get);
+    }
+
+    private String put(ModelNode node) throws IOException {
+        byte[] bytes = serialize(node);
+        String hash = hash(bytes);
+        Path file = objectFile(hash);
+        if (Files.exists(file)) {
+            return hash;
+        }
+        Files.createDirectories(file.getParent());
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        }
+        //Write to a temporary file first, so that a reader never sees half an object
+        Path temp = Files.createTempFile(file.getParent(), hash, ".tmp");
+        try {
+            Files.write(temp, compressed.toByteArray());
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            //Someone else stored the same object
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        objectCache.putIfAbsent(hash, node.clone());
+        return hash;
+    }
+
+    private ModelNode get(String hash) {
+        ModelNode cached = objectCache.get(hash);
+        if (cached != null) {
+            return cached.clone();
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(objectFile(hash)))) {
+            ModelNode node = ModelNode.fromJSONStream(in);
+            objectCache.putIfAbsent(hash, node);
+            return node.clone();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read snapshot object " + hash, e);
+        }
+    }
+
+    private Path objectFile(String hash) {
+        return objects.resolve(hash.substring(0, 2)).resolve(hash.substring(2));
+    }
+
+    private static byte[] serialize(ModelNode node) {
+        return node.toJSONString(true).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param bytes the bytes
+     * @return the SHA-256 hash of the bytes in hex
+     */
+    static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations.JqlSwimlaneConfig;
+
+/**
+ * Collects the swimlane changes for a board, and sends them to Jira in as few requests as possible when
+ * {@link #apply()} is called. Get one from {@link Commands#newSwimlaneBatch(Commands.Board)}.
+ * <p/>
+ * New swimlanes get a negative placeholder id from {@link #create(JqlSwimlaneConfig)}, which can be used like the id
+ * of an existing swimlane until the batch is applied. Several updates of the same swimlane are merged into one,
+ * updating a new swimlane changes what is created, and deleting a new swimlane means it is not created at all.
+ * <p/>
+ * When applied, the deletes and updates are sent concurrently, then the creates. If an order was given, the
+ * swimlanes are then moved into place. Only the swimlanes outside the longest run of swimlanes which are already in
+ * the right relative order are moved, so e.g. moving one swimlane of fifty is a single request.
+ * <p/>
+ * A batch is not thread safe, and can only be applied once.
+ *
+ * @author Kabir Khan
+ */
+public class SwimlaneBatch {
+    private final Commands commands;
+    private final Commands.Board board;
+    private final Commands.BoardSwimlanes existing;
+    private final Map<Integer, String> existingNames = new HashMap<>();
+    //Placeholder id -> swimlane to create
+    private final Map<Integer, JqlSwimlaneConfig> creates = new LinkedHashMap<>();
+    private final Map<Integer, JqlSwimlaneConfig> updates = new LinkedHashMap<>();
+    private final Set<Integer> deletes = new LinkedHashSet<>();
+    private List<Integer> order;
+    private int nextPlaceholder = -1;
+    private boolean applied;
+
+    SwimlaneBatch(Commands commands, Commands.Board board, Commands.BoardSwimlanes existing) {
+        this.commands = commands;
+        this.board = board;
+        this.existing = existing;
+        for (Commands.Swimlane swimlane : existing.getSwimlanes()) {
+            if (!swimlane.isDefaultSwimlane()) {
+                existingNames.put(swimlane.getId(), swimlane.getName());
+            }
+        }
+    }
+
+    /**
+     * @return the swimlanes of the board when the batch was started, in the order they appear on the board
+     */
+    public Commands.BoardSwimlanes getExisting() {
+        return existing;
+    }
+
+    /**
+     * Adds a swimlane.
+     *
+     * @param config the swimlane
+     * @return the placeholder id of the new swimlane
+     */
+    public int create(JqlSwimlaneConfig config) {
+        checkNotApplied();
+        int placeholder = nextPlaceholder--;
+        creates.put(placeholder, config);
+        return placeholder;
+    }
+
+    /**
+     * Changes a swimlane. If it is updated more than once, only the last update is sent.
+     *
+     * @param swimlaneId the id of an existing swimlane, or the placeholder id of a new one
+     * @param config the new settings
+     */
+    public void update(int swimlaneId, JqlSwimlaneConfig config) {
+        checkNotApplied();
+        if (creates.containsKey(swimlaneId)) {
+            creates.put(swimlaneId, config);
+        } else {
+            checkExisting(swimlaneId);
+            updates.put(swimlaneId, config);
+        }
+    }
+
+    /**
+     * Deletes a swimlane. Any changes of it made earlier in the batch are dropped.
+     *
+     * @param swimlaneId the id of an existing swimlane, or the placeholder id of a new one
+     */
+    public void delete(int swimlaneId) {
+        checkNotApplied();
+        if (creates.remove(swimlaneId) == null) {
+            checkExisting(swimlaneId);
+            updates.remove(swimlaneId);
+            deletes.add(swimlaneId);
+        }
+    }
+
+    /**
+     * Sets the order of the custom swimlanes. The swimlanes listed are put first, in the order given, followed by the
+     * ones not listed in the order they are on the board. New swimlanes which are not listed end up in no particular
+     * order after the listed ones. If this is not called, existing swimlanes stay where they are and new ones end up
+     * on top in no particular order.
+     *
+     * @param swimlaneIds the ids or placeholder ids of the swimlanes, in the order they should appear
+     */
+    public void order(List<Integer> swimlaneIds) {
+        checkNotApplied();
+        this.order = new ArrayList<>(swimlaneIds);
+    }
+
+    /**
+     * Sends the changes to Jira.
+     *
+     * @return the ids of the swimlanes created, by placeholder id
+     */
+    public Map<Integer, Integer> apply() {
+        checkNotApplied();
+        applied = true;
+
+        List<Callable<Void>> deletesAndUpdates = new ArrayList<>();
+        for (int swimlaneId : deletes) {
+            deletesAndUpdates.add(() -> {
+                commands.deleteSwimlane(board, existingNames.get(swimlaneId), swimlaneId);
+                return null;
+            });
+        }
+        for (Map.Entry<Integer, JqlSwimlaneConfig> update : updates.entrySet()) {
+            deletesAndUpdates.add(() -> {
+                commands.updateJqlSwimlane(board, update.getKey(), update.getValue());
+                return null;
+            });
+        }
+        commands.executor.invokeAll(deletesAndUpdates);
+
+        List<Integer> placeholders = new ArrayList<>(creates.keySet());
+        List<Callable<Integer>> createTasks = new ArrayList<>();
+        for (int placeholder : placeholders) {
+            JqlSwimlaneConfig config = creates.get(placeholder);
+            createTasks.add(() -> commands.addJqlSwimlane(board, config));
+        }
+        List<Integer> createdIds = commands.executor.invokeAll(createTasks);
+        Map<Integer, Integer> created = new HashMap<>();
+        for (int i = 0 ; i < placeholders.size() ; i++) {
+            created.put(placeholders.get(i), createdIds.get(i));
+        }
+
+        if (order != null) {
+            applyOrder(created);
+        }
+        return created;
+    }
+
+    private void applyOrder(Map<Integer, Integer> created) {
+        //The concurrent creates may have happened in any order, so if there were any we need to look at the board
+        //again. Otherwise we know what it looks like: the kept swimlanes in their original order.
+        List<Integer> current = new ArrayList<>();
+        for (Commands.Swimlane swimlane : created.isEmpty() ? existing.getSwimlanes() : commands.getSwimlanes(board).getSwimlanes()) {
+            if (!swimlane.isDefaultSwimlane() && !deletes.contains(swimlane.getId())) {
+                current.add(swimlane.getId());
+            }
+        }
+
+        Set<Integer> wanted = new LinkedHashSet<>();
+        for (int swimlaneId : order) {
+            Integer id = swimlaneId < 0 ? created.get(swimlaneId) : Integer.valueOf(swimlaneId);
+            if (id == null || (swimlaneId >= 0 && !existingNames.containsKey(swimlaneId))) {
+                throw new IllegalStateException("Swimlane " + swimlaneId + " is not on board " + board.name);
+            }
+            if (!deletes.contains(id)) {
+                wanted.add(id);
+            }
+        }
+        wanted.addAll(current);
+        List<Integer> wantedOrder = new ArrayList<>(wanted);
+
+        for (int[] move : minimalMoves(current, wantedOrder)) {
+            commands.moveSwimlane(board, move[0], move[1] < 0 ? null : move[1]);
+        }
+    }
+
+    /**
+     * Works out the moves which turn {@code current} into {@code wanted}. The swimlanes forming the longest
+     * subsequence of {@code current} which is already in the wanted order stay where they are. The others are moved,
+     * in wanted order, to just after the swimlane before them in {@code wanted}. Each move keeps the swimlanes which
+     * are in place plus the ones already moved in the wanted relative order, so they are all in order at the end.
+     *
+     * @param current the ids in the order they are on the board
+     * @param wanted the same ids, in the order they should be
+     * @return the moves, each one the id of the swimlane to move and the id of the one to put it after, or {@code -1}
+     * to make it the first one
+     */
+    static List<int[]> minimalMoves(List<Integer> current, List<Integer> wanted) {
+        Map<Integer, Integer> wantedIndex = new HashMap<>();
+        for (int i = 0 ; i < wanted.size() ; i++) {
+            wantedIndex.put(wanted.get(i), i);
+        }
+        int[] sequence = new int[current.size()];
+        for (int i = 0 ; i < sequence.length ; i++) {
+            Integer index = wantedIndex.get(current.get(i));
+            if (index == null) {
+                throw new IllegalStateException("Swimlane " + current.get(i) + " has no wanted position");
+            }
+            sequence[i] = index;
+        }
+
+        Set<Integer> inPlace = new LinkedHashSet<>();
+        for (int index : longestIncreasingSubsequence(sequence)) {
+            inPlace.add(wanted.get(index));
+        }
+        List<int[]> moves = new ArrayList<>();
+        for (int i = 0 ; i < wanted.size() ; i++) {
+            int id = wanted.get(i);
+            if (!inPlace.contains(id)) {
+                moves.add(new int[]{id, i == 0 ? -1 : wanted.get(i - 1)});
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Finds a longest strictly increasing subsequence in O(n log n), by keeping the smallest possible tail of an
+     * increasing subsequence of each length.
+     *
+     * @param sequence the sequence, with no duplicates
+     * @return the values of the subsequence
+     */
+    static int[] longestIncreasingSubsequence(int[] sequence) {
+        //tails[k] is the index in sequence of the smallest tail of an increasing subsequence of length k + 1
+        int[] tails = new int[sequence.length];
+        int[] previous = new int[sequence.length];
+        int length = 0;
+        for (int i = 0 ; i < sequence.length ; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sequence[tails[mid]] < sequence[i]) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        int[] result = new int[length];
+        for (int i = length - 1, k = length > 0 ? tails[length - 1] : -1 ; i >= 0 ; i--, k = previous[k]) {
+            result[i] = sequence[k];
+        }
+        return result;
+    }
+
+    private void checkExisting(int swimlaneId) {
+        if (!existingNames.containsKey(swimlaneId) || deletes.contains(swimlaneId)) {
+            throw new IllegalStateException("Swimlane " + swimlaneId + " is not on board " + board.name
+                    + (deletes.contains(swimlaneId) ? " (it was deleted earlier in the batch)" : ""));
+        }
+    }
+
+    private void checkNotApplied() {
+        if (applied) {
+            throw new IllegalStateException("The batch for board " + board.name + " has already been applied");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SwimlaneBatch{board=" + board.name + ", creates=" + creates.size() + ", updates=" + updates.size()
+                + ", deletes=" + deletes.size() + ", order=" + (order == null ? "unchanged" : Arrays.toString(order.toArray())) + "}";
+    }
+}
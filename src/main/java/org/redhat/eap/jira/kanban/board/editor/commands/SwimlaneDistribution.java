@@ -0,0 +1,301 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+import org.jboss.dmr.ModelNode;
+import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations.JqlSwimlaneConfig;
+
+/**
+ * How the issues of a board would be spread across a set of swimlanes. Get one from
+ * {@link Commands#analyzeSwimlanes(Commands.Board, JqlSwimlaneConfig...)}.
+ * <p/>
+ * The issues selected by the board's filter are fetched once, a page at a time with the pages after the first one
+ * fetched concurrently, and put in an {@link IssueIndex}. Each swimlane's query is then evaluated against the index.
+ * Only swimlanes using something the index does not support, such as a function, or which our parser does not
+ * understand, cost a search in Jira, for the keys of the issues matching both the filter and the swimlane.
+ * <p/>
+ * Like on the board, an issue is shown in the first swimlane it matches, so a swimlane may match more issues than
+ * it shows. Issues matching none of the swimlanes end up in the default swimlane. The filter of a kanban board may be
+ * narrowed further by its sub-filter, and done issues are hidden after a while, which is not taken into account.
+ *
+ * @author Kabir Khan
+ */
+public class SwimlaneDistribution {
+    static final int PAGE_SIZE = 500;
+
+    private final int issueCount;
+    private final List<Lane> lanes;
+    private final int defaultLaneCount;
+    private final List<Overlap> overlaps;
+    private final long fetchMs;
+    private final long evaluateMs;
+
+    private SwimlaneDistribution(int issueCount, List<Lane> lanes, int defaultLaneCount, List<Overlap> overlaps, long fetchMs, long evaluateMs) {
+        this.issueCount = issueCount;
+        this.lanes = Collections.unmodifiableList(lanes);
+        this.defaultLaneCount = defaultLaneCount;
+        this.overlaps = Collections.unmodifiableList(overlaps);
+        this.fetchMs = fetchMs;
+        this.evaluateMs = evaluateMs;
+    }
+
+    static SwimlaneDistribution analyze(Commands commands, Commands.Board board, JqlSwimlaneConfig[] configs) {
+        long start = System.nanoTime();
+        //Drop any ORDER BY so the filter can be combined with the swimlane queries. Everything else, including the
+        //predicates of history clauses, is kept
+        String filter = Jql.parse(commands.getBoardConfiguration(board).getFilterJql()).toString();
+        IssueIndex index = new IssueIndex();
+        search(commands, Collections.singletonList(filter), IssueIndex.FIELDS, (query, issue) -> index.add(issue));
+        long fetched = System.nanoTime();
+
+        BitSet[] matches = new BitSet[configs.length];
+        List<String> remoteQueries = new ArrayList<>();
+        //The lane of each remote query
+        List<Integer> remoteLanes = new ArrayList<>();
+        boolean[] remote = new boolean[configs.length];
+        for (int i = 0 ; i < configs.length ; i++) {
+            matches[i] = evaluate(index, configs[i].getJql());
+            if (matches[i] == null) {
+                matches[i] = new BitSet();
+                remote[i] = true;
+                remoteLanes.add(i);
+                remoteQueries.add(filter.isEmpty() ? configs[i].getJql() : "(" + filter + ") AND (" + configs[i].getJql() + ")");
+            }
+        }
+        long evaluated = System.nanoTime();
+        if (remoteQueries.size() > 0) {
+            search(commands, remoteQueries, Collections.emptyList(), (query, issue) -> {
+                //Ignore issues which have been added since the filter was searched
+                int number = index.getIssueNumber(issue.get("key").asString());
+                if (number >= 0) {
+                    BitSet laneMatches = matches[remoteLanes.get(query)];
+                    synchronized (laneMatches) {
+                        laneMatches.set(number);
+                    }
+                }
+            });
+        }
+        long searched = System.nanoTime();
+
+        List<Lane> lanes = new ArrayList<>(configs.length);
+        BitSet shown = new BitSet();
+        for (int i = 0 ; i < configs.length ; i++) {
+            BitSet laneShown = (BitSet) matches[i].clone();
+            laneShown.andNot(shown);
+            shown.or(laneShown);
+            lanes.add(new Lane(configs[i].getName(), configs[i].getJql(), matches[i].cardinality(), laneShown.cardinality(),
+                    !remote[i]));
+        }
+        List<Overlap> overlaps = new ArrayList<>();
+        for (int i = 0 ; i < configs.length ; i++) {
+            for (int j = i + 1 ; j < configs.length ; j++) {
+                if (matches[i].intersects(matches[j])) {
+                    BitSet both = (BitSet) matches[i].clone();
+                    both.and(matches[j]);
+                    overlaps.add(new Overlap(configs[i].getName(), configs[j].getName(), both.cardinality()));
+                }
+            }
+        }
+        int issueCount = index.size();
+        long end = System.nanoTime();
+        return new SwimlaneDistribution(issueCount, lanes, issueCount - shown.cardinality(), overlaps,
+                (fetched - start + searched - evaluated) / 1000000, (evaluated - fetched + end - searched) / 1000000);
+    }
+
+    /**
+     * Evaluates a swimlane query against the index.
+     *
+     * @return the matching issues, or {@code null} if the query has to be searched for in Jira, either because it
+     * uses something the index does not support or because our parser does not understand it. In the latter case
+     * Jira is the judge of whether it is valid.
+     */
+    private static BitSet evaluate(IssueIndex index, String jql) {
+        final Jql parsed;
+        try {
+            parsed = Jql.parse(jql);
+        } catch (IllegalStateException e) {
+            return null;
+        }
+        return index.evaluate(parsed);
+    }
+
+    /**
+     * Fetches all the issues matching each of the queries. The first page of each query is fetched concurrently to
+     * find out how many issues there are, and then all the remaining pages.
+     *
+     * @param commands the commands
+     * @param queries the queries
+     * @param fields the fields wanted for each issue
+     * @param handler called with the index of the query and each issue found, from several threads
+     */
+    private static void search(Commands commands, List<String> queries, List<String> fields, IssueHandler handler) {
+        List<Callable<Commands.SearchPage>> firstPages = new ArrayList<>();
+        for (int i = 0 ; i < queries.size() ; i++) {
+            int query = i;
+            firstPages.add(() -> commands.searchIssues(queries.get(query), fields, 0, PAGE_SIZE, issue -> handler.handle(query, issue)));
+        }
+        List<Commands.SearchPage> pages = commands.executor.invokeAll(firstPages);
+
+        List<Callable<Void>> remainingPages = new ArrayList<>();
+        for (int i = 0 ; i < queries.size() ; i++) {
+            int query = i;
+            Commands.SearchPage page = pages.get(i);
+            Consumer<ModelNode> issueHandler = issue -> handler.handle(query, issue);
+            for (int startAt = page.pageSize ; page.pageSize > 0 && startAt < page.total ; startAt += page.pageSize) {
+                int pageStart = startAt;
+                remainingPages.add(() -> {
+                    commands.searchIssues(queries.get(query), fields, pageStart, page.pageSize, issueHandler);
+                    return null;
+                });
+            }
+        }
+        commands.executor.invokeAll(remainingPages);
+    }
+
+    /**
+     * @return the number of issues selected by the board's filter
+     */
+    public int getIssueCount() {
+        return issueCount;
+    }
+
+    /**
+     * @return the swimlanes, in board order
+     */
+    public List<Lane> getLanes() {
+        return lanes;
+    }
+
+    /**
+     * @return the number of issues which match none of the swimlanes, and so end up in the default swimlane
+     */
+    public int getDefaultLaneCount() {
+        return defaultLaneCount;
+    }
+
+    /**
+     * @return the pairs of swimlanes which match some of the same issues
+     */
+    public List<Overlap> getOverlaps() {
+        return overlaps;
+    }
+
+    /**
+     * @return the time taken to fetch the issues, and to search for the swimlanes which could not be evaluated locally
+     */
+    public long getFetchMs() {
+        return fetchMs;
+    }
+
+    /**
+     * @return the time taken to work out the distribution once all the issues had been fetched
+     */
+    public long getEvaluateMs() {
+        return evaluateMs;
+    }
+
+    public static class Lane {
+        private final String name;
+        private final String jql;
+        private final int matched;
+        private final int shown;
+        private final boolean local;
+
+        Lane(String name, String jql, int matched, int shown, boolean local) {
+            this.name = name;
+            this.jql = jql;
+            this.matched = matched;
+            this.shown = shown;
+            this.local = local;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getJql() {
+            return jql;
+        }
+
+        /**
+         * @return the number of issues matching the swimlane's query
+         */
+        public int getMatched() {
+            return matched;
+        }
+
+        /**
+         * @return the number of issues shown in the swimlane, i.e. those not matching an earlier swimlane
+         */
+        public int getShown() {
+            return shown;
+        }
+
+        /**
+         * @return whether the swimlane's query was evaluated locally rather than by Jira
+         */
+        public boolean isLocal() {
+            return local;
+        }
+    }
+
+    public static class Overlap {
+        private final String first;
+        private final String second;
+        private final int count;
+
+        Overlap(String first, String second, int count) {
+            this.first = first;
+            this.second = second;
+            this.count = count;
+        }
+
+        /**
+         * @return the name of the swimlane which comes first on the board, and so shows the shared issues
+         */
+        public String getFirst() {
+            return first;
+        }
+
+        public String getSecond() {
+            return second;
+        }
+
+        /**
+         * @return the number of issues matching both swimlanes
+         */
+        public int getCount() {
+            return count;
+        }
+    }
+
+    private interface IssueHandler {
+        void handle(int query, ModelNode issue);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.jboss.dmr.ModelNode;
+
+/**
+ * Records the traffic between {@link Commands} and Jira, so that it can be replayed later without Jira, e.g. for
+ * load testing. It is enabled by setting {@code editor.record.dir}.
+ * <p/>
+ * Each exchange, including each retry, is written to its own numbered file in the directory as a JSON object with
+ * the {@code method}, {@code path} and {@code query} of the request, its {@code requestBody} if it had one, and the
+ * {@code status}, {@code headers} and {@code body} of the response. Several instances can record to the same
+ * directory. Only the response headers needed to replay conditional requests and throttling are kept. Request
+ * headers, and so the credentials, are never recorded.
+ * <p/>
+ * The bodies are recorded uncompressed: the request body is copied before any content encoder sees it, and a
+ * compressed response body is decompressed for the recording while the client still gets the original.
+ *
+ * @author Kabir Khan
+ */
+@Priority(Priorities.ENTITY_CODER + 1000)
+class TrafficRecorder implements ClientResponseFilter, WriterInterceptor {
+    private static final String REQUEST_BODY_PROPERTY = TrafficRecorder.class.getName() + ".requestBody";
+    static final String[] HEADERS = {HttpHeaders.CONTENT_TYPE, HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED, HttpHeaders.RETRY_AFTER};
+
+    private final Path dir;
+    private final AtomicLong sequence;
+
+    TrafficRecorder(Path dir) {
+        this.dir = dir;
+        long last = 0;
+        try {
+            Files.createDirectories(dir);
+            //Carry on from an earlier recording in the same directory
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.json")) {
+                for (Path file : files) {
+                    try {
+                        last = Math.max(last, Long.parseLong(file.getFileName().toString().replace(".json", "")));
+                    } catch (NumberFormatException e) {
+                        //Not one of ours
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open the recording directory " + dir, e);
+        }
+        this.sequence = new AtomicLong(last);
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        final OutputStream out = context.getOutputStream();
+        context.setOutputStream(new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                copy.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                copy.write(b, off, len);
+            }
+        });
+        context.setProperty(REQUEST_BODY_PROPERTY, copy);
+        context.proceed();
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) throws IOException {
+        URI uri = requestContext.getUri();
+        ModelNode exchange = new ModelNode();
+        exchange.get("method").set(requestContext.getMethod());
+        exchange.get("path").set(uri.getRawPath());
+        if (uri.getRawQuery() != null) {
+            exchange.get("query").set(uri.getRawQuery());
+        }
+        ByteArrayOutputStream requestBody = (ByteArrayOutputStream) requestContext.getProperty(REQUEST_BODY_PROPERTY);
+        if (requestBody != null) {
+            exchange.get("requestBody").set(new String(requestBody.toByteArray(), StandardCharsets.UTF_8));
+        }
+        exchange.get("status").set(responseContext.getStatus());
+        ModelNode headers = exchange.get("headers").setEmptyObject();
+        for (String header : HEADERS) {
+            String value = responseContext.getHeaderString(header);
+            if (value != null) {
+                headers.get(header).set(value);
+            }
+        }
+        if (responseContext.hasEntity()) {
+            byte[] body = readFully(responseContext.getEntityStream());
+            responseContext.setEntityStream(new ByteArrayInputStream(body));
+            String encoding = responseContext.getHeaderString(HttpHeaders.CONTENT_ENCODING);
+            if (encoding != null && (encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip"))) {
+                body = readFully(new GZIPInputStream(new ByteArrayInputStream(body)));
+            }
+            exchange.get("body").set(new String(body, StandardCharsets.UTF_8));
+        }
+
+        byte[] bytes = exchange.toJSONString(false).getBytes(StandardCharsets.UTF_8);
+        while (true) {
+            Path file = dir.resolve(String.format("%08d.json", sequence.incrementAndGet()));
+            try {
+                //Other instances may be recording to the same directory, so never overwrite
+                Files.write(file, bytes, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                return;
+            } catch (FileAlreadyExistsException e) {
+                //Try the next number
+            } catch (IOException e) {
+                //A broken recording should not break the run
+                System.err.println("Could not record " + requestContext.getMethod() + " " + uri + " to " + file + ": " + e);
+                return;
+            }
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int read = in.read(buffer) ; read != -1 ; read = in.read(buffer)) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
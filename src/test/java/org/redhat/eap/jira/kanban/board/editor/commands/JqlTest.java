@@ -0,0 +1,170 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Kabir Khan
+ */
+public class JqlTest {
+
+    @Test
+    public void testSimpleClause() {
+        Jql jql = Jql.parse("component = \"Server\"");
+        Jql.Clause clause = (Jql.Clause) jql.getRoot();
+        Assert.assertEquals("component", clause.getField());
+        Assert.assertEquals(Jql.Operator.EQUALS, clause.getOperator());
+        Assert.assertEquals(1, clause.getValues().size());
+        Assert.assertEquals("Server", clause.getValues().get(0).getText());
+        Assert.assertTrue(clause.getValues().get(0).isQuoted());
+        Assert.assertEquals("component = \"Server\"", jql.toString());
+    }
+
+    @Test
+    public void testPrecedence() {
+        Jql.Or or = (Jql.Or) Jql.parse("a = 1 OR b = 2 AND NOT c = 3").getRoot();
+        Assert.assertEquals(2, or.getChildren().size());
+        Assert.assertTrue(or.getChildren().get(0) instanceof Jql.Clause);
+        Jql.And and = (Jql.And) or.getChildren().get(1);
+        Assert.assertTrue(and.getChildren().get(1) instanceof Jql.Not);
+
+        Jql.And grouped = (Jql.And) Jql.parse("(a = 1 OR b = 2) AND c = 3").getRoot();
+        Assert.assertTrue(grouped.getChildren().get(0) instanceof Jql.Or);
+        Assert.assertEquals("(a = 1 OR b = 2) AND c = 3", Jql.parse("(a = 1 or b = 2) and c = 3").toString());
+    }
+
+    @Test
+    public void testListOperators() {
+        Jql.Clause in = (Jql.Clause) Jql.parse("component in (\"A\", B)").getRoot();
+        Assert.assertEquals(Jql.Operator.IN, in.getOperator());
+        Assert.assertEquals(2, in.getValues().size());
+        Assert.assertEquals("component in (\"A\", B)", in.toString());
+
+        Jql.Clause notIn = (Jql.Clause) Jql.parse("component NOT IN (A)").getRoot();
+        Assert.assertEquals(Jql.Operator.NOT_IN, notIn.getOperator());
+        Assert.assertEquals("component not in (A)", notIn.toString());
+
+        Jql.Clause withFunction = (Jql.Clause) Jql.parse("assignee in (currentUser(), bob)").getRoot();
+        Assert.assertEquals(Jql.Value.Kind.FUNCTION, withFunction.getValues().get(0).getKind());
+        Assert.assertEquals("assignee in (currentUser(), bob)", withFunction.toString());
+    }
+
+    @Test
+    public void testListOperatorWithFunction() {
+        Jql.Clause in = (Jql.Clause) Jql.parse("sprint in openSprints()").getRoot();
+        Assert.assertEquals(Jql.Operator.IN, in.getOperator());
+        Assert.assertEquals(1, in.getValues().size());
+        Jql.Value value = in.getValues().get(0);
+        Assert.assertEquals(Jql.Value.Kind.FUNCTION, value.getKind());
+        Assert.assertEquals("openSprints", value.getText());
+        Assert.assertEquals(Collections.emptyList(), value.getArguments());
+        Assert.assertEquals("sprint in openSprints()", in.toString());
+
+        Jql.Clause notIn = (Jql.Clause) Jql.parse("issue not in linkedIssues(\"WFLY-1\", blocks)").getRoot();
+        Assert.assertEquals(Jql.Operator.NOT_IN, notIn.getOperator());
+        Assert.assertEquals(Arrays.asList("WFLY-1", "blocks"), notIn.getValues().get(0).getArguments());
+        Assert.assertEquals("issue not in linkedIssues(\"WFLY-1\", \"blocks\")", notIn.toString());
+    }
+
+    @Test
+    public void testListOperatorNeedsListOrFunction() {
+        assertInvalid("component in A", "Expected '(' or a function after 'in'");
+        assertInvalid("component not in \"A\"", "Expected '(' or a function after 'not in'");
+        assertInvalid("component in (A", "Expected ')' or ','");
+    }
+
+    @Test
+    public void testEmptyAndHistory() {
+        Jql.Clause is = (Jql.Clause) Jql.parse("fixVersion is EMPTY").getRoot();
+        Assert.assertEquals(Jql.Operator.IS, is.getOperator());
+        Assert.assertEquals(Jql.Value.Kind.EMPTY, is.getValues().get(0).getKind());
+        assertInvalid("fixVersion is 1.0", "'is' can only be used with EMPTY or NULL");
+
+        Jql.Clause was = (Jql.Clause) Jql.parse("status was not in (Open, Closed) after \"2015-01-01\" by bob").getRoot();
+        Assert.assertEquals(Jql.Operator.WAS_NOT_IN, was.getOperator());
+        Assert.assertTrue(was.getOperator().isHistory());
+        Assert.assertTrue(was.getOperator().isNegated());
+
+        Jql.Clause changed = (Jql.Clause) Jql.parse("assignee changed during (\"2015-01-01\", \"2015-02-01\")").getRoot();
+        Assert.assertEquals(Jql.Operator.CHANGED, changed.getOperator());
+        Assert.assertTrue(changed.getValues().isEmpty());
+    }
+
+    @Test
+    public void testHistoryPredicatesRoundTrip() {
+        Jql jql = Jql.parse("project = EAP AND status changed after -2w AND assignee was currentUser() before 2020-01-01 ORDER BY rank");
+        String condition = "project = EAP AND status changed after -2w AND assignee was currentUser() before 2020-01-01";
+        Assert.assertEquals(condition, jql.toString());
+        Assert.assertEquals(condition, Jql.parse(condition).toString());
+
+        Jql.Clause during = (Jql.Clause) Jql.parse("status WAS Open DURING (\"2015-01-01\", now()) BY bob").getRoot();
+        Assert.assertEquals(2, during.getPredicates().size());
+        Assert.assertEquals("during", during.getPredicates().get(0).getKeyword());
+        Assert.assertEquals("status was Open during (\"2015-01-01\", now()) by bob", during.toString());
+    }
+
+    @Test
+    public void testOrderBy() {
+        Jql jql = Jql.parse("project = WFLY ORDER BY priority DESC, key");
+        Assert.assertEquals(Arrays.asList("priority", "key"), jql.getOrderBy());
+        Assert.assertEquals("project = WFLY", jql.toString());
+
+        Jql orderOnly = Jql.parse("order by rank");
+        Assert.assertNull(orderOnly.getRoot());
+        Assert.assertEquals(Collections.singletonList("rank"), orderOnly.getOrderBy());
+    }
+
+    @Test
+    public void testQuotingAndReservedWords() {
+        Jql.Clause clause = (Jql.Clause) Jql.parse("\"Target Release\" = \"say \\\"hi\\\"\"").getRoot();
+        Assert.assertTrue(clause.isQuotedField());
+        Assert.assertEquals("Target Release", clause.getField());
+        Assert.assertEquals("say \"hi\"", clause.getValues().get(0).getText());
+        Assert.assertEquals("\"Target Release\" = \"say \\\"hi\\\"\"", clause.toString());
+
+        assertInvalid("project = WFLY AND order = 1", "'order' is a reserved word");
+        assertInvalid("component = in", "'in' is a reserved word");
+    }
+
+    @Test
+    public void testErrors() {
+        assertInvalid("component", "Expected an operator");
+        assertInvalid("component =", "Expected a value");
+        assertInvalid("component = A AND", "Expected a clause");
+        assertInvalid("(component = A", "Expected ')'");
+        assertInvalid("component = A B", "Unexpected 'B'");
+    }
+
+    private static void assertInvalid(String query, String expectedMessage) {
+        try {
+            Jql.parse(query);
+            Assert.fail("Expected '" + query + "' to be rejected");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith(expectedMessage));
+        }
+    }
+}
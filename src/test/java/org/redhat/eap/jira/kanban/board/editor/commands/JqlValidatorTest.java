@@ -0,0 +1,100 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.redhat.eap.jira.kanban.board.editor.commands.JqlSwimlaneConfigurations.JqlSwimlaneConfig;
+
+/**
+ * @author Kabir Khan
+ */
+public class JqlValidatorTest {
+    private final JqlValidator validator = new JqlValidator(new HashSet<>(Arrays.asList("Server", "Web (Undertow)")));
+
+    @Test
+    public void testValidQueries() {
+        assertValid("component = server");
+        assertValid("component in (\"Web (Undertow)\", Server) AND status != Closed");
+        assertValid("component = 12345");
+        assertValid("summary ~ \"memory leak\"");
+        assertValid("\"Target Release\" = 7.0.0.GA");
+        assertValid("cf[12310220] is EMPTY");
+        assertValid("sprint in openSprints() AND assignee = currentUser()");
+    }
+
+    @Test
+    public void testUnknownComponent() {
+        List<String> problems = validator.validate("component in (Server, Nope)");
+        Assert.assertEquals(1, problems.size());
+        Assert.assertTrue(problems.get(0), problems.get(0).startsWith("Unknown component 'Nope'"));
+
+        //Components are not checked when they are not known
+        Assert.assertEquals(0, new JqlValidator(null).validate("component = Nope").size());
+    }
+
+    @Test
+    public void testFields() {
+        //Custom fields do not have to be quoted, and are left to Jira
+        assertValid("Severity = High");
+        assertValid("Flagged is not EMPTY");
+        assertValid("target_release ~ 7.0");
+        assertProblem("status ~ Open", "'~' can only be used with text fields");
+        assertProblem("summary = leak", "Text field 'summary' only supports");
+    }
+
+    @Test
+    public void testUnparseable() {
+        assertProblem("component = ", "Expected a value");
+        assertProblem("", "Empty query");
+        try {
+            validator.parse("component in Server");
+            Assert.fail("Expected the query to be rejected");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testSwimlaneConfigs() {
+        List<String> problems = validator.validate(
+                JqlSwimlaneConfig.forComponent("Server"),
+                JqlSwimlaneConfig.forComponent("Gone"),
+                new JqlSwimlaneConfig("Bad", "status ~ Open", null));
+        Assert.assertEquals(2, problems.size());
+        Assert.assertTrue(problems.get(0), problems.get(0).startsWith("Swimlane 'Gone': Unknown component 'Gone'"));
+        Assert.assertTrue(problems.get(1), problems.get(1).startsWith("Swimlane 'Bad': '~' can only be used"));
+    }
+
+    private void assertValid(String jql) {
+        Assert.assertEquals(jql, 0, validator.validate(jql).size());
+    }
+
+    private void assertProblem(String jql, String expectedStart) {
+        List<String> problems = validator.validate(jql);
+        Assert.assertEquals(jql + " " + problems, 1, problems.size());
+        Assert.assertTrue(problems.get(0), problems.get(0).startsWith(expectedStart));
+    }
+}
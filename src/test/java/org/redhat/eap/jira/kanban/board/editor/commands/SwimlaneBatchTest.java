@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.redhat.eap.jira.kanban.board.editor.commands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Kabir Khan
+ */
+public class SwimlaneBatchTest {
+
+    @Test
+    public void testLongestIncreasingSubsequence() {
+        assertLis(new int[0], new int[0]);
+        assertLis(new int[]{5}, new int[]{5});
+        assertLis(new int[]{0, 1, 2, 3}, new int[]{0, 1, 2, 3});
+        Assert.assertEquals(1, SwimlaneBatch.longestIncreasingSubsequence(new int[]{3, 2, 1, 0}).length);
+        //There is more than one of length 3, this is the one ending with the smallest tails
+        assertLis(new int[]{0, 2, 3}, new int[]{3, 1, 0, 2, 4, 3});
+        assertLis(new int[]{0, 2, 6, 9, 11, 15}, new int[]{0, 8, 4, 12, 2, 10, 6, 14, 1, 9, 5, 13, 3, 11, 7, 15});
+    }
+
+    @Test
+    public void testNoMovesWhenInOrder() {
+        List<Integer> ids = Arrays.asList(10, 20, 30);
+        Assert.assertTrue(SwimlaneBatch.minimalMoves(ids, ids).isEmpty());
+        Assert.assertTrue(SwimlaneBatch.minimalMoves(Collections.emptyList(), Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void testSingleMove() {
+        //Moving the last one to the top is one move, not two
+        List<int[]> moves = SwimlaneBatch.minimalMoves(Arrays.asList(10, 20, 30), Arrays.asList(30, 10, 20));
+        Assert.assertEquals(1, moves.size());
+        Assert.assertArrayEquals(new int[]{30, -1}, moves.get(0));
+
+        moves = SwimlaneBatch.minimalMoves(Arrays.asList(10, 20, 30, 40), Arrays.asList(10, 30, 40, 20));
+        Assert.assertEquals(1, moves.size());
+        Assert.assertArrayEquals(new int[]{20, 40}, moves.get(0));
+    }
+
+    @Test
+    public void testReverse() {
+        List<Integer> current = Arrays.asList(1, 2, 3, 4, 5);
+        List<Integer> wanted = Arrays.asList(5, 4, 3, 2, 1);
+        List<int[]> moves = SwimlaneBatch.minimalMoves(current, wanted);
+        Assert.assertEquals(4, moves.size());
+        Assert.assertEquals(wanted, applyMoves(current, moves));
+    }
+
+    @Test
+    public void testRandomOrders() {
+        Random random = new Random(42);
+        for (int run = 0 ; run < 200 ; run++) {
+            List<Integer> current = new ArrayList<>();
+            int size = random.nextInt(30);
+            for (int i = 0 ; i < size ; i++) {
+                current.add(i * 10);
+            }
+            List<Integer> wanted = new ArrayList<>(current);
+            Collections.shuffle(wanted, random);
+
+            List<int[]> moves = SwimlaneBatch.minimalMoves(current, wanted);
+            Assert.assertEquals(wanted, applyMoves(current, moves));
+            int[] sequence = new int[size];
+            for (int i = 0 ; i < size ; i++) {
+                sequence[i] = wanted.indexOf(current.get(i));
+            }
+            Assert.assertEquals(size - SwimlaneBatch.longestIncreasingSubsequence(sequence).length, moves.size());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownSwimlane() {
+        SwimlaneBatch.minimalMoves(Arrays.asList(1, 2), Arrays.asList(2, 3));
+    }
+
+    private static void assertLis(int[] expected, int[] sequence) {
+        Assert.assertArrayEquals(expected, SwimlaneBatch.longestIncreasingSubsequence(sequence));
+    }
+
+    /**
+     * Does what Jira does with each move, i.e. takes the swimlane out and puts it after the other one
+     */
+    private static List<Integer> applyMoves(List<Integer> current, List<int[]> moves) {
+        List<Integer> board = new ArrayList<>(current);
+        for (int[] move : moves) {
+            board.remove(Integer.valueOf(move[0]));
+            board.add(move[1] < 0 ? 0 : board.indexOf(move[1]) + 1, move[0]);
+        }
+        return board;
+    }
+}